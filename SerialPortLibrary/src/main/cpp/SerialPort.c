@@ -20,16 +20,62 @@
 #include <sys/stat.h>
 #include <fcntl.h>
 #include <string.h>
+#include <errno.h>
+#include <stdio.h>
+#include <sys/uio.h>
+#include <sys/ioctl.h>
+#include <linux/serial.h>
+#include <time.h>
 #include <jni.h>
 
 #include "SerialPort.h"
+#include "SerialPortJni.h"
 
 #include "android/log.h"
 static const char *TAG="serial_port";
+#define IOV_MAX_COUNT 64
+/* Largest single read for nativeReadTimestamped, staged on the stack */
+#define READ_CHUNK_SIZE 8192
+
+/* termios2 with BOTHER allows arbitrary integer baud rates */
+#if defined(TCGETS2) && defined(TCSETS2) && defined(BOTHER)
+#define HAVE_TERMIOS2 1
+#endif
 #define LOGI(fmt, args...) __android_log_print(ANDROID_LOG_INFO,  TAG, fmt, ##args)
 #define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
 #define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
 
+static jfieldID descriptorFieldID = NULL;
+
+static void throwException(JNIEnv *env, const char *className, const char *message)
+{
+	jclass cException = (*env)->FindClass(env, className);
+	if (cException != NULL) {
+		(*env)->ThrowNew(env, cException, message);
+	}
+}
+
+void throwIOException(JNIEnv *env, const char *message)
+{
+	throwException(env, "java/io/IOException", message);
+}
+
+static void throwUnsupportedBaudRateException(JNIEnv *env, jint baudrate, const char *reason)
+{
+	char message[128];
+	snprintf(message, sizeof(message), "Unsupported baud rate %d: %s", baudrate, reason);
+	throwException(env, "com/kongqw/serialportlibrary/UnsupportedBaudRateException", message);
+}
+
+jint getDescriptor(JNIEnv *env, jobject fileDescriptor)
+{
+	if (descriptorFieldID == NULL) {
+		jclass cFileDescriptor = (*env)->FindClass(env, "java/io/FileDescriptor");
+		descriptorFieldID = (*env)->GetFieldID(env, cFileDescriptor, "descriptor", "I");
+	}
+	return (*env)->GetIntField(env, fileDescriptor, descriptorFieldID);
+}
+
 static speed_t getBaudrate(jint baudrate)
 {
 	switch(baudrate) {
@@ -69,24 +115,166 @@ static speed_t getBaudrate(jint baudrate)
 }
 
 /*
- * Class:     android_serialport_SerialPort
+ * Sets a baud rate that has no Bxxx constant through termios2/BOTHER.
+ * Returns 0 on success, -1 with errno set otherwise.
+ */
+static int setCustomBaudrate(int fd, jint baudrate)
+{
+#ifdef HAVE_TERMIOS2
+	struct termios2 tio;
+	if (ioctl(fd, TCGETS2, &tio)) {
+		return -1;
+	}
+	tio.c_cflag &= ~CBAUD;
+	tio.c_cflag |= BOTHER;
+#ifdef IBSHIFT
+	tio.c_cflag &= ~(CBAUD << IBSHIFT);
+	tio.c_cflag |= BOTHER << IBSHIFT;
+#endif
+	tio.c_ispeed = (speed_t) baudrate;
+	tio.c_ospeed = (speed_t) baudrate;
+	if (ioctl(fd, TCSETS2, &tio)) {
+		return -1;
+	}
+	/* Drivers may round the rate, read back what was actually applied */
+	if (ioctl(fd, TCGETS2, &tio) == 0) {
+		LOGD("custom baudrate requested %d, applied %u", baudrate, tio.c_ospeed);
+	}
+	return 0;
+#else
+	errno = ENOTSUP;
+	return -1;
+#endif
+}
+
+/* Must match SerialConfig.Parity / SerialConfig.FlowControl */
+#define PARITY_NONE 0
+#define PARITY_ODD 1
+#define PARITY_EVEN 2
+#define PARITY_MARK 3
+#define PARITY_SPACE 4
+
+#define FLOW_CONTROL_NONE 0
+#define FLOW_CONTROL_RTS_CTS 1
+#define FLOW_CONTROL_XON_XOFF 2
+
+static tcflag_t getDataBits(jint dataBits)
+{
+	switch(dataBits) {
+	case 5: return CS5;
+	case 6: return CS6;
+	case 7: return CS7;
+	default: return CS8;
+	}
+}
+
+static void configureFrame(struct termios *cfg, jint dataBits, jint parity, jint stopBits, jint flowControl, jint vmin, jint vtime)
+{
+	cfg->c_cflag &= ~CSIZE;
+	cfg->c_cflag |= getDataBits(dataBits) | CLOCAL | CREAD;
+
+	cfg->c_cflag &= ~(PARENB | PARODD);
+#ifdef CMSPAR
+	cfg->c_cflag &= ~CMSPAR;
+#endif
+	cfg->c_iflag &= ~INPCK;
+	switch(parity) {
+	case PARITY_ODD:
+		cfg->c_cflag |= PARENB | PARODD;
+		cfg->c_iflag |= INPCK;
+		break;
+	case PARITY_EVEN:
+		cfg->c_cflag |= PARENB;
+		cfg->c_iflag |= INPCK;
+		break;
+#ifdef CMSPAR
+	case PARITY_MARK:
+		cfg->c_cflag |= PARENB | CMSPAR | PARODD;
+		cfg->c_iflag |= INPCK;
+		break;
+	case PARITY_SPACE:
+		cfg->c_cflag |= PARENB | CMSPAR;
+		cfg->c_iflag |= INPCK;
+		break;
+#endif
+	default:
+		break;
+	}
+
+	if (stopBits == 2) {
+		cfg->c_cflag |= CSTOPB;
+	} else {
+		cfg->c_cflag &= ~CSTOPB;
+	}
+
+	cfg->c_cflag &= ~CRTSCTS;
+	cfg->c_iflag &= ~(IXON | IXOFF | IXANY);
+	switch(flowControl) {
+	case FLOW_CONTROL_RTS_CTS:
+		cfg->c_cflag |= CRTSCTS;
+		break;
+	case FLOW_CONTROL_XON_XOFF:
+		cfg->c_iflag |= IXON | IXOFF;
+		break;
+	default:
+		break;
+	}
+
+	cfg->c_cc[VMIN] = (cc_t) vmin;
+	cfg->c_cc[VTIME] = (cc_t) vtime;
+}
+
+/*
+ * Sets ASYNC_LOW_LATENCY so the driver pushes received bytes to the tty
+ * layer immediately instead of batching them in the flip buffer.
+ * Returns 0 on success, -1 with errno set otherwise.
+ */
+static int setLowLatency(int fd)
+{
+	struct serial_struct serial;
+	if (ioctl(fd, TIOCGSERIAL, &serial)) {
+		return -1;
+	}
+	if (serial.flags & ASYNC_LOW_LATENCY) {
+		return 0;
+	}
+	serial.flags |= ASYNC_LOW_LATENCY;
+	return ioctl(fd, TIOCSSERIAL, &serial);
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPort
  * Method:    open
- * Signature: (Ljava/lang/String;II)Ljava/io/FileDescriptor;
+ * Signature: (Ljava/lang/String;IIIIIIIIZ)Ljava/io/FileDescriptor;
  */
 JNIEXPORT jobject JNICALL Java_com_kongqw_serialportlibrary_SerialPort_open
-  (JNIEnv *env, jclass thiz, jstring path, jint baudrate, jint flags)
+  (JNIEnv *env, jobject thiz, jstring path, jint baudrate, jint flags, jint dataBits, jint parity,
+   jint stopBits, jint flowControl, jint vmin, jint vtime, jboolean lowLatency)
 {
 	int fd;
 	speed_t speed;
+	int custom = 0;
 	jobject mFileDescriptor;
 
 	/* Check arguments */
 	{
+		if (baudrate <= 0) {
+			LOGE("Invalid baudrate %d", baudrate);
+			throwUnsupportedBaudRateException(env, baudrate, "must be positive");
+			return NULL;
+		}
 		speed = getBaudrate(baudrate);
 		if (speed == -1) {
-			/* TODO: throw an exception */
-			LOGE("Invalid baudrate");
+#ifdef HAVE_TERMIOS2
+			/* Not in the table, configure with a placeholder and switch to BOTHER later */
+			LOGD("Baudrate %d not in table, using termios2", baudrate);
+			speed = B38400;
+			custom = 1;
+#else
+			LOGE("Invalid baudrate %d", baudrate);
+			throwUnsupportedBaudRateException(env, baudrate, "termios2 is not available");
 			return NULL;
+#endif
 		}
 	}
 
@@ -100,9 +288,8 @@ JNIEXPORT jobject JNICALL Java_com_kongqw_serialportlibrary_SerialPort_open
 		(*env)->ReleaseStringUTFChars(env, path, path_utf);
 		if (fd == -1)
 		{
-			/* Throw an exception */
-			LOGE("Cannot open port");
-			/* TODO: throw an exception */
+			LOGE("Cannot open port: %s", strerror(errno));
+			throwIOException(env, strerror(errno));
 			return NULL;
 		}
 	}
@@ -114,22 +301,39 @@ JNIEXPORT jobject JNICALL Java_com_kongqw_serialportlibrary_SerialPort_open
 		if (tcgetattr(fd, &cfg))
 		{
 			LOGE("tcgetattr() failed");
+			throwIOException(env, strerror(errno));
 			close(fd);
-			/* TODO: throw an exception */
 			return NULL;
 		}
 
 		cfmakeraw(&cfg);
 		cfsetispeed(&cfg, speed);
 		cfsetospeed(&cfg, speed);
+		configureFrame(&cfg, dataBits, parity, stopBits, flowControl, vmin, vtime);
+		LOGD("dataBits = %d, parity = %d, stopBits = %d, flowControl = %d, VMIN = %d, VTIME = %d",
+				dataBits, parity, stopBits, flowControl, vmin, vtime);
 
 		if (tcsetattr(fd, TCSANOW, &cfg))
 		{
 			LOGE("tcsetattr() failed");
+			throwIOException(env, strerror(errno));
 			close(fd);
-			/* TODO: throw an exception */
 			return NULL;
 		}
+
+		if (custom && setCustomBaudrate(fd, baudrate))
+		{
+			LOGE("TCSETS2 failed: %s", strerror(errno));
+			throwUnsupportedBaudRateException(env, baudrate, strerror(errno));
+			close(fd);
+			return NULL;
+		}
+
+		/* Not every driver (USB serial, pty) implements TIOCSSERIAL, keep the port usable */
+		if (lowLatency && setLowLatency(fd))
+		{
+			LOGI("ASYNC_LOW_LATENCY not supported: %s", strerror(errno));
+		}
 	}
 
 	/* Create a corresponding file descriptor */
@@ -165,3 +369,192 @@ JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPort_close
 	close(descriptor);
 }
 
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeRead
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeRead
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jobject buffer, jint position, jint length)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	char *address = (char *) (*env)->GetDirectBufferAddress(env, buffer);
+	ssize_t n;
+
+	if (address == NULL) {
+		throwIOException(env, "Not a direct buffer");
+		return -1;
+	}
+
+	do {
+		n = read(fd, address + position, (size_t) length);
+	} while (n == -1 && errno == EINTR);
+
+	if (n == -1) {
+		if (errno == EAGAIN) {
+			return 0;
+		}
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+	/* Same as FileInputStream: read() returning 0 is reported as end of stream */
+	return n == 0 ? -1 : (jint) n;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeReadTimestamped
+ * Signature: (Ljava/io/FileDescriptor;[BII[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeReadTimestamped
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jbyteArray buffer, jint offset, jint length, jlongArray arrivalNanos)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	jbyte bytes[READ_CHUNK_SIZE];
+	struct timespec ts;
+	jlong nanos;
+	ssize_t n;
+
+	if (length > READ_CHUNK_SIZE) {
+		length = READ_CHUNK_SIZE;
+	}
+
+	do {
+		n = read(fd, bytes, (size_t) length);
+	} while (n == -1 && errno == EINTR);
+	/* Taken before anything else so that scheduling of the caller does not skew it */
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+
+	if (n == -1) {
+		if (errno == EAGAIN) {
+			return 0;
+		}
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+	if (n == 0) {
+		return -1;
+	}
+	nanos = (jlong) ts.tv_sec * 1000000000LL + ts.tv_nsec;
+	(*env)->SetByteArrayRegion(env, buffer, offset, (jsize) n, bytes);
+	(*env)->SetLongArrayRegion(env, arrivalNanos, 0, 1, &nanos);
+	return (jint) n;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeWrite
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeWrite
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jobject buffer, jint position, jint length)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	char *address = (char *) (*env)->GetDirectBufferAddress(env, buffer);
+	ssize_t n;
+
+	if (address == NULL) {
+		throwIOException(env, "Not a direct buffer");
+		return -1;
+	}
+
+	do {
+		n = write(fd, address + position, (size_t) length);
+	} while (n == -1 && errno == EINTR);
+
+	if (n == -1) {
+		if (errno == EAGAIN) {
+			return 0;
+		}
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+	return (jint) n;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeWritev
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;[I[II)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeWritev
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jobjectArray buffers, jintArray positions, jintArray lengths, jint count)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	struct iovec iov[IOV_MAX_COUNT];
+	jint position[IOV_MAX_COUNT];
+	jint length[IOV_MAX_COUNT];
+	ssize_t n;
+	int i;
+
+	if (count > IOV_MAX_COUNT) {
+		count = IOV_MAX_COUNT;
+	}
+	(*env)->GetIntArrayRegion(env, positions, 0, count, position);
+	(*env)->GetIntArrayRegion(env, lengths, 0, count, length);
+
+	for (i = 0; i < count; i++) {
+		jobject buffer = (*env)->GetObjectArrayElement(env, buffers, i);
+		char *address = (char *) (*env)->GetDirectBufferAddress(env, buffer);
+		(*env)->DeleteLocalRef(env, buffer);
+		if (address == NULL) {
+			throwIOException(env, "Not a direct buffer");
+			return -1;
+		}
+		iov[i].iov_base = address + position[i];
+		iov[i].iov_len = (size_t) length[i];
+	}
+
+	do {
+		n = writev(fd, iov, count);
+	} while (n == -1 && errno == EINTR);
+
+	if (n == -1) {
+		if (errno == EAGAIN) {
+			return 0;
+		}
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+	return (jlong) n;
+}
+
+/* Must match SerialPortChannel.QUEUE_* */
+#define QUEUE_INPUT 0
+#define QUEUE_OUTPUT 1
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeQueueSize
+ * Signature: (Ljava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeQueueSize
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jint queue)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	int size = 0;
+
+	if (ioctl(fd, queue == QUEUE_OUTPUT ? TIOCOUTQ : TIOCINQ, &size)) {
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+	return (jint) size;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeIsLowLatency
+ * Signature: (Ljava/io/FileDescriptor;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeIsLowLatency
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor)
+{
+	jint fd = getDescriptor(env, fileDescriptor);
+	struct serial_struct serial;
+
+	if (ioctl(fd, TIOCGSERIAL, &serial)) {
+		return JNI_FALSE;
+	}
+	return (serial.flags & ASYNC_LOW_LATENCY) ? JNI_TRUE : JNI_FALSE;
+}
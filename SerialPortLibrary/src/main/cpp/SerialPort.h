@@ -11,10 +11,10 @@ extern "C" {
 /*
  * Class:     android_serialport_api_SerialPort
  * Method:    open
- * Signature: (Ljava/lang/String;II)Ljava/io/FileDescriptor;
+ * Signature: (Ljava/lang/String;IIIIIIIIZ)Ljava/io/FileDescriptor;
  */
 JNIEXPORT jobject JNICALL Java_com_kongqw_serialportlibrary_SerialPort_open
-  (JNIEnv *, jclass, jstring, jint, jint);
+  (JNIEnv *, jobject, jstring, jint, jint, jint, jint, jint, jint, jint, jint, jboolean);
 
 /*
  * Class:     android_serialport_api_SerialPort
@@ -24,6 +24,54 @@ JNIEXPORT jobject JNICALL Java_com_kongqw_serialportlibrary_SerialPort_open
 JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPort_close
   (JNIEnv *, jobject);
 
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeRead
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeRead
+  (JNIEnv *, jclass, jobject, jobject, jint, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeReadTimestamped
+ * Signature: (Ljava/io/FileDescriptor;[BII[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeReadTimestamped
+  (JNIEnv *, jclass, jobject, jbyteArray, jint, jint, jlongArray);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeWrite
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeWrite
+  (JNIEnv *, jclass, jobject, jobject, jint, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeWritev
+ * Signature: (Ljava/io/FileDescriptor;[Ljava/nio/ByteBuffer;[I[II)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeWritev
+  (JNIEnv *, jclass, jobject, jobjectArray, jintArray, jintArray, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeQueueSize
+ * Signature: (Ljava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeQueueSize
+  (JNIEnv *, jclass, jobject, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortChannel
+ * Method:    nativeIsLowLatency
+ * Signature: (Ljava/io/FileDescriptor;)Z
+ */
+JNIEXPORT jboolean JNICALL Java_com_kongqw_serialportlibrary_SerialPortChannel_nativeIsLowLatency
+  (JNIEnv *, jclass, jobject);
+
 #ifdef __cplusplus
 }
 #endif
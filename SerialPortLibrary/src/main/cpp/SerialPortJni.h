@@ -0,0 +1,14 @@
+/* Helpers shared by the JNI sources, implemented in SerialPort.c */
+
+#ifndef _Included_SerialPortJni
+#define _Included_SerialPortJni
+
+#include <jni.h>
+
+/* Throws java.io.IOException with the given message */
+void throwIOException(JNIEnv *env, const char *message);
+
+/* Returns the int descriptor held by a java.io.FileDescriptor */
+jint getDescriptor(JNIEnv *env, jobject fileDescriptor);
+
+#endif
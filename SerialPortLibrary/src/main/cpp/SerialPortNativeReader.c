@@ -0,0 +1,383 @@
+/*
+ * Native read loop for a serial port, see SerialPortNativeReader.java.
+ *
+ * A pthread poll()s and read()s a dup of the serial port fd straight into a
+ * single-producer / single-consumer byte ring that lives in a direct
+ * ByteBuffer owned by Java. The Java consumer copies out of the ring and only
+ * crosses into native code through nativeAwait() once the ring is empty,
+ * passing back how far it has consumed.
+ *
+ * head and tail are free-running byte counts; the producer owns tail and the
+ * consumer owns head. Each side only takes the mutex to sleep, and only
+ * signals the other side when it has announced that it is waiting.
+ *
+ * Every read() also appends a chunk record with the ring position it ended at
+ * and the CLOCK_MONOTONIC time taken right after it returned. The records are
+ * kept in their own ring, released by the consumer together with the bytes.
+ */
+
+#include <pthread.h>
+#include <poll.h>
+#include <sys/eventfd.h>
+#include <time.h>
+#include <unistd.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+#include <jni.h>
+
+#include "SerialPortNativeReader.h"
+#include "SerialPortJni.h"
+
+#include "android/log.h"
+static const char *TAG="serial_port_reader";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+#define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
+
+/* Producer finished because of end of stream rather than an errno */
+#define READER_EOF -1
+/* Reads that can be waiting for the consumer, a power of two */
+#define MAX_CHUNKS 1024
+
+struct chunk {
+	uint64_t end;
+	int64_t nanos;
+};
+
+struct reader {
+	int fd;
+	int stopfd;
+	uint8_t *data;
+	uint64_t capacity;
+	uint64_t head;
+	uint64_t tail;
+	struct chunk chunks[MAX_CHUNKS];
+	/* Oldest chunk not fully consumed, owned by the consumer */
+	uint64_t chunkHead;
+	/* Next chunk to fill, owned by the producer */
+	uint64_t chunkTail;
+	int consumerWaiting;
+	int producerWaiting;
+	int stopped;
+	int finished;
+	int error;
+	pthread_t thread;
+	pthread_mutex_t lock;
+	pthread_cond_t readable;
+	pthread_cond_t writable;
+};
+
+static void finish(struct reader *r, int error)
+{
+	pthread_mutex_lock(&r->lock);
+	r->error = error;
+	__atomic_store_n(&r->finished, 1, __ATOMIC_SEQ_CST);
+	pthread_cond_broadcast(&r->readable);
+	pthread_mutex_unlock(&r->lock);
+}
+
+static int isFull(struct reader *r, uint64_t tail, uint64_t chunkTail)
+{
+	return tail - __atomic_load_n(&r->head, __ATOMIC_SEQ_CST) == r->capacity
+			|| chunkTail - __atomic_load_n(&r->chunkHead, __ATOMIC_SEQ_CST) == MAX_CHUNKS;
+}
+
+static int64_t monotonicNanos(void)
+{
+	struct timespec ts;
+	clock_gettime(CLOCK_MONOTONIC, &ts);
+	return (int64_t) ts.tv_sec * 1000000000LL + ts.tv_nsec;
+}
+
+/* Blocks until the consumer frees space in the ring, returns 0 once stopped */
+static int awaitSpace(struct reader *r, uint64_t tail, uint64_t chunkTail)
+{
+	int running;
+
+	pthread_mutex_lock(&r->lock);
+	__atomic_store_n(&r->producerWaiting, 1, __ATOMIC_SEQ_CST);
+	while (!r->stopped && isFull(r, tail, chunkTail)) {
+		pthread_cond_wait(&r->writable, &r->lock);
+	}
+	__atomic_store_n(&r->producerWaiting, 0, __ATOMIC_SEQ_CST);
+	running = !r->stopped;
+	pthread_mutex_unlock(&r->lock);
+	return running;
+}
+
+static void *readLoop(void *arg)
+{
+	struct reader *r = arg;
+	struct pollfd fds[2];
+	uint64_t tail = r->tail;
+	uint64_t chunkTail = r->chunkTail;
+
+	fds[0].fd = r->fd;
+	fds[0].events = POLLIN;
+	fds[1].fd = r->stopfd;
+	fds[1].events = POLLIN;
+
+	for (;;) {
+		uint64_t used = tail - __atomic_load_n(&r->head, __ATOMIC_ACQUIRE);
+		uint64_t index, contiguous;
+		int64_t nanos;
+		ssize_t n;
+
+		if (isFull(r, tail, chunkTail)) {
+			if (!awaitSpace(r, tail, chunkTail)) {
+				break;
+			}
+			continue;
+		}
+
+		if (poll(fds, 2, -1) == -1) {
+			if (errno == EINTR) {
+				continue;
+			}
+			finish(r, errno);
+			return NULL;
+		}
+		if (fds[1].revents) {
+			break;
+		}
+		if (fds[0].revents & POLLNVAL) {
+			finish(r, EBADF);
+			return NULL;
+		}
+
+		/* Read as much as fits before the end of the ring in one call */
+		index = tail & (r->capacity - 1);
+		contiguous = r->capacity - index;
+		if (contiguous > r->capacity - used) {
+			contiguous = r->capacity - used;
+		}
+		n = read(r->fd, r->data + index, contiguous);
+		nanos = monotonicNanos();
+		if (n > 0) {
+			struct chunk *c = &r->chunks[chunkTail & (MAX_CHUNKS - 1)];
+			c->nanos = nanos;
+			tail += n;
+			c->end = tail;
+			chunkTail++;
+			__atomic_store_n(&r->chunkTail, chunkTail, __ATOMIC_RELEASE);
+			__atomic_store_n(&r->tail, tail, __ATOMIC_SEQ_CST);
+			if (__atomic_load_n(&r->consumerWaiting, __ATOMIC_SEQ_CST)) {
+				pthread_mutex_lock(&r->lock);
+				pthread_cond_signal(&r->readable);
+				pthread_mutex_unlock(&r->lock);
+			}
+		} else if (n == 0) {
+			/* Readable but nothing to read: the device has gone away */
+			finish(r, READER_EOF);
+			return NULL;
+		} else if (errno != EINTR && errno != EAGAIN) {
+			LOGE("read() failed: %s", strerror(errno));
+			finish(r, errno);
+			return NULL;
+		}
+	}
+	finish(r, READER_EOF);
+	return NULL;
+}
+
+/*
+ * Condition variables use CLOCK_REALTIME: pthread_condattr_setclock needs API 21.
+ * The timeout itself is measured on CLOCK_MONOTONIC; each wait gets a realtime
+ * deadline for what is left of it, at most MAX_WAIT_SLICE_NANOS, so a wall
+ * clock step can neither end the timeout early nor stretch it by much.
+ */
+#define MAX_WAIT_SLICE_NANOS 1000000000LL
+
+static void deadline(struct timespec *ts, int64_t remainingNanos)
+{
+	if (remainingNanos > MAX_WAIT_SLICE_NANOS) {
+		remainingNanos = MAX_WAIT_SLICE_NANOS;
+	}
+	clock_gettime(CLOCK_REALTIME, ts);
+	ts->tv_sec += remainingNanos / 1000000000LL;
+	ts->tv_nsec += (long) (remainingNanos % 1000000000LL);
+	if (ts->tv_nsec >= 1000000000L) {
+		ts->tv_sec++;
+		ts->tv_nsec -= 1000000000L;
+	}
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeCreate
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeCreate
+  (JNIEnv *env, jclass clazz, jobject fileDescriptor, jobject ring)
+{
+	struct reader *r;
+	uint8_t *data = (*env)->GetDirectBufferAddress(env, ring);
+	jlong capacity = (*env)->GetDirectBufferCapacity(env, ring);
+	int error;
+
+	if (data == NULL || capacity <= 0 || (capacity & (capacity - 1)) != 0) {
+		throwIOException(env, "ring must be a direct ByteBuffer with a power of two capacity");
+		return 0;
+	}
+
+	r = calloc(1, sizeof(struct reader));
+	if (r == NULL) {
+		throwIOException(env, "Out of memory");
+		return 0;
+	}
+	r->data = data;
+	r->capacity = (uint64_t) capacity;
+
+	/* Own a duplicate so the fd number cannot be reused under the thread */
+	r->fd = dup(getDescriptor(env, fileDescriptor));
+	if (r->fd == -1) {
+		throwIOException(env, strerror(errno));
+		free(r);
+		return 0;
+	}
+	r->stopfd = eventfd(0, EFD_NONBLOCK);
+	if (r->stopfd == -1) {
+		throwIOException(env, strerror(errno));
+		close(r->fd);
+		free(r);
+		return 0;
+	}
+
+	pthread_mutex_init(&r->lock, NULL);
+	pthread_cond_init(&r->readable, NULL);
+	pthread_cond_init(&r->writable, NULL);
+
+	error = pthread_create(&r->thread, NULL, readLoop, r);
+	if (error != 0) {
+		LOGE("pthread_create() failed: %s", strerror(error));
+		throwIOException(env, strerror(error));
+		pthread_cond_destroy(&r->writable);
+		pthread_cond_destroy(&r->readable);
+		pthread_mutex_destroy(&r->lock);
+		close(r->stopfd);
+		close(r->fd);
+		free(r);
+		return 0;
+	}
+	LOGD("native reader started, fd = %d, capacity = %lld", r->fd, (long long) capacity);
+	return (jlong) (intptr_t) r;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeAwait
+ * Signature: (JJIZ[J)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeAwait
+  (JNIEnv *env, jclass clazz, jlong handle, jlong head, jint timeoutMillis, jboolean perRead, jlongArray arrivalNanos)
+{
+	struct reader *r = (struct reader *) (intptr_t) handle;
+	uint64_t tail, chunkHead, chunkTail;
+	struct chunk *c;
+	struct timespec ts;
+	int64_t expiry = 0, remaining;
+	int error;
+
+	/* Publish what Java has consumed; the JNI call orders its reads before this */
+	chunkHead = r->chunkHead;
+	chunkTail = __atomic_load_n(&r->chunkTail, __ATOMIC_ACQUIRE);
+	while (chunkHead != chunkTail && r->chunks[chunkHead & (MAX_CHUNKS - 1)].end <= (uint64_t) head) {
+		chunkHead++;
+	}
+	__atomic_store_n(&r->head, (uint64_t) head, __ATOMIC_SEQ_CST);
+	__atomic_store_n(&r->chunkHead, chunkHead, __ATOMIC_SEQ_CST);
+	if (__atomic_load_n(&r->producerWaiting, __ATOMIC_SEQ_CST)) {
+		pthread_mutex_lock(&r->lock);
+		pthread_cond_signal(&r->writable);
+		pthread_mutex_unlock(&r->lock);
+	}
+
+	tail = __atomic_load_n(&r->tail, __ATOMIC_ACQUIRE);
+	if (tail == (uint64_t) head && timeoutMillis != 0) {
+		if (timeoutMillis > 0) {
+			expiry = monotonicNanos() + (int64_t) timeoutMillis * 1000000LL;
+		}
+		pthread_mutex_lock(&r->lock);
+		__atomic_store_n(&r->consumerWaiting, 1, __ATOMIC_SEQ_CST);
+		for (;;) {
+			tail = __atomic_load_n(&r->tail, __ATOMIC_SEQ_CST);
+			if (tail != (uint64_t) head || r->finished) {
+				break;
+			}
+			if (timeoutMillis > 0) {
+				remaining = expiry - monotonicNanos();
+				if (remaining <= 0) {
+					break;
+				}
+				/* ETIMEDOUT only ends this slice; the loop rechecks the monotonic time */
+				deadline(&ts, remaining);
+				pthread_cond_timedwait(&r->readable, &r->lock, &ts);
+			} else {
+				pthread_cond_wait(&r->readable, &r->lock);
+			}
+		}
+		__atomic_store_n(&r->consumerWaiting, 0, __ATOMIC_SEQ_CST);
+		error = tail == (uint64_t) head && r->finished ? r->error : 0;
+		pthread_mutex_unlock(&r->lock);
+
+		if (error == READER_EOF) {
+			return -1;
+		}
+		if (error != 0) {
+			throwIOException(env, strerror(error));
+			return -1;
+		}
+	}
+	if (tail == (uint64_t) head) {
+		/* Timed out */
+		return head;
+	}
+
+	/*
+	 * Unconsumed chunks run from chunkHead to chunkTail and are not reused by
+	 * the producer until chunkHead moves past them.
+	 */
+	chunkTail = __atomic_load_n(&r->chunkTail, __ATOMIC_ACQUIRE);
+	c = &r->chunks[(perRead ? chunkHead : chunkTail - 1) & (MAX_CHUNKS - 1)];
+	(*env)->SetLongArrayRegion(env, arrivalNanos, 0, 1, (const jlong *) &c->nanos);
+	return (jlong) c->end;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeStop
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeStop
+  (JNIEnv *env, jclass clazz, jlong handle)
+{
+	struct reader *r = (struct reader *) (intptr_t) handle;
+	uint64_t value = 1;
+
+	pthread_mutex_lock(&r->lock);
+	r->stopped = 1;
+	pthread_cond_broadcast(&r->writable);
+	pthread_mutex_unlock(&r->lock);
+	write(r->stopfd, &value, sizeof(value));
+	pthread_join(r->thread, NULL);
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeDestroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeDestroy
+  (JNIEnv *env, jclass clazz, jlong handle)
+{
+	struct reader *r = (struct reader *) (intptr_t) handle;
+
+	LOGD("native reader destroyed, fd = %d", r->fd);
+	pthread_cond_destroy(&r->writable);
+	pthread_cond_destroy(&r->readable);
+	pthread_mutex_destroy(&r->lock);
+	close(r->stopfd);
+	close(r->fd);
+	free(r);
+}
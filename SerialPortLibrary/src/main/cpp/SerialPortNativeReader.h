@@ -0,0 +1,45 @@
+#include <jni.h>
+/* Header for class com_kongqw_serialportlibrary_SerialPortNativeReader */
+
+#ifndef _Included_com_kongqw_serialportlibrary_SerialPortNativeReader
+#define _Included_com_kongqw_serialportlibrary_SerialPortNativeReader
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeCreate
+ * Signature: (Ljava/io/FileDescriptor;Ljava/nio/ByteBuffer;)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeCreate
+  (JNIEnv *, jclass, jobject, jobject);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeAwait
+ * Signature: (JJIZ[J)J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeAwait
+  (JNIEnv *, jclass, jlong, jlong, jint, jboolean, jlongArray);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeStop
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeStop
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortNativeReader
+ * Method:    nativeDestroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortNativeReader_nativeDestroy
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,51 @@
+/*
+ * stat() for the permission cache in SerialPortPermissions.
+ *
+ * android.system.Os.stat is only available from API 21, so the cache key
+ * (inode, mtime, ctime) is read natively.
+ */
+
+#include <sys/stat.h>
+#include <errno.h>
+#include <jni.h>
+
+#include "SerialPortPermissions.h"
+
+/* Must match SerialPortPermissions.STAT_* */
+#define STAT_INO 0
+#define STAT_MTIME 1
+#define STAT_CTIME 2
+#define STAT_MODE 3
+#define STAT_COUNT 4
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortPermissions
+ * Method:    nativeStat
+ * Signature: (Ljava/lang/String;[J)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortPermissions_nativeStat
+  (JNIEnv *env, jclass thiz, jstring path, jlongArray out)
+{
+	struct stat st;
+	jlong values[STAT_COUNT];
+	const char *path_utf;
+	int ret;
+
+	if ((*env)->GetArrayLength(env, out) < STAT_COUNT)
+		return EINVAL;
+
+	path_utf = (*env)->GetStringUTFChars(env, path, NULL);
+	if (path_utf == NULL)
+		return ENOMEM;
+	ret = stat(path_utf, &st);
+	(*env)->ReleaseStringUTFChars(env, path, path_utf);
+	if (ret != 0)
+		return errno;
+
+	values[STAT_INO] = (jlong) st.st_ino;
+	values[STAT_MTIME] = (jlong) st.st_mtim.tv_sec * 1000000000LL + st.st_mtim.tv_nsec;
+	values[STAT_CTIME] = (jlong) st.st_ctim.tv_sec * 1000000000LL + st.st_ctim.tv_nsec;
+	values[STAT_MODE] = (jlong) st.st_mode;
+	(*env)->SetLongArrayRegion(env, out, 0, STAT_COUNT, values);
+	return 0;
+}
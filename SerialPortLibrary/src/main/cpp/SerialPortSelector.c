@@ -0,0 +1,215 @@
+/*
+ * epoll based multiplexer for serial port file descriptors.
+ *
+ * One SerialPortSelector owns one epoll instance plus an eventfd used to
+ * wake up a blocked nativeWait() from another thread.
+ */
+
+#include <sys/epoll.h>
+#include <sys/eventfd.h>
+#include <unistd.h>
+#include <stdlib.h>
+#include <string.h>
+#include <errno.h>
+#include <stdint.h>
+#include <jni.h>
+
+#include "SerialPortSelector.h"
+#include "SerialPortJni.h"
+
+#include "android/log.h"
+static const char *TAG="serial_port_selector";
+#define LOGD(fmt, args...) __android_log_print(ANDROID_LOG_DEBUG, TAG, fmt, ##args)
+#define LOGE(fmt, args...) __android_log_print(ANDROID_LOG_ERROR, TAG, fmt, ##args)
+
+#define MAX_EVENTS 64
+
+/* Must match SerialPortSelector.OP_READ / OP_WRITE / EVENT_ERROR */
+#define OP_READ 1
+#define OP_WRITE 4
+#define EVENT_ERROR 0x100
+
+struct selector {
+	int epfd;
+	int wakefd;
+	struct epoll_event events[MAX_EVENTS];
+};
+
+static uint32_t toEpollEvents(jint ops)
+{
+	uint32_t events = 0;
+	if (ops & OP_READ) {
+		events |= EPOLLIN;
+	}
+	if (ops & OP_WRITE) {
+		events |= EPOLLOUT;
+	}
+	return events;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeCreate
+  (JNIEnv *env, jclass clazz)
+{
+	struct selector *s = calloc(1, sizeof(struct selector));
+	struct epoll_event ev;
+
+	if (s == NULL) {
+		throwIOException(env, "Out of memory");
+		return 0;
+	}
+
+	s->epfd = epoll_create(MAX_EVENTS);
+	if (s->epfd == -1) {
+		LOGE("epoll_create() failed: %s", strerror(errno));
+		throwIOException(env, strerror(errno));
+		free(s);
+		return 0;
+	}
+
+	s->wakefd = eventfd(0, EFD_NONBLOCK);
+	if (s->wakefd == -1) {
+		LOGE("eventfd() failed: %s", strerror(errno));
+		throwIOException(env, strerror(errno));
+		close(s->epfd);
+		free(s);
+		return 0;
+	}
+
+	memset(&ev, 0, sizeof(ev));
+	ev.events = EPOLLIN;
+	ev.data.fd = s->wakefd;
+	epoll_ctl(s->epfd, EPOLL_CTL_ADD, s->wakefd, &ev);
+
+	LOGD("selector created, epfd = %d", s->epfd);
+	return (jlong) (intptr_t) s;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeRegister
+ * Signature: (JLjava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeRegister
+  (JNIEnv *env, jclass clazz, jlong handle, jobject fileDescriptor, jint ops)
+{
+	struct selector *s = (struct selector *) (intptr_t) handle;
+	jint fd = getDescriptor(env, fileDescriptor);
+	struct epoll_event ev;
+
+	memset(&ev, 0, sizeof(ev));
+	ev.events = toEpollEvents(ops);
+	ev.data.fd = fd;
+
+	if (epoll_ctl(s->epfd, EPOLL_CTL_ADD, fd, &ev) == -1) {
+		if (errno != EEXIST || epoll_ctl(s->epfd, EPOLL_CTL_MOD, fd, &ev) == -1) {
+			throwIOException(env, strerror(errno));
+			return -1;
+		}
+	}
+	return fd;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeUnregister
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeUnregister
+  (JNIEnv *env, jclass clazz, jlong handle, jint fd)
+{
+	struct selector *s = (struct selector *) (intptr_t) handle;
+	struct epoll_event ev;
+
+	memset(&ev, 0, sizeof(ev));
+	/* The fd may already be closed, in which case epoll has dropped it */
+	epoll_ctl(s->epfd, EPOLL_CTL_DEL, fd, &ev);
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeWait
+ * Signature: (J[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeWait
+  (JNIEnv *env, jclass clazz, jlong handle, jintArray readyFds, jintArray readyOps, jint timeoutMillis)
+{
+	struct selector *s = (struct selector *) (intptr_t) handle;
+	jint fds[MAX_EVENTS];
+	jint ops[MAX_EVENTS];
+	jint capacity = (*env)->GetArrayLength(env, readyFds);
+	int n, i, count = 0;
+
+	if (capacity > MAX_EVENTS) {
+		capacity = MAX_EVENTS;
+	}
+
+	do {
+		n = epoll_wait(s->epfd, s->events, capacity, timeoutMillis);
+	} while (n == -1 && errno == EINTR);
+
+	if (n == -1) {
+		throwIOException(env, strerror(errno));
+		return -1;
+	}
+
+	for (i = 0; i < n; i++) {
+		struct epoll_event *ev = &s->events[i];
+		if (ev->data.fd == s->wakefd) {
+			uint64_t value;
+			read(s->wakefd, &value, sizeof(value));
+			continue;
+		}
+		fds[count] = ev->data.fd;
+		ops[count] = 0;
+		if (ev->events & EPOLLIN) {
+			ops[count] |= OP_READ;
+		}
+		if (ev->events & EPOLLOUT) {
+			ops[count] |= OP_WRITE;
+		}
+		if (ev->events & (EPOLLERR | EPOLLHUP)) {
+			ops[count] |= EVENT_ERROR;
+		}
+		count++;
+	}
+
+	if (count > 0) {
+		(*env)->SetIntArrayRegion(env, readyFds, 0, count, fds);
+		(*env)->SetIntArrayRegion(env, readyOps, 0, count, ops);
+	}
+	return count;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeWakeup
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeWakeup
+  (JNIEnv *env, jclass clazz, jlong handle)
+{
+	struct selector *s = (struct selector *) (intptr_t) handle;
+	uint64_t value = 1;
+	write(s->wakefd, &value, sizeof(value));
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeDestroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeDestroy
+  (JNIEnv *env, jclass clazz, jlong handle)
+{
+	struct selector *s = (struct selector *) (intptr_t) handle;
+
+	LOGD("selector destroyed, epfd = %d", s->epfd);
+	close(s->wakefd);
+	close(s->epfd);
+	free(s);
+}
@@ -0,0 +1,61 @@
+#include <jni.h>
+/* Header for class com_kongqw_serialportlibrary_SerialPortSelector */
+
+#ifndef _Included_com_kongqw_serialportlibrary_SerialPortSelector
+#define _Included_com_kongqw_serialportlibrary_SerialPortSelector
+#ifdef __cplusplus
+extern "C" {
+#endif
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeCreate
+ * Signature: ()J
+ */
+JNIEXPORT jlong JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeCreate
+  (JNIEnv *, jclass);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeRegister
+ * Signature: (JLjava/io/FileDescriptor;I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeRegister
+  (JNIEnv *, jclass, jlong, jobject, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeUnregister
+ * Signature: (JI)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeUnregister
+  (JNIEnv *, jclass, jlong, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeWait
+ * Signature: (J[I[II)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeWait
+  (JNIEnv *, jclass, jlong, jintArray, jintArray, jint);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeWakeup
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeWakeup
+  (JNIEnv *, jclass, jlong);
+
+/*
+ * Class:     com_kongqw_serialportlibrary_SerialPortSelector
+ * Method:    nativeDestroy
+ * Signature: (J)V
+ */
+JNIEXPORT void JNICALL Java_com_kongqw_serialportlibrary_SerialPortSelector_nativeDestroy
+  (JNIEnv *, jclass, jlong);
+
+#ifdef __cplusplus
+}
+#endif
+#endif
@@ -0,0 +1,59 @@
+/*
+ * CPU affinity and SCHED_FIFO for the I/O threads, see ThreadScheduling.java.
+ *
+ * Both calls act on the calling thread, so they are made from the thread
+ * being configured right after it starts.
+ */
+
+#define _GNU_SOURCE
+#include <sched.h>
+#include <errno.h>
+#include <jni.h>
+
+#include "ThreadScheduling.h"
+
+/*
+ * Class:     com_kongqw_serialportlibrary_ThreadScheduling
+ * Method:    nativeSetAffinity
+ * Signature: ([I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_ThreadScheduling_nativeSetAffinity
+  (JNIEnv *env, jclass thiz, jintArray cpus)
+{
+	cpu_set_t set;
+	jint values[CPU_SETSIZE];
+	jsize count = (*env)->GetArrayLength(env, cpus);
+	jsize i;
+
+	if (count <= 0 || count > CPU_SETSIZE)
+		return EINVAL;
+	(*env)->GetIntArrayRegion(env, cpus, 0, count, values);
+
+	CPU_ZERO(&set);
+	for (i = 0; i < count; i++) {
+		if (values[i] < 0 || values[i] >= CPU_SETSIZE)
+			return EINVAL;
+		CPU_SET(values[i], &set);
+	}
+	/* pid 0 is the calling thread */
+	if (sched_setaffinity(0, sizeof(set), &set) != 0)
+		return errno;
+	return 0;
+}
+
+/*
+ * Class:     com_kongqw_serialportlibrary_ThreadScheduling
+ * Method:    nativeSetFifo
+ * Signature: (I)I
+ */
+JNIEXPORT jint JNICALL Java_com_kongqw_serialportlibrary_ThreadScheduling_nativeSetFifo
+  (JNIEnv *env, jclass thiz, jint priority)
+{
+	struct sched_param param;
+
+	param.sched_priority = priority;
+	/* Needs CAP_SYS_NICE, ordinary apps get EPERM */
+	if (sched_setscheduler(0, SCHED_FIFO, &param) != 0)
+		return errno;
+	return 0;
+}
@@ -42,7 +42,36 @@ public class Device implements Serializable{
         return file;
     }
 
-    public void setFile(File path) {
+    public void setFile(File file) {
         this.file = file;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Device)) {
+            return false;
+        }
+        Device device = (Device) o;
+        return equals(name, device.name) && equals(root, device.root) && equals(file, device.file);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = null == name ? 0 : name.hashCode();
+        result = 31 * result + (null == root ? 0 : root.hashCode());
+        result = 31 * result + (null == file ? 0 : file.hashCode());
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "Device{name=" + name + ", root=" + root + ", file=" + file + "}";
+    }
+
+    private static boolean equals(Object a, Object b) {
+        return null == a ? null == b : a.equals(b);
+    }
 }
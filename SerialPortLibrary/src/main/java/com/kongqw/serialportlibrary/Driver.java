@@ -51,4 +51,18 @@ public class Driver {
         return mDriverName;
     }
 
+    public String getDeviceRoot() {
+        return mDeviceRoot;
+    }
+
+    /**
+     * 设备节点是否属于此驱动
+     *
+     * @param path 设备节点的绝对路径
+     * @return 是否属于此驱动
+     */
+    public boolean matches(String path) {
+        return path.startsWith(mDeviceRoot);
+    }
+
 }
@@ -9,6 +9,9 @@ public interface ISerialPort {
     // 打开串口
     boolean open(String path, int baudRate, int flags) throws IOException;
 
+    // 按指定参数打开串口
+    boolean open(String path, SerialConfig config) throws IOException;
+
     InputStream getInputStream() throws IOException;
 
     OutputStream getOutputStream() throws IOException;
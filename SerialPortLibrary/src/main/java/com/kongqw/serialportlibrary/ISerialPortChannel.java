@@ -0,0 +1,14 @@
+package com.kongqw.serialportlibrary;
+
+import java.nio.channels.ByteChannel;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * 串口的 NIO 通道视图
+ * <p>
+ * 关闭通道不会关闭串口, 串口由 {@link ISerialPort#close()} 关闭。
+ */
+
+public interface ISerialPortChannel extends ByteChannel, GatheringByteChannel {
+
+}
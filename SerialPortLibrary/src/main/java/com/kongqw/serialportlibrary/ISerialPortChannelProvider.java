@@ -0,0 +1,15 @@
+package com.kongqw.serialportlibrary;
+
+import java.io.IOException;
+
+/**
+ * 能提供 NIO 通道的串口
+ * <p>
+ * 可选接口, 自定义的 {@link ISerialPort} 同时实现本接口后才能使用通道相关的功能。
+ */
+
+public interface ISerialPortChannelProvider {
+
+    // NIO 通道
+    ISerialPortChannel getChannel() throws IOException;
+}
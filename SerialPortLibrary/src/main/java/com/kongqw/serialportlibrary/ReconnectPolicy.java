@@ -0,0 +1,100 @@
+package com.kongqw.serialportlibrary;
+
+/**
+ * 断线重连策略
+ * <p>
+ * 第一次重试前等待 initialDelay, 之后每次等待时间乘以 multiplier, 不小于 minDelay, 不超过 maxDelay。
+ * 默认立即重试第一次, 之后从 10ms 开始翻倍, 最长 5s, 不限次数。
+ */
+
+public class ReconnectPolicy {
+
+    private long initialDelayMillis = 0;
+    private long minDelayMillis = 10;
+    private long maxDelayMillis = 5000;
+    private double multiplier = 2;
+    private int maxAttempts = 0;
+
+    public long getInitialDelayMillis() {
+        return initialDelayMillis;
+    }
+
+    /**
+     * @param initialDelayMillis 检测到断线后第一次重试前的等待时间
+     * @return ReconnectPolicy
+     */
+    public ReconnectPolicy setInitialDelayMillis(long initialDelayMillis) {
+        if (initialDelayMillis < 0) {
+            throw new IllegalArgumentException("initialDelayMillis = " + initialDelayMillis);
+        }
+        this.initialDelayMillis = initialDelayMillis;
+        return this;
+    }
+
+    public long getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    /**
+     * @param minDelayMillis 第二次起的最小等待时间, 避免 initialDelay 为 0 时无法退避
+     * @return ReconnectPolicy
+     */
+    public ReconnectPolicy setMinDelayMillis(long minDelayMillis) {
+        if (minDelayMillis <= 0) {
+            throw new IllegalArgumentException("minDelayMillis = " + minDelayMillis);
+        }
+        this.minDelayMillis = minDelayMillis;
+        return this;
+    }
+
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    public ReconnectPolicy setMaxDelayMillis(long maxDelayMillis) {
+        if (maxDelayMillis <= 0) {
+            throw new IllegalArgumentException("maxDelayMillis = " + maxDelayMillis);
+        }
+        this.maxDelayMillis = maxDelayMillis;
+        return this;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    public ReconnectPolicy setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier = " + multiplier);
+        }
+        this.multiplier = multiplier;
+        return this;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param maxAttempts 最多重试次数, 0 表示不限
+     * @return ReconnectPolicy
+     */
+    public ReconnectPolicy setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 0) {
+            throw new IllegalArgumentException("maxAttempts = " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        return this;
+    }
+
+    /**
+     * 下一次重试前的等待时间
+     *
+     * @param previousDelayMillis 上一次的等待时间
+     * @return 等待时间
+     */
+    long nextDelayMillis(long previousDelayMillis) {
+        long next = (long) Math.min(previousDelayMillis * multiplier, maxDelayMillis);
+        return Math.max(minDelayMillis, next);
+    }
+}
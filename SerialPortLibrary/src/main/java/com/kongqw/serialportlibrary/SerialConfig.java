@@ -0,0 +1,217 @@
+package com.kongqw.serialportlibrary;
+
+/**
+ * 串口参数
+ * <p>
+ * 默认 8 数据位, 无校验, 1 停止位, 无流控, VMIN = 1, VTIME = 0。
+ * <p>
+ * VMIN/VTIME 控制 read 的返回时机:
+ * VMIN 越大, 单次 read 返回的数据越多, 唤醒次数越少, 适合大批量传输;
+ * VMIN = 1 时收到一个字节就返回, 适合交互式协议;
+ * VMIN = 0 且 VTIME > 0 时 read 最多等待 VTIME, 超时返回 0。
+ */
+
+public class SerialConfig {
+
+    public enum Parity {
+        NONE(0),
+        ODD(1),
+        EVEN(2),
+        MARK(3),
+        SPACE(4);
+
+        // 与 SerialPort.c 中的定义一致
+        final int value;
+
+        Parity(int value) {
+            this.value = value;
+        }
+    }
+
+    public enum FlowControl {
+        NONE(0),
+        RTS_CTS(1),
+        XON_XOFF(2);
+
+        // 与 SerialPort.c 中的定义一致
+        final int value;
+
+        FlowControl(int value) {
+            this.value = value;
+        }
+    }
+
+    private int baudRate;
+    private int flags;
+    private int dataBits = 8;
+    private Parity parity = Parity.NONE;
+    private int stopBits = 1;
+    private FlowControl flowControl = FlowControl.NONE;
+    private int vmin = 1;
+    private int vtime = 0;
+    private boolean lowLatency;
+
+    public SerialConfig(int baudRate) {
+        this.baudRate = baudRate;
+    }
+
+    public int getBaudRate() {
+        return baudRate;
+    }
+
+    public SerialConfig setBaudRate(int baudRate) {
+        this.baudRate = baudRate;
+        return this;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    /**
+     * @param flags 额外的 open 标志, 例如 O_NONBLOCK
+     * @return SerialConfig
+     */
+    public SerialConfig setFlags(int flags) {
+        this.flags = flags;
+        return this;
+    }
+
+    public int getDataBits() {
+        return dataBits;
+    }
+
+    /**
+     * @param dataBits 数据位 5 6 7 8
+     * @return SerialConfig
+     */
+    public SerialConfig setDataBits(int dataBits) {
+        if (dataBits < 5 || dataBits > 8) {
+            throw new IllegalArgumentException("dataBits = " + dataBits);
+        }
+        this.dataBits = dataBits;
+        return this;
+    }
+
+    public Parity getParity() {
+        return parity;
+    }
+
+    public SerialConfig setParity(Parity parity) {
+        if (null == parity) {
+            throw new IllegalArgumentException("parity = null");
+        }
+        this.parity = parity;
+        return this;
+    }
+
+    public int getStopBits() {
+        return stopBits;
+    }
+
+    /**
+     * @param stopBits 停止位 1 2
+     * @return SerialConfig
+     */
+    public SerialConfig setStopBits(int stopBits) {
+        if (stopBits != 1 && stopBits != 2) {
+            throw new IllegalArgumentException("stopBits = " + stopBits);
+        }
+        this.stopBits = stopBits;
+        return this;
+    }
+
+    public FlowControl getFlowControl() {
+        return flowControl;
+    }
+
+    public SerialConfig setFlowControl(FlowControl flowControl) {
+        if (null == flowControl) {
+            throw new IllegalArgumentException("flowControl = null");
+        }
+        this.flowControl = flowControl;
+        return this;
+    }
+
+    public int getVmin() {
+        return vmin;
+    }
+
+    /**
+     * @param vmin read 返回前至少接收的字节数 0 ~ 255
+     * @return SerialConfig
+     */
+    public SerialConfig setVmin(int vmin) {
+        if (vmin < 0 || vmin > 255) {
+            throw new IllegalArgumentException("vmin = " + vmin);
+        }
+        this.vmin = vmin;
+        return this;
+    }
+
+    public int getVtime() {
+        return vtime;
+    }
+
+    /**
+     * @param vtime read 等待超时, 单位 0.1 秒, 0 ~ 255
+     * @return SerialConfig
+     */
+    public SerialConfig setVtime(int vtime) {
+        if (vtime < 0 || vtime > 255) {
+            throw new IllegalArgumentException("vtime = " + vtime);
+        }
+        this.vtime = vtime;
+        return this;
+    }
+
+    public boolean isLowLatency() {
+        return lowLatency;
+    }
+
+    /**
+     * 打开串口时通过 TIOCSSERIAL 设置 ASYNC_LOW_LATENCY, 驱动收到数据后立即提交而不是先在 flip buffer 中积攒,
+     * 驱动不支持时忽略
+     *
+     * @param lowLatency 默认关闭
+     * @return SerialConfig
+     */
+    public SerialConfig setLowLatency(boolean lowLatency) {
+        this.lowLatency = lowLatency;
+        return this;
+    }
+
+    /**
+     * 按当前波特率和帧格式传输一个字节所需的时间
+     *
+     * @return 纳秒
+     */
+    public long getNanosPerByte() {
+        int bits = 1 + dataBits + (Parity.NONE == parity ? 0 : 1) + stopBits;
+        return baudRate <= 0 ? 0 : bits * 1000000000L / baudRate;
+    }
+
+    /**
+     * read 是否可能因超时返回 0
+     *
+     * @return VMIN = 0 且 VTIME > 0
+     */
+    public boolean hasReadTimeout() {
+        return 0 == vmin && vtime > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SerialConfig{" +
+                "baudRate=" + baudRate +
+                ", flags=" + flags +
+                ", dataBits=" + dataBits +
+                ", parity=" + parity +
+                ", stopBits=" + stopBits +
+                ", flowControl=" + flowControl +
+                ", vmin=" + vmin +
+                ", vtime=" + vtime +
+                ", lowLatency=" + lowLatency +
+                '}';
+    }
+}
@@ -1,6 +1,7 @@
 package com.kongqw.serialportlibrary;
 
 import java.io.FileDescriptor;
+import java.io.IOException;
 
 public class SerialPort {
 
@@ -12,8 +13,22 @@ public class SerialPort {
 
     private FileDescriptor mFd;
 
-    protected FileDescriptor open2(String path, int baudRate, int flags){
-        mFd = open(path, baudRate, flags);
+    protected FileDescriptor open2(String path, int baudRate, int flags) throws IOException {
+        return open2(path, new SerialConfig(baudRate).setFlags(flags));
+    }
+
+    /**
+     * 打开串口
+     *
+     * @param path   设备路径
+     * @param config 串口参数
+     * @return FileDescriptor
+     * @throws UnsupportedBaudRateException 波特率不受支持
+     * @throws IOException                  打开或配置失败
+     */
+    protected FileDescriptor open2(String path, SerialConfig config) throws IOException {
+        mFd = open(path, config.getBaudRate(), config.getFlags(), config.getDataBits(), config.getParity().value,
+                config.getStopBits(), config.getFlowControl().value, config.getVmin(), config.getVtime(), config.isLowLatency());
         return mFd;
     }
 
@@ -22,7 +37,8 @@ public class SerialPort {
     }
 
     // 打开串口
-    private native FileDescriptor open(String path, int baudRate, int flags);
+    private native FileDescriptor open(String path, int baudRate, int flags, int dataBits, int parity,
+                                       int stopBits, int flowControl, int vmin, int vtime, boolean lowLatency) throws IOException;
 
     // 关闭串口
     private native void close();
@@ -0,0 +1,266 @@
+package com.kongqw.serialportlibrary;
+
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * 基于串口文件描述符的 NIO 通道
+ * <p>
+ * 使用 Direct ByteBuffer 时由 JNI 直接读写缓冲区内存, 数据不经过 Java 堆;
+ * 堆内 ByteBuffer 退化为普通的流读写。
+ */
+
+public class SerialPortChannel implements ISerialPortChannel {
+
+    static {
+        System.loadLibrary("SerialPort");
+    }
+
+    private static final String TAG = SerialPortChannel.class.getSimpleName();
+    // 单次 writev 最多提交的缓冲区数量, 与 SerialPort.c 中的 IOV_MAX_COUNT 一致
+    private static final int IOV_MAX_COUNT = 64;
+    // 与 SerialPort.c 中的定义一致
+    private static final int QUEUE_INPUT = 0;
+    private static final int QUEUE_OUTPUT = 1;
+
+    private final FileDescriptor mFd;
+    private final Object mReadLock = new Object();
+    private final Object mWriteLock = new Object();
+    private final ByteBuffer[] mGatherBuffers = new ByteBuffer[IOV_MAX_COUNT];
+    private final int[] mGatherPositions = new int[IOV_MAX_COUNT];
+    private final int[] mGatherLengths = new int[IOV_MAX_COUNT];
+    private FileInputStream mInputStream;
+    private FileOutputStream mOutputStream;
+    private volatile boolean mOpen = true;
+
+    public SerialPortChannel(FileDescriptor fd) {
+        mFd = fd;
+    }
+
+    /**
+     * 串口文件描述符
+     *
+     * @return FileDescriptor
+     */
+    public FileDescriptor getFileDescriptor() {
+        return mFd;
+    }
+
+    /**
+     * 内核接收队列中等待读取的字节数(TIOCINQ)
+     *
+     * @return 字节数
+     * @throws IOException IOException
+     */
+    public int getInputQueueSize() throws IOException {
+        ensureOpen();
+        return nativeQueueSize(mFd, QUEUE_INPUT);
+    }
+
+    /**
+     * 内核发送队列中尚未由 UART 发出的字节数(TIOCOUTQ)
+     *
+     * @return 字节数
+     * @throws IOException IOException
+     */
+    public int getOutputQueueSize() throws IOException {
+        ensureOpen();
+        return nativeQueueSize(mFd, QUEUE_OUTPUT);
+    }
+
+    /**
+     * 驱动是否处于 ASYNC_LOW_LATENCY 模式
+     *
+     * @return 驱动不支持 TIOCGSERIAL 时返回 false
+     */
+    public boolean isLowLatency() {
+        return isOpen() && nativeIsLowLatency(mFd);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        synchronized (mReadLock) {
+            ensureOpen();
+            int position = dst.position();
+            int remaining = dst.remaining();
+            if (0 == remaining) {
+                return 0;
+            }
+            int size;
+            if (dst.isDirect()) {
+                size = nativeRead(mFd, dst, position, remaining);
+            } else if (dst.hasArray()) {
+                if (null == mInputStream) {
+                    mInputStream = new FileInputStream(mFd);
+                }
+                size = mInputStream.read(dst.array(), dst.arrayOffset() + position, remaining);
+            } else {
+                throw new IllegalArgumentException("Read-only buffer");
+            }
+            if (size > 0) {
+                dst.position(position + size);
+            }
+            return size;
+        }
+    }
+
+    /**
+     * 读取到数组并记录到达时间
+     * <p>
+     * 本地 read() 返回后立即读取 CLOCK_MONOTONIC, 与 {@link System#nanoTime()} 可比较,
+     * 不受调用线程调度的影响。单次最多读取 8192 字节。
+     *
+     * @param dst          目标数组
+     * @param offset       起始位置
+     * @param length       最多读取的字节数
+     * @param arrivalNanos 长度至少为 1, 读取到数据时 [0] 写入到达时间
+     * @return 读取的字节数, 流结束时返回 -1
+     * @throws IOException IOException
+     */
+    public int read(byte[] dst, int offset, int length, long[] arrivalNanos) throws IOException {
+        if (offset < 0 || length < 0 || length > dst.length - offset) {
+            throw new IndexOutOfBoundsException("dst.length = " + dst.length + ", offset = " + offset + ", length = " + length);
+        }
+        synchronized (mReadLock) {
+            ensureOpen();
+            if (0 == length) {
+                return 0;
+            }
+            return nativeReadTimestamped(mFd, dst, offset, length, arrivalNanos);
+        }
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        synchronized (mWriteLock) {
+            ensureOpen();
+            return writeBuffer(src);
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > srcs.length - length) {
+            throw new IndexOutOfBoundsException();
+        }
+        synchronized (mWriteLock) {
+            ensureOpen();
+            long written = 0;
+            int index = offset;
+            int end = offset + length;
+            while (index < end) {
+                // 收集连续的 Direct ByteBuffer, 一次 writev 提交
+                int count = 0;
+                long expected = 0;
+                while (index < end && count < IOV_MAX_COUNT && srcs[index].isDirect()) {
+                    ByteBuffer src = srcs[index++];
+                    if (!src.hasRemaining()) {
+                        continue;
+                    }
+                    mGatherBuffers[count] = src;
+                    mGatherPositions[count] = src.position();
+                    mGatherLengths[count] = src.remaining();
+                    expected += src.remaining();
+                    count++;
+                }
+                if (count > 0) {
+                    long size = nativeWritev(mFd, mGatherBuffers, mGatherPositions, mGatherLengths, count);
+                    advance(count, size);
+                    written += size;
+                    if (size < expected) {
+                        return written;
+                    }
+                    continue;
+                }
+                if (index < end && !srcs[index].isDirect()) {
+                    ByteBuffer src = srcs[index++];
+                    int remaining = src.remaining();
+                    int size = writeBuffer(src);
+                    written += size;
+                    if (size < remaining) {
+                        return written;
+                    }
+                }
+            }
+            return written;
+        }
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs) throws IOException {
+        return write(srcs, 0, srcs.length);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return mOpen && mFd.valid();
+    }
+
+    /**
+     * 关闭通道, 不会关闭串口
+     */
+    @Override
+    public void close() {
+        mOpen = false;
+    }
+
+    private int writeBuffer(ByteBuffer src) throws IOException {
+        int position = src.position();
+        int remaining = src.remaining();
+        if (0 == remaining) {
+            return 0;
+        }
+        if (src.isDirect()) {
+            int size = nativeWrite(mFd, src, position, remaining);
+            src.position(position + size);
+            return size;
+        }
+        if (null == mOutputStream) {
+            mOutputStream = new FileOutputStream(mFd);
+        }
+        if (src.hasArray()) {
+            mOutputStream.write(src.array(), src.arrayOffset() + position, remaining);
+            src.position(position + remaining);
+        } else {
+            byte[] bytes = new byte[remaining];
+            src.get(bytes);
+            mOutputStream.write(bytes);
+        }
+        return remaining;
+    }
+
+    /**
+     * writev 完成后按实际写入的字节数推进各缓冲区的 position
+     */
+    private void advance(int count, long size) {
+        for (int i = 0; i < count; i++) {
+            ByteBuffer buffer = mGatherBuffers[i];
+            int consumed = (int) Math.min(size, mGatherLengths[i]);
+            buffer.position(mGatherPositions[i] + consumed);
+            size -= consumed;
+            mGatherBuffers[i] = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    private static native int nativeRead(FileDescriptor fd, ByteBuffer buffer, int position, int length) throws IOException;
+
+    private static native int nativeReadTimestamped(FileDescriptor fd, byte[] buffer, int offset, int length, long[] arrivalNanos) throws IOException;
+
+    private static native int nativeWrite(FileDescriptor fd, ByteBuffer buffer, int position, int length) throws IOException;
+
+    private static native long nativeWritev(FileDescriptor fd, ByteBuffer[] buffers, int[] positions, int[] lengths, int count) throws IOException;
+
+    private static native int nativeQueueSize(FileDescriptor fd, int queue) throws IOException;
+
+    private static native boolean nativeIsLowLatency(FileDescriptor fd);
+}
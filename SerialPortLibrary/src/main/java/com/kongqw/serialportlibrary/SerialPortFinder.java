@@ -1,18 +1,36 @@
 package com.kongqw.serialportlibrary;
 
+import android.os.FileObserver;
 import android.util.Log;
 
+import com.kongqw.serialportlibrary.listener.OnSerialPortDeviceListener;
+
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
 
 public class SerialPortFinder {
 
     private static final String TAG = SerialPortFinder.class.getSimpleName();
     private static final String DRIVERS_PATH = "/proc/tty/drivers";
+    private static final String DEV_PATH = "/dev";
     private static final String SERIAL_FIELD = "serial";
+    private static final int WATCH_MASK = FileObserver.CREATE | FileObserver.DELETE
+            | FileObserver.MOVED_FROM | FileObserver.MOVED_TO;
+
+    private ArrayList<Driver> mDrivers;
+    // /dev 下的文件名 -> 匹配到的设备, 按 /dev 的列出顺序
+    private LinkedHashMap<String, ArrayList<Device>> mIndex;
+    private OnSerialPortDeviceListener mOnSerialPortDeviceListener;
+    private FileObserver mFileObserver;
+    private Timer mPollTimer;
 
     public SerialPortFinder() {
         File file = new File(DRIVERS_PATH);
@@ -29,38 +47,254 @@ public class SerialPortFinder {
     private ArrayList<Driver> getDrivers() throws IOException {
         ArrayList<Driver> drivers = new ArrayList<>();
         LineNumberReader lineNumberReader = new LineNumberReader(new FileReader(DRIVERS_PATH));
-        String readLine;
-        while ((readLine = lineNumberReader.readLine()) != null) {
-            String driverName = readLine.substring(0, 0x15).trim();
-            String[] fields = readLine.split(" +");
-            if ((fields.length >= 5) && (fields[fields.length - 1].equals(SERIAL_FIELD))) {
-                Log.d(TAG, "Found new driver " + driverName + " on " + fields[fields.length - 4]);
-                drivers.add(new Driver(driverName, fields[fields.length - 4]));
+        try {
+            String readLine;
+            while ((readLine = lineNumberReader.readLine()) != null) {
+                String driverName = readLine.substring(0, 0x15).trim();
+                String[] fields = readLine.split(" +");
+                if ((fields.length >= 5) && (fields[fields.length - 1].equals(SERIAL_FIELD))) {
+                    Log.d(TAG, "Found new driver " + driverName + " on " + fields[fields.length - 4]);
+                    drivers.add(new Driver(driverName, fields[fields.length - 4]));
+                }
             }
+        } finally {
+            lineNumberReader.close();
         }
         return drivers;
     }
 
     /**
      * 获取串口
+     * <p>
+     * 正在监听插拔时直接返回缓存的设备列表, 否则列出一次 /dev 重新匹配所有驱动。
      *
      * @return 串口
      */
-    public ArrayList<Device> getDevices() {
+    public synchronized ArrayList<Device> getDevices() {
+        if (null == mIndex || null == mOnSerialPortDeviceListener) {
+            try {
+                mDrivers = getDrivers();
+            } catch (IOException e) {
+                e.printStackTrace();
+                mDrivers = new ArrayList<>();
+            }
+            mIndex = scan();
+        }
         ArrayList<Device> devices = new ArrayList<>();
-        try {
-            ArrayList<Driver> drivers = getDrivers();
-            for (Driver driver : drivers) {
-                String driverName = driver.getName();
-                ArrayList<File> driverDevices = driver.getDevices();
-                for (File file : driverDevices) {
-                    String devicesName = file.getName();
-                    devices.add(new Device(devicesName, driverName, file));
+        for (ArrayList<Device> matched : mIndex.values()) {
+            devices.addAll(matched);
+        }
+        return devices;
+    }
+
+    /**
+     * 重新读取驱动并扫描 /dev, 正在监听插拔时回调变化的设备
+     */
+    public void refresh() {
+        ArrayList<Device> attached = new ArrayList<>();
+        ArrayList<Device> detached = new ArrayList<>();
+        OnSerialPortDeviceListener listener;
+        synchronized (this) {
+            try {
+                mDrivers = getDrivers();
+            } catch (IOException e) {
+                e.printStackTrace();
+                mDrivers = new ArrayList<>();
+            }
+            rescan(attached, detached);
+            listener = mOnSerialPortDeviceListener;
+        }
+        notifyChanges(listener, attached, detached);
+    }
+
+    /**
+     * 开始监听串口设备插拔, 通过 inotify 监听 /dev 增量更新设备列表
+     *
+     * @param listener listener
+     */
+    public void startWatching(OnSerialPortDeviceListener listener) {
+        startWatching(listener, 0);
+    }
+
+    /**
+     * 开始监听串口设备插拔
+     * <p>
+     * 部分系统的 SELinux 策略不允许应用监听 /dev, 此时 inotify 收不到事件,
+     * 可以指定轮询间隔定期扫描 /dev 作为补充。
+     *
+     * @param listener           listener
+     * @param pollIntervalMillis 轮询间隔, 0 表示只使用 inotify
+     */
+    public synchronized void startWatching(OnSerialPortDeviceListener listener, long pollIntervalMillis) {
+        if (null == listener || pollIntervalMillis < 0) {
+            throw new IllegalArgumentException("listener = " + listener + ", pollIntervalMillis = " + pollIntervalMillis);
+        }
+        stopWatching();
+        // 先建立索引, 之后的插拔都相对于当前状态
+        getDevices();
+        mOnSerialPortDeviceListener = listener;
+        mFileObserver = new FileObserver(DEV_PATH, WATCH_MASK) {
+            @Override
+            public void onEvent(int event, String path) {
+                if (null == path) {
+                    return;
+                }
+                if (0 != (event & (FileObserver.CREATE | FileObserver.MOVED_TO))) {
+                    onDevCreated(path);
+                } else if (0 != (event & (FileObserver.DELETE | FileObserver.MOVED_FROM))) {
+                    onDevDeleted(path);
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        };
+        mFileObserver.startWatching();
+        if (pollIntervalMillis > 0) {
+            mPollTimer = new Timer("SerialPortFinder", true);
+            mPollTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    poll();
+                }
+            }, pollIntervalMillis, pollIntervalMillis);
+        }
+    }
+
+    /**
+     * 停止监听串口设备插拔
+     */
+    public synchronized void stopWatching() {
+        if (null != mFileObserver) {
+            mFileObserver.stopWatching();
+            mFileObserver = null;
+        }
+        if (null != mPollTimer) {
+            mPollTimer.cancel();
+            mPollTimer = null;
+        }
+        mOnSerialPortDeviceListener = null;
+    }
+
+    private void onDevCreated(String name) {
+        ArrayList<Device> attached;
+        OnSerialPortDeviceListener listener;
+        synchronized (this) {
+            listener = mOnSerialPortDeviceListener;
+            if (null == listener || mIndex.containsKey(name)) {
+                return;
+            }
+            attached = match(name);
+            if (attached.isEmpty()) {
+                // USB 转串口等驱动可能在设备插入时才加载, 重新读取驱动后再匹配一次
+                try {
+                    mDrivers = getDrivers();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                    return;
+                }
+                attached = match(name);
+                if (attached.isEmpty()) {
+                    return;
+                }
+            }
+            mIndex.put(name, attached);
+        }
+        notifyChanges(listener, attached, new ArrayList<Device>());
+    }
+
+    private void onDevDeleted(String name) {
+        ArrayList<Device> detached;
+        OnSerialPortDeviceListener listener;
+        synchronized (this) {
+            listener = mOnSerialPortDeviceListener;
+            if (null == listener) {
+                return;
+            }
+            detached = mIndex.remove(name);
+            if (null == detached) {
+                return;
+            }
+        }
+        notifyChanges(listener, new ArrayList<Device>(), detached);
+    }
+
+    private void poll() {
+        ArrayList<Device> attached = new ArrayList<>();
+        ArrayList<Device> detached = new ArrayList<>();
+        OnSerialPortDeviceListener listener;
+        synchronized (this) {
+            listener = mOnSerialPortDeviceListener;
+            if (null == listener) {
+                return;
+            }
+            rescan(attached, detached);
+        }
+        notifyChanges(listener, attached, detached);
+    }
+
+    /**
+     * 重新扫描 /dev 并与当前索引比较
+     */
+    private void rescan(List<Device> attached, List<Device> detached) {
+        LinkedHashMap<String, ArrayList<Device>> index = scan();
+        if (null != mIndex) {
+            for (Map.Entry<String, ArrayList<Device>> entry : index.entrySet()) {
+                if (!mIndex.containsKey(entry.getKey())) {
+                    attached.addAll(entry.getValue());
+                }
+            }
+            for (Map.Entry<String, ArrayList<Device>> entry : mIndex.entrySet()) {
+                if (!index.containsKey(entry.getKey())) {
+                    detached.addAll(entry.getValue());
+                }
+            }
+        }
+        mIndex = index;
+    }
+
+    /**
+     * 列出一次 /dev, 逐个文件与所有驱动匹配
+     *
+     * @return 文件名 -> 匹配到的设备
+     */
+    private LinkedHashMap<String, ArrayList<Device>> scan() {
+        LinkedHashMap<String, ArrayList<Device>> index = new LinkedHashMap<>();
+        if (mDrivers.isEmpty()) {
+            return index;
+        }
+        File dev = new File(DEV_PATH);
+        String[] names = dev.list();
+        if (null == names) {
+            Log.i(TAG, "scan: " + dev.getAbsolutePath() + " 不存在或没有读取权限");
+            return index;
+        }
+        for (String name : names) {
+            ArrayList<Device> devices = match(name);
+            if (!devices.isEmpty()) {
+                index.put(name, devices);
+            }
+        }
+        return index;
+    }
+
+    private ArrayList<Device> match(String name) {
+        ArrayList<Device> devices = new ArrayList<>(1);
+        String path = DEV_PATH + "/" + name;
+        for (Driver driver : mDrivers) {
+            if (driver.matches(path)) {
+                devices.add(new Device(name, driver.getName(), new File(path)));
+            }
         }
         return devices;
     }
+
+    private static void notifyChanges(OnSerialPortDeviceListener listener, List<Device> attached, List<Device> detached) {
+        if (null == listener) {
+            return;
+        }
+        for (Device device : detached) {
+            listener.onDeviceDetached(device);
+        }
+        for (Device device : attached) {
+            listener.onDeviceAttached(device);
+        }
+    }
 }
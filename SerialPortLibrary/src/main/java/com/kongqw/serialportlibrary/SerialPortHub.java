@@ -0,0 +1,310 @@
+package com.kongqw.serialportlibrary;
+
+import android.util.Log;
+
+import com.kongqw.serialportlibrary.buffer.ReceiveBufferPool;
+import com.kongqw.serialportlibrary.metrics.SerialPortMetrics;
+import com.kongqw.serialportlibrary.thread.SerialPortWriterPool;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 同时管理多个串口
+ * <p>
+ * 以 {@link SerialPortFinder} 找到的 {@link Device} 为键登记打开的串口。所有串口共用固定数量的
+ * 多路复用读取线程和发送线程, 以及同一个接收缓冲池, 线程数量和内存占用不随串口数量增加。
+ */
+
+public class SerialPortHub {
+
+    private static final String TAG = SerialPortHub.class.getSimpleName();
+
+    public static final int DEFAULT_READER_COUNT = 2;
+    public static final int DEFAULT_WRITER_COUNT = 2;
+    public static final int DEFAULT_POOL_SIZE = 64;
+
+    private final SerialPortSelector[] mSelectors;
+    private final SerialPortWriterPool mWriterPool;
+    private final ReceiveBufferPool mBufferPool;
+    private final LinkedHashMap<Device, SerialPortManager> mPorts = new LinkedHashMap<>();
+    // 正在打开的串口 -> 分配的读取线程, 打开期间不持有锁, 先占用设备避免重复打开
+    private final HashMap<Device, SerialPortSelector> mOpening = new HashMap<>();
+    private ThreadScheduling mReaderScheduling;
+    private boolean mReleased;
+    // 上一次 getMetricsSnapshots 的结果, 只在 mLastSnapshotsLock 内访问
+    private Map<Device, SerialPortMetrics.Snapshot> mLastSnapshots = new LinkedHashMap<>();
+    private final Object mLastSnapshotsLock = new Object();
+
+    public SerialPortHub() {
+        this(DEFAULT_READER_COUNT, DEFAULT_WRITER_COUNT,
+                new ReceiveBufferPool(ReceiveBufferPool.DEFAULT_BUFFER_SIZE, DEFAULT_POOL_SIZE));
+    }
+
+    /**
+     * @param readerCount 读取线程数量, 每个线程通过 epoll 接收多个串口
+     * @param writerCount 发送线程数量
+     * @param bufferPool  所有串口共用的接收缓冲池
+     */
+    public SerialPortHub(int readerCount, int writerCount, ReceiveBufferPool bufferPool) {
+        if (readerCount <= 0 || null == bufferPool) {
+            throw new IllegalArgumentException("readerCount = " + readerCount + ", bufferPool = " + bufferPool);
+        }
+        mSelectors = new SerialPortSelector[readerCount];
+        mWriterPool = new SerialPortWriterPool(writerCount);
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * 读写线程的调度参数, 需在打开第一个串口前设置
+     *
+     * @param readerScheduling 读取线程的调度参数, null 表示使用默认调度
+     * @param writerScheduling 发送线程的调度参数, null 表示使用默认调度
+     * @return SerialPortHub
+     */
+    public synchronized SerialPortHub setThreadScheduling(ThreadScheduling readerScheduling, ThreadScheduling writerScheduling) {
+        mReaderScheduling = readerScheduling;
+        mWriterPool.setThreadScheduling(writerScheduling);
+        return this;
+    }
+
+    /**
+     * 创建使用共用线程和缓冲池的 SerialPortManager, 设置监听等参数后通过 {@link #open(Device, SerialPortManager, SerialConfig)} 打开
+     *
+     * @return SerialPortManager
+     */
+    public SerialPortManager newManager() {
+        return new SerialPortManager()
+                .setReceiveBufferPool(mBufferPool)
+                .setSerialPortWriterPool(mWriterPool);
+    }
+
+    /**
+     * 使用默认参数的 SerialPortManager 打开串口
+     *
+     * @param device 串口设备
+     * @param config 串口参数
+     * @return 打开失败或该设备已打开时返回 null
+     */
+    public SerialPortManager open(Device device, SerialConfig config) {
+        SerialPortManager manager = newManager();
+        return open(device, manager, config) ? manager : null;
+    }
+
+    /**
+     * 打开串口并登记, 读取交给当前串口最少的读取线程
+     * <p>
+     * 打开过程 (包括等待 su 授权) 中不持有锁, 多个串口可以同时打开, 期间不影响其他方法。
+     *
+     * @param device  串口设备
+     * @param manager {@link #newManager()} 创建的 SerialPortManager
+     * @param config  串口参数
+     * @return 打开失败、该设备已打开或正在打开时返回 false
+     */
+    public boolean open(Device device, SerialPortManager manager, SerialConfig config) {
+        SerialPortSelector selector;
+        synchronized (this) {
+            if (mReleased) {
+                throw new IllegalStateException("SerialPortHub released");
+            }
+            if (mPorts.containsKey(device) || mOpening.containsKey(device)) {
+                Log.i(TAG, "open: " + device + " 已打开");
+                return false;
+            }
+            selector = nextSelector();
+            mOpening.put(device, selector);
+        }
+        boolean opened = false;
+        try {
+            manager.setSerialPortSelector(selector);
+            opened = manager.openSerialPort(device.getFile(), config);
+        } finally {
+            if (!opened) {
+                synchronized (this) {
+                    mOpening.remove(device);
+                }
+            }
+        }
+        if (!opened) {
+            return false;
+        }
+        synchronized (this) {
+            mOpening.remove(device);
+            if (!mReleased) {
+                mPorts.put(device, manager);
+                return true;
+            }
+        }
+        // 打开期间已调用 release()
+        manager.closeSerialPort();
+        return false;
+    }
+
+    /**
+     * 已打开的串口
+     *
+     * @param device 串口设备
+     * @return 未打开时返回 null
+     */
+    public synchronized SerialPortManager get(Device device) {
+        return mPorts.get(device);
+    }
+
+    /**
+     * 所有已打开的串口, 按打开顺序
+     *
+     * @return 串口设备
+     */
+    public synchronized List<Device> getDevices() {
+        return new ArrayList<>(mPorts.keySet());
+    }
+
+    public synchronized int size() {
+        return mPorts.size();
+    }
+
+    /**
+     * 关闭串口并取消登记
+     *
+     * @param device 串口设备
+     * @return 该设备未打开时返回 false
+     */
+    public boolean close(Device device) {
+        SerialPortManager manager;
+        synchronized (this) {
+            manager = mPorts.remove(device);
+        }
+        if (null == manager) {
+            return false;
+        }
+        manager.closeSerialPort();
+        return true;
+    }
+
+    /**
+     * 关闭所有串口, 之后仍可以打开新的串口
+     */
+    public void closeAll() {
+        List<SerialPortManager> managers;
+        synchronized (this) {
+            managers = new ArrayList<>(mPorts.values());
+            mPorts.clear();
+        }
+        for (SerialPortManager manager : managers) {
+            manager.closeSerialPort();
+        }
+    }
+
+    /**
+     * 关闭所有串口并结束共用的读写线程
+     */
+    public void release() {
+        synchronized (this) {
+            mReleased = true;
+        }
+        closeAll();
+        synchronized (this) {
+            for (int i = 0; i < mSelectors.length; i++) {
+                if (null != mSelectors[i]) {
+                    mSelectors[i].close();
+                    mSelectors[i] = null;
+                }
+            }
+        }
+        mWriterPool.shutdown();
+    }
+
+    /**
+     * 各串口的统计快照
+     * <p>
+     * 速率按与上一次调用本方法之间的变化计算, 不影响 SerialPortManager 自身的统计监听。
+     *
+     * @return 串口设备 -> 快照
+     */
+    public Map<Device, SerialPortMetrics.Snapshot> getMetricsSnapshots() {
+        LinkedHashMap<Device, SerialPortManager> ports;
+        synchronized (this) {
+            ports = new LinkedHashMap<>(mPorts);
+        }
+        synchronized (mLastSnapshotsLock) {
+            LinkedHashMap<Device, SerialPortMetrics.Snapshot> snapshots = new LinkedHashMap<>();
+            for (Map.Entry<Device, SerialPortManager> entry : ports.entrySet()) {
+                Device device = entry.getKey();
+                snapshots.put(device, entry.getValue().getMetricsSnapshot(mLastSnapshots.get(device)));
+            }
+            // 已移除的串口随之丢弃
+            mLastSnapshots = snapshots;
+            return new LinkedHashMap<>(snapshots);
+        }
+    }
+
+    /**
+     * 所有串口的汇总统计
+     *
+     * @return 各串口快照合并后的快照
+     */
+    public SerialPortMetrics.Snapshot getAggregateMetricsSnapshot() {
+        SerialPortMetrics.Snapshot aggregate = null;
+        for (SerialPortMetrics.Snapshot snapshot : getMetricsSnapshots().values()) {
+            aggregate = null == aggregate ? snapshot : aggregate.merge(snapshot);
+        }
+        return null == aggregate ? new SerialPortMetrics().snapshot(0) : aggregate;
+    }
+
+    /**
+     * 共用的接收缓冲池
+     *
+     * @return 缓冲池
+     */
+    public ReceiveBufferPool getReceiveBufferPool() {
+        return mBufferPool;
+    }
+
+    /**
+     * 共用的发送线程池
+     *
+     * @return 发送线程池
+     */
+    public SerialPortWriterPool getWriterPool() {
+        return mWriterPool;
+    }
+
+    /**
+     * 当前串口最少的读取线程, 创建失败时返回 null, 该串口改用独立的读取线程
+     */
+    private SerialPortSelector nextSelector() {
+        SerialPortSelector target = null;
+        for (int i = 0; i < mSelectors.length; i++) {
+            if (null == mSelectors[i]) {
+                try {
+                    mSelectors[i] = new SerialPortSelector();
+                    mSelectors[i].setThreadScheduling(mReaderScheduling);
+                } catch (IOException e) {
+                    Log.e(TAG, "nextSelector: ", e);
+                    continue;
+                }
+            }
+            if (null == target || load(mSelectors[i]) < load(target)) {
+                target = mSelectors[i];
+            }
+        }
+        return target;
+    }
+
+    /**
+     * 读取线程上已登记和正在打开的串口数量
+     */
+    private int load(SerialPortSelector selector) {
+        int count = selector.getRegisteredCount();
+        for (SerialPortSelector opening : mOpening.values()) {
+            if (opening == selector) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,14 +1,35 @@
 package com.kongqw.serialportlibrary;
 
-import android.os.Handler;
-import android.os.HandlerThread;
-import android.os.Message;
 import android.util.Log;
 
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+import com.kongqw.serialportlibrary.buffer.ReceiveBufferPool;
+import com.kongqw.serialportlibrary.capture.TrafficRecorder;
+import com.kongqw.serialportlibrary.checksum.Checksum;
+import com.kongqw.serialportlibrary.decoder.FrameDecoder;
+import com.kongqw.serialportlibrary.dispatch.CallbackDispatcher;
 import com.kongqw.serialportlibrary.listener.OnOpenSerialPortListener;
+import com.kongqw.serialportlibrary.listener.OnSendQueueListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortBufferListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortConnectionListener;
 import com.kongqw.serialportlibrary.listener.OnSerialPortDataListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortMetricsListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortReadyListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortSendListener;
+import com.kongqw.serialportlibrary.metrics.SerialPortMetrics;
+import com.kongqw.serialportlibrary.reactive.SerialPortPublisher;
+import com.kongqw.serialportlibrary.reactive.SerialPortSubscriber;
+import com.kongqw.serialportlibrary.thread.FrameIdleThread;
 import com.kongqw.serialportlibrary.thread.SerialPortReadThread;
+import com.kongqw.serialportlibrary.thread.SerialPortWriteThread;
+import com.kongqw.serialportlibrary.thread.SerialPortWriterPool;
+import com.kongqw.serialportlibrary.transaction.FifoCorrelator;
+import com.kongqw.serialportlibrary.transaction.ResponseCorrelator;
+import com.kongqw.serialportlibrary.transaction.TransactionFuture;
+import com.kongqw.serialportlibrary.transaction.TransactionManager;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileInputStream;
@@ -16,6 +37,13 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Created by Kongqw on 2017/11/13.
@@ -29,73 +57,139 @@ public class SerialPortManager {
     private OutputStream mFileOutputStream;
     private OnOpenSerialPortListener mOnOpenSerialPortListener;
     private OnSerialPortDataListener mOnSerialPortDataListener;
-
-    private HandlerThread mSendingHandlerThread;
-    private Handler mSendingHandler;
-    private SerialPortReadThread mSerialPortReadThread;
-
-    private ISerialPort serialPort;
-
-    public SerialPortManager() {
-        this.serialPort = new ISerialPort() {
-
-            final SerialPort serialPort = new SerialPort();
-            FileDescriptor fileDescriptor = null;
-            InputStream inputStream = null;
-            OutputStream outputStream = null;
-
-            @Override
-            public boolean open(String path, int baudRate, int flags) {
-                fileDescriptor = serialPort.open2(path, baudRate, flags);
-                return true;
+    private OnSerialPortBufferListener mOnSerialPortBufferListener;
+    private OnSerialPortFrameListener mOnSerialPortFrameListener;
+    private FrameDecoder mFrameDecoder;
+    private volatile Checksum mFrameChecksum;
+    private ReceiveBufferPool mReceiveBufferPool;
+    private boolean mDebug;
+    private SerialConfig mSerialConfig;
+    private final SerialPortMetrics mMetrics = new SerialPortMetrics();
+    private OnSerialPortMetricsListener mOnSerialPortMetricsListener;
+    private long mMetricsPeriodMillis;
+    private Timer mMetricsTimer;
+    private volatile TransactionManager mTransactionManager;
+    private volatile SerialPortPublisher mReceivePublisher;
+    private final CopyOnWriteArrayList<SerialPortSubscriber> mSendSubscribers = new CopyOnWriteArrayList<>();
+    // 丢弃校验失败的帧, 统计解析出的帧数后交给事务匹配, 再转发给 mOnSerialPortFrameListener
+    private final OnSerialPortFrameListener mFrameListener = new OnSerialPortFrameListener() {
+        @Override
+        public void onFrameReceived(byte[] buffer, int offset, int length) {
+            Checksum checksum = mFrameChecksum;
+            if (null != checksum && !checksum.verify(buffer, offset, length)) {
+                mMetrics.onCorruptFrame();
+                return;
             }
-
-            @Override
-            public InputStream getInputStream() throws IOException {
-                if (fileDescriptor == null) {
-                    throw new IOException("Serial port is not initialized");
-                }
-                if (inputStream == null) {
-                    inputStream = new FileInputStream(fileDescriptor);
-                }
-                return inputStream;
+            mMetrics.onFrameReceived();
+            TransactionManager transactionManager = mTransactionManager;
+            if (null != transactionManager) {
+                transactionManager.onResponse(buffer, offset, length);
             }
-
-            @Override
-            public OutputStream getOutputStream() throws IOException {
-                if (fileDescriptor == null) {
-                    throw new IOException("Serial port is not initialized");
-                }
-                if (outputStream == null) {
-                    outputStream = new FileOutputStream(fileDescriptor);
-                }
-                return outputStream;
+            OnSerialPortFrameListener listener = mOnSerialPortFrameListener;
+            if (null == listener) {
+                return;
             }
-
-            @Override
-            public void close() {
-                if (fileDescriptor != null) {
-                    fileDescriptor = null;
-                    serialPort.close2();
-                }
-                if (inputStream != null) {
-                    try {
-                        inputStream.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+            FrameDecoder frameDecoder = mFrameDecoder;
+            long arrivalNanos = null == frameDecoder ? 0 : frameDecoder.getArrivalNanos();
+            if (mCallbackDispatcher.isInline()) {
+                recordDispatchLatency(arrivalNanos);
+                listener.onFrameReceived(buffer, offset, length);
+                return;
+            }
+            // 帧数据引用帧解析器的内部缓冲区, 交给其他线程前需要拷贝
+            byte[] frame = new byte[length];
+            System.arraycopy(buffer, offset, frame, 0, length);
+            dispatchCallback(CallbackDispatcher.EVENT_FRAME_RECEIVED, frame, arrivalNanos);
+        }
+    };
+    private CallbackDispatcher mCallbackDispatcher = CallbackDispatcher.inline();
+    // 在回调线程中把事件交给对应的监听
+    private final CallbackDispatcher.Target mCallbackTarget = new CallbackDispatcher.Target() {
+        @Override
+        public void onEvent(int event, Object payload, long arrivalNanos) {
+            switch (event) {
+                case CallbackDispatcher.EVENT_BUFFER_RECEIVED:
+                    OnSerialPortBufferListener bufferListener = mOnSerialPortBufferListener;
+                    if (null != bufferListener) {
+                        recordDispatchLatency(arrivalNanos);
+                        bufferListener.onBufferReceived((ReceiveBuffer) payload);
+                    } else {
+                        ((ReceiveBuffer) payload).recycle();
                     }
-                    inputStream = null;
-                }
-                if (outputStream != null) {
-                    try {
-                        outputStream.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
+                    break;
+                case CallbackDispatcher.EVENT_DATA_RECEIVED:
+                    if (null != mOnSerialPortDataListener) {
+                        recordDispatchLatency(arrivalNanos);
+                        mOnSerialPortDataListener.onDataReceived((byte[]) payload);
                     }
-                    outputStream = null;
-                }
+                    break;
+                case CallbackDispatcher.EVENT_FRAME_RECEIVED:
+                    OnSerialPortFrameListener frameListener = mOnSerialPortFrameListener;
+                    if (null != frameListener) {
+                        byte[] frame = (byte[]) payload;
+                        recordDispatchLatency(arrivalNanos);
+                        frameListener.onFrameReceived(frame, 0, frame.length);
+                    }
+                    break;
+                case CallbackDispatcher.EVENT_DATA_SENT:
+                    if (null != mOnSerialPortDataListener) {
+                        mOnSerialPortDataListener.onDataSent((byte[]) payload);
+                    }
+                    break;
+                case CallbackDispatcher.EVENT_BUFFERS_SENT:
+                    OnSerialPortSendListener sendListener = mOnSerialPortSendListener;
+                    if (null != sendListener) {
+                        sendListener.onBuffersSent((ByteBuffer[]) payload);
+                    }
+                    break;
+                case CallbackDispatcher.EVENT_RECEIVE_ERROR:
+                case CallbackDispatcher.EVENT_SEND_ERROR:
+                    if (null != mOnSerialPortDataListener) {
+                        mOnSerialPortDataListener.onError((Exception) payload);
+                    }
+                    break;
+                default:
+                    break;
             }
-        };
+        }
+    };
+
+    private SerialPortWriteThread mSerialPortWriteThread;
+    private int mMaxSendBatchBytes = SerialPortWriteThread.DEFAULT_MAX_BATCH_BYTES;
+    private long mSendFlushDeadlineNanos;
+    private int mSendQueueCapacity = SerialPortWriteThread.DEFAULT_QUEUE_CAPACITY;
+    private SerialPortWriteThread.OverflowPolicy mSendOverflowPolicy = SerialPortWriteThread.OverflowPolicy.FAIL;
+    private OnSendQueueListener mOnSendQueueListener;
+    private OnSerialPortSendListener mOnSerialPortSendListener;
+    private int mSendHighWaterMark;
+    private int mSendLowWaterMark;
+    private int mSendPacingLimit = -1;
+    private SerialPortReadThread mSerialPortReadThread;
+    private volatile FrameIdleThread mFrameIdleThread;
+    private SerialPortSelector mSerialPortSelector;
+    private SerialPortWriterPool mSerialPortWriterPool;
+    private SerialPortChannel mSelectorChannel;
+    private File mDevice;
+    private ReconnectPolicy mReconnectPolicy;
+    private OnSerialPortConnectionListener mOnSerialPortConnectionListener;
+    private final Object mReconnectLock = new Object();
+    private volatile boolean mReconnecting;
+    private Thread mReconnectThread;
+
+    private TrafficRecorder mTrafficRecorder;
+    private SerialPortPermissions mPermissions = SerialPortPermissions.getDefault();
+    private ThreadScheduling mReadThreadScheduling;
+    private ThreadScheduling mWriteThreadScheduling;
+    private int mNativeReaderCapacity;
+    private SerialPortNativeReader mNativeReader;
+    private boolean mReceiveTimestamps;
+    // 只在多路复用线程中访问
+    private long mLastArrivalNanos;
+
+    private ISerialPort serialPort;
+
+    public SerialPortManager() {
+        this.serialPort = new DefaultSerialPort();
     }
 
     public SerialPortManager(ISerialPort serialPort) {
@@ -103,46 +197,36 @@ public class SerialPortManager {
     }
 
     /**
-     * 文件设置最高权限 777 可读 可写 可执行
+     * 打开串口
      *
-     * @param file 文件
-     * @return 权限修改是否成功
+     * @param device   串口设备
+     * @param baudRate 波特率
+     * @return 打开是否成功
      */
-    private boolean chmod777(File file) {
-        if (null == file || !file.exists()) {
-            // 文件不存在
-            return false;
-        }
-        try {
-            // 获取ROOT权限
-            Process su = Runtime.getRuntime().exec("/system/bin/su");
-            // 修改文件属性为 [可读 可写 可执行]
-            String cmd = "chmod 777 " + file.getAbsolutePath() + "\n" + "exit\n";
-            su.getOutputStream().write(cmd.getBytes());
-            if (0 == su.waitFor() && file.canRead() && file.canWrite() && file.canExecute()) {
-                return true;
-            }
-        } catch (IOException | InterruptedException e) {
-            // 没有ROOT权限
-            e.printStackTrace();
-        }
-        return false;
+    public boolean openSerialPort(File device, int baudRate) {
+        return openSerialPort(device, new SerialConfig(baudRate));
     }
 
     /**
      * 打开串口
      *
-     * @param device   串口设备
-     * @param baudRate 波特率
+     * @param device 串口设备
+     * @param config 串口参数
      * @return 打开是否成功
      */
-    public boolean openSerialPort(File device, int baudRate) {
-        Log.i(TAG, "openSerialPort: " + String.format("打开串口 %s  波特率 %s", device.getPath(), baudRate));
+    public boolean openSerialPort(File device, SerialConfig config) {
+        Log.i(TAG, "openSerialPort: " + String.format("打开串口 %s  %s", device.getPath(), config));
 
         // 校验串口权限
         if (!device.canRead() || !device.canWrite()) {
-            boolean chmod777 = chmod777(device);
-            if (!chmod777) {
+            boolean granted;
+            try {
+                granted = mPermissions.requestAccess(device).get(SerialPortPermissions.TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException | ExecutionException | TimeoutException e) {
+                e.printStackTrace();
+                granted = false;
+            }
+            if (!granted) {
                 Log.i(TAG, "openSerialPort: 没有读写权限");
                 if (null != mOnOpenSerialPortListener) {
                     mOnOpenSerialPortListener.onFail(device, OnOpenSerialPortListener.Status.NO_READ_WRITE_PERMISSION);
@@ -153,7 +237,14 @@ public class SerialPortManager {
 
         try {
             closeSerialPort();
-            serialPort.open(device.getAbsolutePath(), baudRate, 0);
+            if (null != mFrameDecoder) {
+                mFrameDecoder.reset();
+            }
+            mSerialConfig = config;
+            synchronized (mReconnectLock) {
+                mDevice = device;
+            }
+            serialPort.open(device.getAbsolutePath(), config);
             mFileInputStream = serialPort.getInputStream();
             mFileOutputStream = serialPort.getOutputStream();
             Log.i(TAG, "openSerialPort: 串口已经打开");
@@ -164,7 +255,14 @@ public class SerialPortManager {
             startSendThread();
             // 开启接收消息的线程
             startReadThread();
+            startMetricsTimer();
             return true;
+        } catch (UnsupportedBaudRateException e) {
+            Log.i(TAG, "openSerialPort: " + e.getMessage());
+            if (null != mOnOpenSerialPortListener) {
+                mOnOpenSerialPortListener.onFail(device, OnOpenSerialPortListener.Status.UNSUPPORTED_BAUD_RATE);
+            }
+            closeSerialPort();
         } catch (Exception e) {
             e.printStackTrace();
             if (null != mOnOpenSerialPortListener) {
@@ -179,11 +277,39 @@ public class SerialPortManager {
      * 关闭串口
      */
     public void closeSerialPort() {
+        SerialPortPublisher publisher = mReceivePublisher;
+        if (null != publisher) {
+            // 先结束数据流, 唤醒可能在等待订阅者的接收线程
+            publisher.complete();
+        }
+        synchronized (mReconnectLock) {
+            // 之后读写线程检测到的断线不再触发重连
+            mDevice = null;
+            mReconnecting = false;
+            if (null != mReconnectThread) {
+                mReconnectThread.interrupt();
+                mReconnectThread = null;
+            }
+        }
+        if (null != mSelectorChannel) {
+            // 先从多路复用器注销, 再关闭文件描述符
+            mSerialPortSelector.unregister(mSelectorChannel);
+            mSelectorChannel = null;
+        }
+        closeNativeReader();
         serialPort.close();
         // 停止发送消息的线程
         stopSendThread();
         // 停止接收消息的线程
         stopReadThread();
+        stopMetricsTimer();
+        TransactionManager transactionManager = mTransactionManager;
+        if (null != transactionManager) {
+            transactionManager.failAll(new IOException("serial port closed"));
+        }
+        for (SerialPortSubscriber subscriber : mSendSubscribers) {
+            subscriber.cancel(new IOException("serial port closed"));
+        }
 
         if (null != mFileInputStream) {
             try {
@@ -205,6 +331,26 @@ public class SerialPortManager {
 
     }
 
+    /**
+     * 获取串口的 NIO 通道, 配合 Direct ByteBuffer 使用可避免数据经过 Java 堆
+     *
+     * @return 通道, 串口未打开或自定义的 ISerialPort 未实现 {@link ISerialPortChannelProvider} 时返回 null
+     */
+    public ISerialPortChannel getSerialPortChannel() {
+        if (null == mFileInputStream) {
+            return null;
+        }
+        if (!(serialPort instanceof ISerialPortChannelProvider)) {
+            return null;
+        }
+        try {
+            return ((ISerialPortChannelProvider) serialPort).getChannel();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
     /**
      * 添加打开串口监听
      *
@@ -228,96 +374,1187 @@ public class SerialPortManager {
     }
 
     /**
-     * 开启发送消息的线程
+     * 添加数据接收监听(缓冲池模式)
+     * <p>
+     * 设置后接收数据不再回调 {@link OnSerialPortDataListener#onDataReceived(byte[])},
+     * 缓冲区处理完毕后需调用 {@link ReceiveBuffer#recycle()} 归还
+     *
+     * @param listener listener
+     * @return SerialPortManager
      */
-    private void startSendThread() {
-        // 开启发送消息的线程
-        mSendingHandlerThread = new HandlerThread("mSendingHandlerThread");
-        mSendingHandlerThread.start();
-        // Handler
-        mSendingHandler = new Handler(mSendingHandlerThread.getLooper()) {
-            @Override
-            public void handleMessage(Message msg) {
-                byte[] sendBytes = (byte[]) msg.obj;
+    public SerialPortManager setOnSerialPortBufferListener(OnSerialPortBufferListener listener) {
+        mOnSerialPortBufferListener = listener;
+        return this;
+    }
 
-                if (null != mFileOutputStream && null != sendBytes && 0 < sendBytes.length) {
-                    try {
-                        mFileOutputStream.write(sendBytes);
-                        if (null != mOnSerialPortDataListener) {
-                            mOnSerialPortDataListener.onDataSent(sendBytes);
-                        }
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                        try {
-                            if (null != mOnSerialPortDataListener) {
-                                mOnSerialPortDataListener.onError(e);
-                            }
-                        } catch (Exception e2) {
-                            e2.printStackTrace();
-                        }
-                    }
-                }
-            }
-        };
+    /**
+     * 设置帧解析器, 需在打开串口前设置
+     * <p>
+     * 接收到的数据经过解析器拼接为完整的帧后回调 {@link OnSerialPortFrameListener},
+     * 原始数据仍会回调给 {@link OnSerialPortBufferListener} 或 {@link OnSerialPortDataListener}。
+     * 依赖超时分帧的解析器 (如 Modbus RTU) 的最后一帧由空闲检查线程在静默超时后输出。
+     *
+     * @param decoder 帧解析器, 例如 {@link com.kongqw.serialportlibrary.decoder.DelimiterFrameDecoder}
+     * @return SerialPortManager
+     */
+    public SerialPortManager setFrameDecoder(FrameDecoder decoder) {
+        mFrameDecoder = decoder;
+        return this;
     }
 
     /**
-     * 停止发送消息线程
+     * 添加数据帧监听, 配合 {@link #setFrameDecoder(FrameDecoder)} 使用
+     *
+     * @param listener listener
+     * @return SerialPortManager
      */
-    private void stopSendThread() {
-        mSendingHandler = null;
-        if (null != mSendingHandlerThread) {
-            mSendingHandlerThread.interrupt();
-            mSendingHandlerThread.quit();
-            mSendingHandlerThread = null;
+    public SerialPortManager setOnSerialPortFrameListener(OnSerialPortFrameListener listener) {
+        mOnSerialPortFrameListener = listener;
+        return this;
+    }
+
+    /**
+     * 设置帧校验, 配合 {@link #setFrameDecoder(FrameDecoder)} 使用
+     * <p>
+     * 解析出的帧在读取线程中直接在解析器的缓冲区上校验, 校验失败的帧不回调监听、不参与事务匹配,
+     * 计入 {@link SerialPortMetrics.Snapshot#getCorruptFrames()}。通过校验的帧连同末尾的校验值一起回调。
+     * 同一校验方式用于 {@link #sendWithChecksum(byte[], int, int)}。
+     *
+     * @param checksum 校验方式, 例如 {@link com.kongqw.serialportlibrary.checksum.Crc16Modbus}, null 表示不校验
+     * @return SerialPortManager
+     */
+    public SerialPortManager setFrameChecksum(Checksum checksum) {
+        mFrameChecksum = checksum;
+        return this;
+    }
+
+    /**
+     * 设置接收缓冲池, 需在打开串口前设置
+     *
+     * @param pool 缓冲池
+     * @return SerialPortManager
+     */
+    public SerialPortManager setReceiveBufferPool(ReceiveBufferPool pool) {
+        mReceiveBufferPool = pool;
+        return this;
+    }
+
+    /**
+     * 使用多路复用器接收数据, 需在打开串口前设置
+     * <p>
+     * 设置后不再为本串口单独创建读取线程, 多个串口可以共用同一个 {@link SerialPortSelector}。
+     * 仅对 JNI 实现的串口生效, 自定义的 {@link ISerialPort} 仍使用读取线程。
+     * 每次读取不超过内核接收队列中已有的字节数, VMIN / VTIME 的批量读取设置不起作用。
+     *
+     * @param selector 多路复用器, 为 null 时使用读取线程
+     * @return SerialPortManager
+     */
+    public SerialPortManager setSerialPortSelector(SerialPortSelector selector) {
+        mSerialPortSelector = selector;
+        return this;
+    }
+
+    /**
+     * 使用共用的发送线程池发送数据, 需在打开串口前设置
+     * <p>
+     * 设置后不再为本串口单独创建发送线程, 发送队列、溢出策略和断线重发照常生效,
+     * 但工作线程不会为合并后续帧而等待, {@link #setSendBatching(int, long, TimeUnit)} 的截止时间不起作用。
+     * <p>
+     * 工作线程只在内核发送队列不超过 {@link #setSendPacing(int)} 的上限时写入,
+     * 没有设置时上限为 {@link SerialPortWriterPool#DEFAULT_OUTPUT_QUEUE_LIMIT}。
+     * 不是 JNI 实现的串口无法查询发送队列, 仍使用独立的发送线程。
+     *
+     * @param pool 发送线程池, 为 null 时使用独立的发送线程
+     * @return SerialPortManager
+     */
+    public SerialPortManager setSerialPortWriterPool(SerialPortWriterPool pool) {
+        mSerialPortWriterPool = pool;
+        return this;
+    }
+
+    /**
+     * 设置发送合并策略, 需在打开串口前设置
+     * <p>
+     * 发送线程取到第一帧后, 在截止时间内继续收集队列中的数据, 合并为一次写入,
+     * 合并后的数据不超过 maxBatchBytes。
+     *
+     * @param maxBatchBytes 单次写入的最大字节数
+     * @param flushDeadline 最多等待多久以合并后续数据, 0 表示不等待, 只合并已在队列中的数据
+     * @param unit          时间单位
+     * @return SerialPortManager
+     */
+    public SerialPortManager setSendBatching(int maxBatchBytes, long flushDeadline, TimeUnit unit) {
+        if (maxBatchBytes <= 0 || flushDeadline < 0) {
+            throw new IllegalArgumentException("maxBatchBytes = " + maxBatchBytes + ", flushDeadline = " + flushDeadline);
         }
+        mMaxSendBatchBytes = maxBatchBytes;
+        mSendFlushDeadlineNanos = unit.toNanos(flushDeadline);
+        return this;
     }
 
     /**
-     * 开启接收消息的线程
+     * 设置发送队列, 需在打开串口前设置
+     *
+     * @param capacity 队列容量(帧数), 向上取整为 2 的幂
+     * @param policy   队列已满时的处理策略, 默认 {@link SerialPortWriteThread.OverflowPolicy#FAIL}
+     * @return SerialPortManager
      */
-    private void startReadThread() {
-        mSerialPortReadThread = new SerialPortReadThread(mFileInputStream) {
-            @Override
-            public void onDataReceived(byte[] bytes) {
-                if (null != mOnSerialPortDataListener) {
-                    mOnSerialPortDataListener.onDataReceived(bytes);
-                }
-            }
+    public SerialPortManager setSendQueue(int capacity, SerialPortWriteThread.OverflowPolicy policy) {
+        if (capacity <= 0 || null == policy) {
+            throw new IllegalArgumentException("capacity = " + capacity + ", policy = " + policy);
+        }
+        mSendQueueCapacity = capacity;
+        mSendOverflowPolicy = policy;
+        return this;
+    }
 
-            @Override
-            public void onError(Exception e) {
-                if (null != mOnSerialPortDataListener) {
-                    mOnSerialPortDataListener.onError(e);
-                }
-            }
-        };
-        mSerialPortReadThread.start();
+    /**
+     * 添加缓冲区发送完成监听, 配合 {@link #sendBytes(byte[], int, int)} 和 {@link #send(ByteBuffer...)} 使用
+     *
+     * @param listener listener
+     * @return SerialPortManager
+     */
+    public SerialPortManager setOnSerialPortSendListener(OnSerialPortSendListener listener) {
+        mOnSerialPortSendListener = listener;
+        return this;
     }
 
     /**
-     * 停止接收消息的线程
+     * 添加发送队列监听, 需在打开串口前设置
+     *
+     * @param listener      listener
+     * @param highWaterMark 队列深度达到该值时回调
+     * @param lowWaterMark  达到高水位后回落到该值时回调
+     * @return SerialPortManager
      */
-    private void stopReadThread() {
-        if (null != mSerialPortReadThread) {
-            mSerialPortReadThread.release();
+    public SerialPortManager setOnSendQueueListener(OnSendQueueListener listener, int highWaterMark, int lowWaterMark) {
+        if (lowWaterMark < 0 || lowWaterMark >= highWaterMark) {
+            throw new IllegalArgumentException("highWaterMark = " + highWaterMark + ", lowWaterMark = " + lowWaterMark);
         }
+        mOnSendQueueListener = listener;
+        mSendHighWaterMark = highWaterMark;
+        mSendLowWaterMark = lowWaterMark;
+        return this;
     }
 
     /**
-     * 发送数据
+     * 按 UART 实际发送速度控制写入, 需在打开串口前设置
+     * <p>
+     * 内核发送队列(TIOCOUTQ)超过上限时发送线程先等待, 新帧留在发送队列中合并,
+     * 内核缓冲区中积压的数据越少, 之后发送的帧越早到达对端。只对 JNI 实现的串口有效。
      *
-     * @param sendBytes 发送数据
-     * @return 发送是否成功
+     * @param outputQueueLimit 内核发送队列的上限(字节), 小于 0 表示不控制
+     * @return SerialPortManager
      */
-    public boolean sendBytes(byte[] sendBytes) {
-        if (null != mFileInputStream && null != mFileOutputStream) {
-            if (null != mSendingHandler) {
-                Message message = Message.obtain();
-                message.obj = sendBytes;
-                return mSendingHandler.sendMessage(message);
-            }
+    public SerialPortManager setSendPacing(int outputQueueLimit) {
+        mSendPacingLimit = outputQueueLimit;
+        return this;
+    }
+
+    /**
+     * 内核接收队列中等待读取的字节数(TIOCINQ)
+     *
+     * @return 字节数, 串口未打开或不支持时返回 -1
+     */
+    public int getInputQueueSize() {
+        SerialPortChannel channel = getNativeChannel();
+        try {
+            return null == channel ? -1 : channel.getInputQueueSize();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 内核发送队列中尚未由 UART 发出的字节数(TIOCOUTQ)
+     *
+     * @return 字节数, 串口未打开或不支持时返回 -1
+     */
+    public int getOutputQueueSize() {
+        SerialPortChannel channel = getNativeChannel();
+        try {
+            return null == channel ? -1 : channel.getOutputQueueSize();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 发送队列中等待发送的帧数
+     *
+     * @return 帧数
+     */
+    public int getSendQueueDepth() {
+        SerialPortWriteThread writeThread = mSerialPortWriteThread;
+        return null == writeThread ? 0 : writeThread.getQueueSize();
+    }
+
+    /**
+     * 性能统计, 串口重新打开后继续累计
+     *
+     * @return 统计
+     */
+    public SerialPortMetrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * 性能统计快照, 速率按开始统计以来的平均值计算
+     *
+     * @return 快照
+     */
+    public SerialPortMetrics.Snapshot getMetricsSnapshot() {
+        return mMetrics.snapshot(getSendQueueDepth());
+    }
+
+    /**
+     * 性能统计快照, 速率按与调用方保留的上一次快照之间的变化计算
+     *
+     * @param previous 本串口的上一次快照, null 时同 {@link #getMetricsSnapshot()}
+     * @return 快照
+     */
+    public SerialPortMetrics.Snapshot getMetricsSnapshot(SerialPortMetrics.Snapshot previous) {
+        return mMetrics.snapshot(getSendQueueDepth(), previous);
+    }
+
+    /**
+     * 添加性能统计监听, 串口打开期间定时回调, 需在打开串口前设置
+     *
+     * @param listener     listener
+     * @param periodMillis 回调周期
+     * @return SerialPortManager
+     */
+    public SerialPortManager setOnSerialPortMetricsListener(OnSerialPortMetricsListener listener, long periodMillis) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("periodMillis = " + periodMillis);
+        }
+        mOnSerialPortMetricsListener = listener;
+        mMetricsPeriodMillis = periodMillis;
+        return this;
+    }
+
+    /**
+     * 设置权限管理, 默认使用 {@link SerialPortPermissions#getDefault()}
+     *
+     * @param permissions 权限管理
+     * @return SerialPortManager
+     */
+    public SerialPortManager setSerialPortPermissions(SerialPortPermissions permissions) {
+        if (null == permissions) {
+            throw new IllegalArgumentException("permissions = null");
+        }
+        mPermissions = permissions;
+        return this;
+    }
+
+    /**
+     * 记录串口收发的全部数据, 需在打开串口前设置
+     * <p>
+     * 记录器由调用方创建和关闭, 记录的数据可以通过 {@link com.kongqw.serialportlibrary.capture.ReplaySerialPort} 回放。
+     *
+     * @param recorder 记录器, null 表示不记录
+     * @return SerialPortManager
+     */
+    public SerialPortManager setTrafficRecorder(TrafficRecorder recorder) {
+        mTrafficRecorder = recorder;
+        return this;
+    }
+
+    /**
+     * 开启断线自动重连, 需在打开串口前设置
+     * <p>
+     * 读写出错或设备节点消失后按退避策略重新打开同一个设备, 读写线程和缓冲区保持不变,
+     * 期间发送的数据继续进入发送队列, 写入失败的那一批在重连后整批重发。
+     *
+     * @param policy 重连策略, null 表示关闭
+     * @return SerialPortManager
+     */
+    public SerialPortManager setReconnectPolicy(ReconnectPolicy policy) {
+        mReconnectPolicy = policy;
+        return this;
+    }
+
+    /**
+     * 添加断线重连监听
+     *
+     * @param listener listener
+     * @return SerialPortManager
+     */
+    public SerialPortManager setOnSerialPortConnectionListener(OnSerialPortConnectionListener listener) {
+        mOnSerialPortConnectionListener = listener;
+        return this;
+    }
+
+    /**
+     * 设置监听回调的分发方式, 需在打开串口前设置
+     * <p>
+     * 默认在读写线程中直接回调, 回调耗时会直接拖慢读写。使用其他分发方式时,
+     * 帧监听收到的是拷贝出的数据, 缓冲区监听收到的 ReceiveBuffer 仍需由监听归还。
+     *
+     * @param dispatcher 分发方式, null 表示在读写线程中直接回调
+     * @return SerialPortManager
+     */
+    public SerialPortManager setCallbackDispatcher(CallbackDispatcher dispatcher) {
+        mCallbackDispatcher = null == dispatcher ? CallbackDispatcher.inline() : dispatcher;
+        return this;
+    }
+
+    /**
+     * 设置读写线程的优先级、CPU 绑定和实时调度, 需在打开串口前设置
+     * <p>
+     * 使用多路复用器接收时读取由多路复用线程完成, 通过 {@link SerialPortSelector#setThreadScheduling(ThreadScheduling)} 设置。
+     *
+     * @param readScheduling  读取线程的调度参数, null 表示使用默认调度
+     * @param writeScheduling 发送线程的调度参数, null 表示使用默认调度
+     * @return SerialPortManager
+     */
+    public SerialPortManager setThreadScheduling(ThreadScheduling readScheduling, ThreadScheduling writeScheduling) {
+        mReadThreadScheduling = readScheduling;
+        mWriteThreadScheduling = writeScheduling;
+        return this;
+    }
+
+    /**
+     * 由本地线程读取串口, 需在打开串口前设置
+     * <p>
+     * 本地线程持续读取到共享的环形缓冲区, 读取线程在缓冲区读空时才调用一次 JNI,
+     * 持续高速接收时减少 JNI 调用和线程唤醒。只对 JNI 实现的串口和独立的读取线程有效,
+     * 使用多路复用器接收时不生效。
+     *
+     * @param capacity 环形缓冲区容量(字节), 例如 {@link SerialPortNativeReader#DEFAULT_CAPACITY}, 0 表示不使用
+     * @return SerialPortManager
+     */
+    public SerialPortManager setNativeReader(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity = " + capacity);
+        }
+        mNativeReaderCapacity = capacity;
+        return this;
+    }
+
+    /**
+     * 由本地代码记录接收数据的到达时间, 需在打开串口前设置
+     * <p>
+     * 在本地 read() 返回后立即读取 CLOCK_MONOTONIC, 通过 {@link ReceiveBuffer#getArrivalNanos()}、
+     * {@link ReceiveBuffer#getGapNanos()} 和 {@link FrameDecoder#getGapNanos()} 获取, 不受读取线程调度的影响,
+     * 用于 Modbus RTU 的 t3.5 静默判断等对时序敏感的场景。不开启时在 Java 读取返回后记录。
+     * 与 {@link #setNativeReader(int)} 同时使用时本地线程每次 read() 的数据单独回调, 保留各段之间的间隔。
+     * 只对 JNI 实现的串口有效, 不额外分配内存。
+     *
+     * @param enabled 默认关闭
+     * @return SerialPortManager
+     */
+    public SerialPortManager setReceiveTimestamps(boolean enabled) {
+        mReceiveTimestamps = enabled;
+        return this;
+    }
+
+    /**
+     * 是否输出每次读写的调试日志, 需在打开串口前设置
+     *
+     * @param debug 默认关闭
+     * @return SerialPortManager
+     */
+    public SerialPortManager setDebug(boolean debug) {
+        mDebug = debug;
+        return this;
+    }
+
+    /**
+     * 开启发送消息的线程
+     */
+    private void startSendThread() {
+        mSerialPortWriteThread = new SerialPortWriteThread(mFileOutputStream, getNativeChannel(),
+                mSendQueueCapacity, mMaxSendBatchBytes, mSendFlushDeadlineNanos) {
+            @Override
+            public void onDataSent(byte[] bytes) {
+                for (SerialPortSubscriber subscriber : mSendSubscribers) {
+                    if (subscriber.onSent(bytes)) {
+                        break;
+                    }
+                }
+                if (null != mOnSerialPortDataListener) {
+                    dispatchCallback(CallbackDispatcher.EVENT_DATA_SENT, bytes, 0);
+                }
+            }
+
+            @Override
+            public void onBuffersSent(ByteBuffer[] parts) {
+                if (null != mOnSerialPortSendListener) {
+                    dispatchCallback(CallbackDispatcher.EVENT_BUFFERS_SENT, parts, 0);
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (!onConnectionLost(e)) {
+                    dispatchError(CallbackDispatcher.EVENT_SEND_ERROR, e);
+                }
+            }
+        };
+        mSerialPortWriteThread.setMetrics(mMetrics);
+        mSerialPortWriteThread.setReconnectable(null != mReconnectPolicy);
+        mSerialPortWriteThread.setTrafficRecorder(mTrafficRecorder);
+        mSerialPortWriteThread.setThreadScheduling(mWriteThreadScheduling);
+        // 线程池的工作线程不能在某个串口上阻塞, 没有设置时使用默认的内核发送队列上限
+        boolean pooled = null != mSerialPortWriterPool && getNativeChannel() instanceof SerialPortChannel;
+        int pacingLimit = pooled && mSendPacingLimit < 0 ? SerialPortWriterPool.DEFAULT_OUTPUT_QUEUE_LIMIT : mSendPacingLimit;
+        if (pacingLimit >= 0) {
+            SerialConfig config = mSerialConfig;
+            mSerialPortWriteThread.setOutputPacing(pacingLimit, null == config ? 0 : config.getNanosPerByte());
+        }
+        mSerialPortWriteThread.setOverflowPolicy(mSendOverflowPolicy);
+        if (null != mOnSendQueueListener) {
+            mSerialPortWriteThread.setOnSendQueueListener(mOnSendQueueListener, mSendHighWaterMark, mSendLowWaterMark);
+        }
+        if (pooled) {
+            mSerialPortWriterPool.attach(mSerialPortWriteThread);
+        } else {
+            mSerialPortWriteThread.start();
+        }
+    }
+
+    /**
+     * 停止发送消息线程
+     */
+    private void stopSendThread() {
+        if (null != mSerialPortWriteThread) {
+            mSerialPortWriteThread.release();
+            mSerialPortWriteThread = null;
+        }
+    }
+
+    /**
+     * 开启接收消息的线程
+     */
+    private void startReadThread() throws IOException {
+        if (null == mReceiveBufferPool) {
+            mReceiveBufferPool = new ReceiveBufferPool();
+        }
+        startFrameIdleThread();
+        if (null != mSerialPortSelector) {
+            SerialPortChannel channel = getNativeChannel();
+            if (null != channel) {
+                startSelectorRead(channel);
+                return;
+            }
+        }
+        mSerialPortReadThread = new SerialPortReadThread(openReadStream(), mReceiveBufferPool) {
+            @Override
+            public void onBufferReceived(ReceiveBuffer buffer) {
+                dispatchReceived(buffer);
+            }
+
+            @Override
+            public void onDataReceived(byte[] bytes) {
+                if (null != mOnSerialPortDataListener) {
+                    dispatchCallback(CallbackDispatcher.EVENT_DATA_RECEIVED, bytes, 0);
+                }
+            }
+
+            @Override
+            public void onReadTimeout() throws IOException {
+                // 部分驱动拔出设备后仍表现为读取超时, 通过设备节点是否存在判断, 按读取出错处理
+                File device = mDevice;
+                if (null != device && !device.exists()) {
+                    throw new IOException(device + " removed");
+                }
+            }
+
+            @Override
+            public void onError(Exception e) {
+                if (!onConnectionLost(e)) {
+                    dispatchError(CallbackDispatcher.EVENT_RECEIVE_ERROR, e);
+                }
+            }
+        };
+        mSerialPortReadThread.setDebug(mDebug);
+        mSerialPortReadThread.setReconnectable(null != mReconnectPolicy);
+        mSerialPortReadThread.setTrafficRecorder(mTrafficRecorder);
+        mSerialPortReadThread.setThreadScheduling(mReadThreadScheduling);
+        mSerialPortReadThread.setReadTimeout(null != mSerialConfig && mSerialConfig.hasReadTimeout()
+                ? mSerialConfig.getVtime() * 100 : 0);
+        mSerialPortReadThread.start();
+    }
+
+    /**
+     * 读取线程使用的输入流, 设置了本地读取时由本地线程读取, 开启接收时间戳时由本地代码记录到达时间
+     */
+    private InputStream openReadStream() {
+        SerialPortChannel channel;
+        if ((mNativeReaderCapacity <= 0 && !mReceiveTimestamps) || null == (channel = getNativeChannel())) {
+            return mFileInputStream;
+        }
+        if (mNativeReaderCapacity <= 0) {
+            return new TimestampedInputStream(channel);
+        }
+        SerialConfig config = mSerialConfig;
+        int timeoutMillis = null != config && config.hasReadTimeout() ? config.getVtime() * 100 : -1;
+        try {
+            mNativeReader = new SerialPortNativeReader(channel.getFileDescriptor(), mNativeReaderCapacity,
+                    timeoutMillis, mReceiveTimestamps);
+            return mNativeReader;
+        } catch (IOException e) {
+            Log.w(TAG, "openReadStream: 本地读取不可用, " + e.getMessage());
+            return mFileInputStream;
+        }
+    }
+
+    /**
+     * 结束本地读取线程, 需在关闭文件描述符前调用
+     */
+    private void closeNativeReader() {
+        if (null != mNativeReader) {
+            mNativeReader.close();
+            mNativeReader = null;
+        }
+    }
+
+    /**
+     * 注册到多路复用器接收消息
+     */
+    private void startSelectorRead(SerialPortChannel channel) throws IOException {
+        final InputStream inputStream = mReceiveTimestamps ? new TimestampedInputStream(channel) : mFileInputStream;
+        final ReceiveBufferPool bufferPool = mReceiveBufferPool;
+        final boolean debug = mDebug;
+        final TrafficRecorder recorder = mTrafficRecorder;
+        mSelectorChannel = channel;
+        mLastArrivalNanos = 0;
+        mSerialPortSelector.register(channel, SerialPortSelector.OP_READ, new OnSerialPortReadyListener() {
+            @Override
+            public void onReadable(SerialPortChannel channel) throws IOException {
+                int available = channel.getInputQueueSize();
+                while (true) {
+                    ReceiveBuffer buffer = bufferPool.acquire();
+                    int capacity = buffer.capacity();
+                    // 读取长度不超过 TIOCINQ, VMIN > 1 时 read() 也不会在共用的多路复用线程中等待更多数据;
+                    // 就绪但没有数据时通常为挂断, 读取一个字节会立即返回
+                    int length = available > 0 ? Math.min(capacity, available) : 1;
+                    int size;
+                    try {
+                        size = inputStream.read(buffer.array(), buffer.offset(), length);
+                    } catch (IOException e) {
+                        buffer.recycle();
+                        throw e;
+                    }
+                    if (0 >= size) {
+                        buffer.recycle();
+                        mSerialPortSelector.unregister(channel);
+                        IOException e = new IOException("end of stream");
+                        if (!onConnectionLost(e)) {
+                            dispatchError(CallbackDispatcher.EVENT_RECEIVE_ERROR, e);
+                        }
+                        return;
+                    }
+                    long arrivalNanos = inputStream instanceof TimestampedInput
+                            ? ((TimestampedInput) inputStream).getArrivalNanos() : System.nanoTime();
+                    buffer.setLength(size);
+                    buffer.setArrivalNanos(arrivalNanos);
+                    buffer.setGapNanos(0 == mLastArrivalNanos ? -1 : arrivalNanos - mLastArrivalNanos);
+                    mLastArrivalNanos = arrivalNanos;
+                    if (null != recorder) {
+                        recorder.recordReceived(buffer.array(), buffer.offset(), size, buffer.getArrivalNanos());
+                    }
+                    if (debug) {
+                        Log.i(TAG, "onReadable: readBytes = " + new String(buffer.array(), buffer.offset(), size));
+                    }
+                    dispatchReceived(buffer);
+                    if (size < capacity) {
+                        return;
+                    }
+                    // 缓冲区读满时按 TIOCINQ 继续读取剩余的数据, 不必再等待一次就绪事件
+                    available = channel.getInputQueueSize();
+                    if (available <= 0) {
+                        return;
+                    }
+                }
+            }
+
+            @Override
+            public void onWritable(SerialPortChannel channel) {
+            }
+
+            @Override
+            public void onError(SerialPortChannel channel, Exception e) {
+                e.printStackTrace();
+                if (!onConnectionLost(e)) {
+                    dispatchError(CallbackDispatcher.EVENT_RECEIVE_ERROR, e);
+                }
+            }
+        });
+    }
+
+    /**
+     * 解析器依赖超时分帧时开启空闲检查线程, 各种读取方式下都能及时输出最后一帧
+     */
+    private void startFrameIdleThread() {
+        FrameDecoder frameDecoder = mFrameDecoder;
+        if (null != frameDecoder && frameDecoder.getIdleTimeoutNanos() > 0) {
+            FrameIdleThread idleThread = new FrameIdleThread(frameDecoder, mFrameListener);
+            idleThread.start();
+            mFrameIdleThread = idleThread;
+        }
+    }
+
+    /**
+     * 停止接收消息的线程
+     */
+    private void stopReadThread() {
+        if (null != mSelectorChannel) {
+            mSerialPortSelector.unregister(mSelectorChannel);
+            mSelectorChannel = null;
+        }
+        if (null != mSerialPortReadThread) {
+            mSerialPortReadThread.release();
+            mSerialPortReadThread = null;
+        }
+        if (null != mFrameIdleThread) {
+            mFrameIdleThread.release();
+            mFrameIdleThread = null;
+        }
+    }
+
+    /**
+     * 开启统计定时器
+     */
+    private void startMetricsTimer() {
+        final OnSerialPortMetricsListener listener = mOnSerialPortMetricsListener;
+        if (null == listener) {
+            return;
+        }
+        mMetricsTimer = new Timer("SerialPortMetrics", true);
+        mMetricsTimer.scheduleAtFixedRate(new TimerTask() {
+
+            private SerialPortMetrics.Snapshot mPrevious;
+
+            @Override
+            public void run() {
+                try {
+                    mPrevious = getMetricsSnapshot(mPrevious);
+                    listener.onMetrics(mPrevious);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }, mMetricsPeriodMillis, mMetricsPeriodMillis);
+    }
+
+    /**
+     * 停止统计定时器
+     */
+    private void stopMetricsTimer() {
+        if (null != mMetricsTimer) {
+            mMetricsTimer.cancel();
+            mMetricsTimer = null;
+        }
+    }
+
+    /**
+     * 获取 JNI 实现的串口通道
+     *
+     * @return 自定义的 ISerialPort 不支持时返回 null
+     */
+    private SerialPortChannel getNativeChannel() {
+        if (!(serialPort instanceof ISerialPortChannelProvider)) {
+            return null;
+        }
+        try {
+            ISerialPortChannel channel = ((ISerialPortChannelProvider) serialPort).getChannel();
+            if (channel instanceof SerialPortChannel) {
+                return (SerialPortChannel) channel;
+            }
+        } catch (IOException e) {
+            Log.i(TAG, "getNativeChannel: " + e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * 分发接收到的数据
+     */
+    private void dispatchReceived(ReceiveBuffer buffer) {
+        mMetrics.onRead(buffer.length());
+        FrameDecoder frameDecoder = mFrameDecoder;
+        TransactionManager transactionManager = mTransactionManager;
+        if (null != frameDecoder) {
+            if (isDecodingFrames()) {
+                FrameIdleThread idleThread = mFrameIdleThread;
+                try {
+                    if (null != idleThread) {
+                        idleThread.decode(buffer.array(), buffer.offset(), buffer.length(), buffer.getArrivalNanos());
+                    } else {
+                        frameDecoder.decode(buffer.array(), buffer.offset(), buffer.length(), buffer.getArrivalNanos(), mFrameListener);
+                    }
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        } else if (null != transactionManager) {
+            // 没有帧解析器时每次读取到的数据视为一个应答
+            transactionManager.onResponse(buffer.array(), buffer.offset(), buffer.length());
+        }
+        SerialPortPublisher publisher = mReceivePublisher;
+        if (null != publisher) {
+            publisher.publish(buffer.array(), buffer.offset(), buffer.length());
+        }
+        if (null != mOnSerialPortBufferListener) {
+            dispatchCallback(CallbackDispatcher.EVENT_BUFFER_RECEIVED, buffer, buffer.getArrivalNanos());
+            return;
+        }
+        if (null == mOnSerialPortDataListener) {
+            buffer.recycle();
+            return;
+        }
+        byte[] bytes;
+        long arrivalNanos = buffer.getArrivalNanos();
+        try {
+            bytes = buffer.toByteArray();
+        } finally {
+            buffer.recycle();
+        }
+        dispatchCallback(CallbackDispatcher.EVENT_DATA_RECEIVED, bytes, arrivalNanos);
+    }
+
+    /**
+     * 是否需要解析帧, 帧监听和事务匹配都需要解析出的帧
+     */
+    private boolean isDecodingFrames() {
+        return null != mOnSerialPortFrameListener || null != mTransactionManager;
+    }
+
+    /**
+     * 分发读写异常
+     */
+    private void dispatchError(int event, Exception e) {
+        SerialPortPublisher publisher = mReceivePublisher;
+        if (null != publisher && CallbackDispatcher.EVENT_RECEIVE_ERROR == event) {
+            publisher.error(e);
+        }
+        if (null != mOnSerialPortDataListener) {
+            dispatchCallback(event, e, 0);
+        }
+    }
+
+    /**
+     * 通过 mCallbackDispatcher 回调监听
+     */
+    private void dispatchCallback(int event, Object payload, long arrivalNanos) {
+        if (!mCallbackDispatcher.dispatch(mCallbackTarget, event, payload, arrivalNanos)) {
+            mMetrics.onCallbackDropped();
+        }
+    }
+
+    /**
+     * 即将回调接收监听时记录从数据到达开始的延迟, 包括解析和交给回调线程的时间
+     */
+    private void recordDispatchLatency(long arrivalNanos) {
+        if (0 != arrivalNanos) {
+            mMetrics.getDispatchLatency().record(System.nanoTime() - arrivalNanos);
+        }
+    }
+
+    /**
+     * 读写线程检测到断线
+     *
+     * @param cause 断线原因
+     * @return 已交给重连处理或串口已关闭时返回 true, 不需要再回调错误
+     */
+    private boolean onConnectionLost(Exception cause) {
+        synchronized (mReconnectLock) {
+            final File device = mDevice;
+            if (null == device) {
+                // 串口已关闭, 关闭过程中读写失败不是断线
+                return true;
+            }
+            final ReconnectPolicy policy = mReconnectPolicy;
+            if (null == policy) {
+                return false;
+            }
+            if (mReconnecting) {
+                return true;
+            }
+            mReconnecting = true;
+            final Exception reason = cause;
+            mReconnectThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    reconnect(policy, device, reason);
+                }
+            }, "SerialPortReconnect");
+            mReconnectThread.start();
+        }
+        return true;
+    }
+
+    /**
+     * 关闭失效的文件描述符后按退避策略重新打开, 读写线程和缓冲区保持不变,
+     * 发送队列中的数据和写入失败的那一批在重连后继续发送
+     */
+    private void reconnect(ReconnectPolicy policy, File device, Exception cause) {
+        SerialConfig config = mSerialConfig;
+        Log.i(TAG, "reconnect: 串口断开 " + device + " " + cause);
+        OnSerialPortConnectionListener listener = mOnSerialPortConnectionListener;
+        if (null != listener) {
+            listener.onDisconnected(device, cause);
+        }
+        synchronized (mReconnectLock) {
+            if (!mReconnecting) {
+                return;
+            }
+            if (null != mSelectorChannel) {
+                mSerialPortSelector.unregister(mSelectorChannel);
+                mSelectorChannel = null;
+            }
+            serialPort.close();
+        }
+
+        long delay = policy.getInitialDelayMillis();
+        int attempts = 0;
+        while (true) {
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+            attempts++;
+            synchronized (mReconnectLock) {
+                if (!mReconnecting) {
+                    return;
+                }
+                if (device.exists() && reopen(device, config)) {
+                    mReconnecting = false;
+                    mReconnectThread = null;
+                    break;
+                }
+                if (0 != policy.getMaxAttempts() && attempts >= policy.getMaxAttempts()) {
+                    mReconnecting = false;
+                    mReconnectThread = null;
+                    Log.i(TAG, "reconnect: 重连失败 " + device + " attempts = " + attempts);
+                    if (null != listener) {
+                        listener.onReconnectFailed(device, attempts);
+                    }
+                    return;
+                }
+            }
+            delay = policy.nextDelayMillis(delay);
+        }
+        Log.i(TAG, "reconnect: 重连成功 " + device + " attempts = " + attempts);
+        if (null != listener) {
+            listener.onReconnected(device, attempts);
+        }
+    }
+
+    /**
+     * 重新打开串口并交给现有的读写线程, 设备已有读写权限, 不再检查
+     *
+     * @return 是否成功
+     */
+    private boolean reopen(File device, SerialConfig config) {
+        InputStream oldInputStream = mFileInputStream;
+        OutputStream oldOutputStream = mFileOutputStream;
+        try {
+            serialPort.open(device.getAbsolutePath(), config);
+            InputStream inputStream = serialPort.getInputStream();
+            OutputStream outputStream = serialPort.getOutputStream();
+            SerialPortChannel channel = getNativeChannel();
+            mFileInputStream = inputStream;
+            mFileOutputStream = outputStream;
+            if (null != mSerialPortWriteThread) {
+                mSerialPortWriteThread.resume(outputStream, channel);
+            }
+            if (null != mSerialPortReadThread) {
+                // 旧的本地读取线程已因读取出错结束
+                closeNativeReader();
+                mSerialPortReadThread.resume(openReadStream());
+            } else if (null != mSerialPortSelector && null != channel) {
+                startSelectorRead(channel);
+            }
+        } catch (Exception e) {
+            Log.i(TAG, "reopen: " + e);
+            serialPort.close();
+            return false;
+        }
+        closeQuietly(oldInputStream);
+        closeQuietly(oldOutputStream);
+        return true;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (null != closeable) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 设置请求 / 应答事务的关联方式, 会结束当前所有在途事务
+     * <p>
+     * 应答按 {@link #setFrameDecoder(FrameDecoder)} 解析出的帧匹配, 未设置帧解析器时每次读取到的数据视为一个应答。
+     * 协议允许时增大 window 可以连续发出多个请求而不必逐个等待应答。
+     *
+     * @param correlator 应答关联器, 例如 {@link FifoCorrelator}
+     * @param window     最多同时在途的请求数
+     * @return SerialPortManager
+     */
+    public synchronized SerialPortManager setTransactionCorrelator(ResponseCorrelator correlator, int window) {
+        TransactionManager old = mTransactionManager;
+        mTransactionManager = new TransactionManager(correlator, window) {
+            @Override
+            protected boolean send(byte[] request) {
+                return sendBytes(request);
+            }
+        };
+        if (null != old) {
+            old.failAll(new IOException("transaction correlator changed"));
+        }
+        return this;
+    }
+
+    /**
+     * 发送请求并异步等待应答
+     * <p>
+     * 未设置关联方式时按顺序关联, 同时只允许一个请求在途。
+     *
+     * @param request 请求数据
+     * @param timeout 超时时间, 包括等待在途窗口的时间
+     * @param unit    时间单位
+     * @return 事务结果, 超时后 get() 抛出的 ExecutionException 的 cause 为 TimeoutException
+     */
+    public TransactionFuture sendTransaction(byte[] request, long timeout, TimeUnit unit) {
+        TransactionManager transactionManager = mTransactionManager;
+        if (null == transactionManager) {
+            synchronized (this) {
+                if (null == mTransactionManager) {
+                    setTransactionCorrelator(new FifoCorrelator(), TransactionManager.DEFAULT_WINDOW);
+                }
+                transactionManager = mTransactionManager;
+            }
+        }
+        return transactionManager.submit(request, timeout, unit);
+    }
+
+    /**
+     * 在途事务数
+     *
+     * @return 在途事务数
+     */
+    public int getOutstandingTransactions() {
+        TransactionManager transactionManager = mTransactionManager;
+        return null == transactionManager ? 0 : transactionManager.getOutstandingCount();
+    }
+
+    /**
+     * 以 Reactive Streams 发布接收到的数据
+     * <p>
+     * 每次读取到的数据在接收线程中发布, 与监听互不影响。订阅者处理不及时、发布者队列已满时接收线程等待,
+     * 不再从串口读取; 与其他串口共用读取线程(例如 {@link SerialPortHub})时同时会阻塞这些串口。
+     * 关闭串口时数据流结束, 读取出错时以该异常结束, 重新打开串口需设置新的发布者。
+     *
+     * @param publisher 发布者, null 表示不发布
+     * @return SerialPortManager
+     */
+    public SerialPortManager setReceivePublisher(SerialPortPublisher publisher) {
+        mReceivePublisher = publisher;
+        return this;
+    }
+
+    public SerialPortPublisher getReceivePublisher() {
+        return mReceivePublisher;
+    }
+
+    /**
+     * 创建订阅上游数据并发送的订阅者
+     * <p>
+     * 每帧写出后才向上游请求下一帧, 最多 window 帧同时在途。上游结束、出错或串口关闭后不再发送。
+     *
+     * @param window 最多同时在途的帧数
+     * @return 订阅者, 通过上游的 subscribe 订阅
+     */
+    public SerialPortSubscriber newSendSubscriber(int window) {
+        SerialPortSubscriber subscriber = new SerialPortSubscriber(window) {
+            @Override
+            protected boolean send(byte[] bytes) {
+                return sendBytes(bytes);
+            }
+
+            @Override
+            protected void onTerminate() {
+                mSendSubscribers.remove(this);
+            }
+        };
+        mSendSubscribers.add(subscriber);
+        return subscriber;
+    }
+
+    /**
+     * 发送数据
+     *
+     * @param sendBytes 发送数据
+     * @return 发送是否成功
+     */
+    public boolean sendBytes(byte[] sendBytes) {
+        if (null != mFileInputStream && null != mFileOutputStream) {
+            SerialPortWriteThread writeThread = mSerialPortWriteThread;
+            if (null != writeThread) {
+                return writeThread.send(sendBytes);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 发送数组的一部分, 不拷贝数据
+     * <p>
+     * 数据在发送线程写出前不能修改, 写出后回调 {@link OnSerialPortSendListener#onBuffersSent(ByteBuffer[])}。
+     *
+     * @param buffer 数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 发送是否成功
+     */
+    public boolean sendBytes(byte[] buffer, int offset, int length) {
+        SerialPortWriteThread writeThread = getWriteThread();
+        return null != writeThread && writeThread.send(buffer, offset, length);
+    }
+
+    /**
+     * 按 {@link #setFrameChecksum(Checksum)} 计算校验值, 写在数据之后一起发送, 不拷贝数据
+     * <p>
+     * 数组在 offset + length 之后需留有 {@link Checksum#size()} 字节, 数据在发送线程写出前不能修改。
+     *
+     * @param buffer 数据
+     * @param offset 起始位置
+     * @param length 数据长度, 不包括校验值
+     * @return 发送是否成功
+     */
+    public boolean sendWithChecksum(byte[] buffer, int offset, int length) {
+        Checksum checksum = mFrameChecksum;
+        if (null == checksum) {
+            throw new IllegalStateException("frame checksum not set");
+        }
+        return sendBytes(buffer, offset, checksum.append(buffer, offset, length));
+    }
+
+    /**
+     * 发送 ByteBuffer 中 [position, limit) 的数据, 不拷贝数据, 不修改 position / limit
+     * <p>
+     * 数据在发送线程写出前不能修改, 写出后回调 {@link OnSerialPortSendListener#onBuffersSent(ByteBuffer[])}。
+     * 使用 Direct ByteBuffer 时直接由本地代码写入串口。
+     *
+     * @param buffer 数据
+     * @return 发送是否成功
+     */
+    public boolean send(ByteBuffer buffer) {
+        return send(new ByteBuffer[]{buffer});
+    }
+
+    /**
+     * 将多段数据作为一帧发送, 例如帧头 / 数据 / 校验分别存放时无需拼接
+     * <p>
+     * 帧长度达到 {@link #setSendBatching(int, long, TimeUnit)} 的批量上限时直接通过 writev 一次写入,
+     * 否则与其他帧合并写入。数据在写出前不能修改。
+     *
+     * @param parts 各段数据
+     * @return 发送是否成功
+     */
+    public boolean send(ByteBuffer... parts) {
+        SerialPortWriteThread writeThread = getWriteThread();
+        return null != writeThread && writeThread.send(parts);
+    }
+
+    private SerialPortWriteThread getWriteThread() {
+        if (null != mFileInputStream && null != mFileOutputStream) {
+            return mSerialPortWriteThread;
+        }
+        return null;
+    }
+
+    /**
+     * 默认的 JNI 串口实现
+     */
+    private static class DefaultSerialPort implements ISerialPort, ISerialPortChannelProvider {
+
+        final SerialPort serialPort = new SerialPort();
+        FileDescriptor fileDescriptor = null;
+        InputStream inputStream = null;
+        OutputStream outputStream = null;
+        SerialPortChannel channel = null;
+
+        @Override
+        public boolean open(String path, int baudRate, int flags) throws IOException {
+            return open(path, new SerialConfig(baudRate).setFlags(flags));
+        }
+
+        @Override
+        public boolean open(String path, SerialConfig config) throws IOException {
+            fileDescriptor = serialPort.open2(path, config);
+            return true;
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            if (fileDescriptor == null) {
+                throw new IOException("Serial port is not initialized");
+            }
+            if (inputStream == null) {
+                inputStream = new FileInputStream(fileDescriptor);
+            }
+            return inputStream;
+        }
+
+        @Override
+        public OutputStream getOutputStream() throws IOException {
+            if (fileDescriptor == null) {
+                throw new IOException("Serial port is not initialized");
+            }
+            if (outputStream == null) {
+                outputStream = new FileOutputStream(fileDescriptor);
+            }
+            return outputStream;
+        }
+
+        @Override
+        public ISerialPortChannel getChannel() throws IOException {
+            if (fileDescriptor == null) {
+                throw new IOException("Serial port is not initialized");
+            }
+            if (channel == null) {
+                channel = new SerialPortChannel(fileDescriptor);
+            }
+            return channel;
+        }
+
+        @Override
+        public void close() {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+            if (fileDescriptor != null) {
+                fileDescriptor = null;
+                serialPort.close2();
+            }
+            if (inputStream != null) {
+                try {
+                    inputStream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                inputStream = null;
+            }
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                outputStream = null;
+            }
         }
-        return false;
     }
 }
@@ -0,0 +1,196 @@
+package com.kongqw.serialportlibrary;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 由本地线程读取串口的输入流
+ * <p>
+ * 本地线程持续 poll / read 串口, 直接写入与 Java 共享的 Direct ByteBuffer 环形缓冲区。
+ * Java 侧只在缓冲区读空时调用一次 JNI 等待新数据, 持续高速接收时多次内核读取合并为一次 JNI 调用和一次拷贝,
+ * 每次读取也不分配内存。缓冲区写满后本地线程停止读取, 数据积压在内核缓冲区中。
+ * <p>
+ * 本地线程在每次 read() 返回后立即记录 CLOCK_MONOTONIC, 通过 {@link #getArrivalNanos()} 获取。
+ * 按次读取时 Java 侧每次读取不跨越本地的两次 read(), 每段数据都有自己的到达时间, 但每段数据需要一次 JNI 调用。
+ * <p>
+ * 单生产者 / 单消费者, 同一时间只能由一个线程读取。
+ */
+
+public class SerialPortNativeReader extends InputStream implements TimestampedInput {
+
+    static {
+        System.loadLibrary("SerialPort");
+    }
+
+    public static final int DEFAULT_CAPACITY = 64 * 1024;
+
+    private final ByteBuffer mRing;
+    // 读取用的视图, 避免修改 mRing 的 position
+    private final ByteBuffer mView;
+    private final int mMask;
+    private final int mTimeoutMillis;
+    private final boolean mPerRead;
+    private final long[] mArrivalNanos = new long[1];
+    private final byte[] mSingleByte = new byte[1];
+    // 以下两个只由读取线程访问, 为从开始读取以来的字节数
+    private long mHead;
+    private long mTail;
+    // 正在 JNI 中等待的读取线程数, 为 0 后才能释放本地资源
+    private final AtomicInteger mUsers = new AtomicInteger();
+    private volatile boolean mClosed;
+    private long mHandle;
+
+    /**
+     * @param fd            串口文件描述符, 本地线程使用其副本, 关闭串口前需先关闭本流
+     * @param capacity      环形缓冲区容量, 向上取整为 2 的幂
+     * @param timeoutMillis 读取等待超时, 超时返回 -1; 小于 0 表示一直等待
+     * @throws IOException 创建本地线程失败
+     */
+    public SerialPortNativeReader(FileDescriptor fd, int capacity, int timeoutMillis) throws IOException {
+        this(fd, capacity, timeoutMillis, false);
+    }
+
+    /**
+     * @param fd            串口文件描述符, 本地线程使用其副本, 关闭串口前需先关闭本流
+     * @param capacity      环形缓冲区容量, 向上取整为 2 的幂
+     * @param timeoutMillis 读取等待超时, 超时返回 -1; 小于 0 表示一直等待
+     * @param perRead       是否按本地的每次 read() 分段返回, 否则合并返回所有已接收的数据
+     * @throws IOException 创建本地线程失败
+     */
+    public SerialPortNativeReader(FileDescriptor fd, int capacity, int timeoutMillis, boolean perRead) throws IOException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity = " + capacity);
+        }
+        int size = capacity < 2 ? 2 : Integer.highestOneBit(capacity - 1) << 1;
+        mRing = ByteBuffer.allocateDirect(size);
+        mView = mRing.duplicate();
+        mMask = size - 1;
+        mTimeoutMillis = timeoutMillis < 0 ? -1 : timeoutMillis;
+        mPerRead = perRead;
+        mHandle = nativeCreate(fd, mRing);
+    }
+
+    @Override
+    public int read() throws IOException {
+        return -1 == read(mSingleByte, 0, 1) ? -1 : mSingleByte[0] & 0xFF;
+    }
+
+    /**
+     * 读取已接收的数据, 缓冲区为空时等待
+     *
+     * @return 读取的字节数, 超时、流结束或已关闭时返回 -1
+     * @throws IOException 读取串口出错
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException("b.length = " + b.length + ", off = " + off + ", len = " + len);
+        }
+        if (0 == len) {
+            return 0;
+        }
+        if (mHead == mTail && !await()) {
+            return -1;
+        }
+        int size = (int) Math.min(len, mTail - mHead);
+        int index = (int) mHead & mMask;
+        int first = Math.min(size, mMask + 1 - index);
+        mView.position(index);
+        mView.get(b, off, first);
+        if (first < size) {
+            mView.position(0);
+            mView.get(b, off + first, size - first);
+        }
+        mHead += size;
+        return size;
+    }
+
+    /**
+     * 缓冲区中已接收但未读取的字节数, 不包括本地线程还未写入的数据
+     */
+    @Override
+    public int available() {
+        return (int) (mTail - mHead);
+    }
+
+    /**
+     * 最近一次读取返回的数据的到达时间, 合并返回时为其中最后一次本地 read() 的时间
+     *
+     * @return CLOCK_MONOTONIC, 与 {@link System#nanoTime()} 可比较
+     */
+    @Override
+    public long getArrivalNanos() {
+        return mArrivalNanos[0];
+    }
+
+    /**
+     * 环形缓冲区容量
+     *
+     * @return 字节数
+     */
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * 结束本地线程, 正在等待的读取返回 -1
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            nativeStop(mHandle);
+        }
+        if (0 == mUsers.get()) {
+            destroy();
+        }
+    }
+
+    /**
+     * 交还已读取的位置并等待新数据
+     *
+     * @return 有新数据时返回 true
+     */
+    private boolean await() throws IOException {
+        if (mClosed) {
+            return false;
+        }
+        mUsers.incrementAndGet();
+        try {
+            if (mClosed) {
+                return false;
+            }
+            long tail = nativeAwait(mHandle, mHead, mTimeoutMillis, mPerRead, mArrivalNanos);
+            if (tail < 0) {
+                return false;
+            }
+            mTail = tail;
+            return mTail != mHead;
+        } finally {
+            if (0 == mUsers.decrementAndGet() && mClosed) {
+                destroy();
+            }
+        }
+    }
+
+    private synchronized void destroy() {
+        if (0 != mHandle) {
+            nativeDestroy(mHandle);
+            mHandle = 0;
+        }
+    }
+
+    private static native long nativeCreate(FileDescriptor fd, ByteBuffer ring) throws IOException;
+
+    private static native long nativeAwait(long handle, long head, int timeoutMillis, boolean perRead, long[] arrivalNanos) throws IOException;
+
+    private static native void nativeStop(long handle);
+
+    private static native void nativeDestroy(long handle);
+}
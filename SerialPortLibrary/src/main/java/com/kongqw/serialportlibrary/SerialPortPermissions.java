@@ -0,0 +1,382 @@
+package com.kongqw.serialportlibrary;
+
+import android.util.Log;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 串口设备读写权限
+ * <p>
+ * 检查结果按设备缓存, 以 inode / mtime / ctime 判断设备节点是否变化, 未变化时不再重复检查或申请。
+ * 没有读写权限的设备交给后台线程, 同一时间积累的多个设备合并为一条 chmod,
+ * 在常驻的 su 进程中执行, 不必为每个设备启动一次 su。
+ * 每条 chmod 最多等待 {@link #TIMEOUT_MILLIS}, 超时 (例如 su 授权对话框无人处理) 后结束 su 进程, 视为没有权限。
+ * 只有 chmod 执行完成后仍没有权限时才缓存失败结果, su 超时或退出时不缓存, 下次申请时重试。
+ */
+
+public class SerialPortPermissions {
+
+    private static final String TAG = SerialPortPermissions.class.getSimpleName();
+
+    /**
+     * 等待 su 执行 chmod 的超时时间, 也可用作 {@link #requestAccess(File)} 结果的等待时间
+     */
+    public static final long TIMEOUT_MILLIS = 15000;
+    // su 没有输出时的轮询间隔
+    private static final long POLL_INTERVAL_MILLIS = 20;
+
+    private static final boolean NATIVE_AVAILABLE;
+
+    static {
+        boolean loaded;
+        try {
+            System.loadLibrary("SerialPort");
+            loaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            loaded = false;
+        }
+        NATIVE_AVAILABLE = loaded;
+    }
+
+    // 与 SerialPortPermissions.c 中的定义一致
+    private static final int STAT_INO = 0;
+    private static final int STAT_MTIME = 1;
+    private static final int STAT_CTIME = 2;
+    private static final int STAT_COUNT = 4;
+
+    private static final String SU_PATH = "/system/bin/su";
+    private static final String DONE_MARKER = "__serial_port_chmod_done__";
+
+    private static SerialPortPermissions sDefault;
+
+    private final Map<String, Entry> mCache = new HashMap<>();
+    private final List<Request> mQueue = new ArrayList<>();
+    private Thread mWorker;
+    private Process mRootShell;
+    private OutputStream mRootShellInput;
+    private BufferedReader mRootShellOutput;
+
+    /**
+     * 全局共享的权限管理
+     *
+     * @return SerialPortPermissions
+     */
+    public static synchronized SerialPortPermissions getDefault() {
+        if (null == sDefault) {
+            sDefault = new SerialPortPermissions();
+        }
+        return sDefault;
+    }
+
+    /**
+     * 是否有读写权限, 只使用缓存和 access 检查, 不会申请权限
+     *
+     * @param device 串口设备
+     * @return 是否可读写
+     */
+    public boolean hasAccess(File device) {
+        long[] stat = stat(device);
+        if (null == stat) {
+            return false;
+        }
+        synchronized (this) {
+            Entry entry = mCache.get(device.getAbsolutePath());
+            if (null != entry && entry.matches(stat)) {
+                return entry.mGranted;
+            }
+        }
+        boolean granted = device.canRead() && device.canWrite();
+        if (granted) {
+            putCache(device, stat, true);
+        }
+        return granted;
+    }
+
+    /**
+     * 确保有读写权限, 没有时通过 su 修改为 777
+     * <p>
+     * 已有权限或缓存表明 chmod 执行后仍没有权限且设备节点未变化时立即完成, 否则在后台线程中申请。
+     *
+     * @param device 串口设备
+     * @return 是否可读写
+     */
+    public Future<Boolean> requestAccess(File device) {
+        Request request = new Request(device);
+        long[] stat = stat(device);
+        if (null == stat) {
+            request.complete(false);
+            return request;
+        }
+        synchronized (this) {
+            Entry entry = mCache.get(device.getAbsolutePath());
+            if (null != entry && entry.matches(stat)) {
+                request.complete(entry.mGranted);
+                return request;
+            }
+        }
+        if (device.canRead() && device.canWrite()) {
+            putCache(device, stat, true);
+            request.complete(true);
+            return request;
+        }
+        synchronized (this) {
+            mQueue.add(request);
+            if (null == mWorker) {
+                mWorker = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        drain();
+                    }
+                }, "SerialPortPermissions");
+                mWorker.setDaemon(true);
+                mWorker.start();
+            }
+        }
+        return request;
+    }
+
+    /**
+     * 清除设备的缓存结果, 下次检查时重新判断
+     *
+     * @param device 串口设备
+     */
+    public synchronized void invalidate(File device) {
+        mCache.remove(device.getAbsolutePath());
+    }
+
+    /**
+     * 结束常驻的 su 进程, 之后需要时会重新启动
+     */
+    public synchronized void close() {
+        if (null != mRootShell) {
+            mRootShell.destroy();
+            mRootShell = null;
+            mRootShellInput = null;
+            mRootShellOutput = null;
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            List<Request> batch;
+            synchronized (this) {
+                if (mQueue.isEmpty()) {
+                    mWorker = null;
+                    return;
+                }
+                batch = new ArrayList<>(mQueue);
+                mQueue.clear();
+            }
+            boolean executed = chmod(batch);
+            for (Request request : batch) {
+                File device = request.mDevice;
+                boolean granted = device.canRead() && device.canWrite();
+                long[] stat = stat(device);
+                // su 超时或退出时 chmod 没有执行, 不缓存失败结果, 以免设备节点不变时一直视为没有权限
+                if (null != stat && (granted || executed)) {
+                    putCache(device, stat, granted);
+                }
+                request.complete(granted);
+            }
+        }
+    }
+
+    /**
+     * 在常驻的 su 进程中执行一条 chmod, 等待结束标记
+     *
+     * @return chmod 是否执行完成 (不论退出码), su 启动失败、退出或超时返回 false
+     */
+    private boolean chmod(List<Request> batch) {
+        StringBuilder cmd = new StringBuilder("chmod 777");
+        for (Request request : batch) {
+            cmd.append(' ').append(quote(request.mDevice.getAbsolutePath()));
+        }
+        cmd.append("; echo ").append(DONE_MARKER).append(" $?\n");
+        try {
+            Process shell;
+            OutputStream input;
+            BufferedReader output;
+            synchronized (this) {
+                if (null == mRootShell) {
+                    // 获取ROOT权限, 错误输出合并到标准输出, 避免 chmod 的错误信息写满管道阻塞 su
+                    mRootShell = new ProcessBuilder(SU_PATH).redirectErrorStream(true).start();
+                    mRootShellInput = mRootShell.getOutputStream();
+                    mRootShellOutput = new BufferedReader(new InputStreamReader(mRootShell.getInputStream()));
+                }
+                shell = mRootShell;
+                input = mRootShellInput;
+                output = mRootShellOutput;
+            }
+            input.write(cmd.toString().getBytes());
+            input.flush();
+            String result = awaitDone(shell, output);
+            if (null != result) {
+                Log.i(TAG, "chmod: " + cmd.toString().trim() + " -> " + result);
+                return true;
+            }
+        } catch (IOException e) {
+            // 没有ROOT权限
+            e.printStackTrace();
+        }
+        close();
+        return false;
+    }
+
+    /**
+     * 等待结束标记, 只读取已到达的输出, su 没有响应时不会一直阻塞
+     *
+     * @return chmod 的退出码, su 已退出或超时返回 null
+     */
+    private static String awaitDone(Process shell, BufferedReader output) throws IOException {
+        long deadline = System.nanoTime() + TIMEOUT_MILLIS * 1000000L;
+        StringBuilder line = new StringBuilder();
+        while (true) {
+            // 先判断是否退出再读取, 退出前写出的数据不会遗漏
+            boolean exited = hasExited(shell);
+            while (output.ready()) {
+                int c = output.read();
+                if (-1 == c) {
+                    break;
+                }
+                if ('\n' != c) {
+                    line.append((char) c);
+                    continue;
+                }
+                // 错误信息可能没有换行, 标记不一定在行首
+                int index = line.indexOf(DONE_MARKER);
+                if (index >= 0) {
+                    return line.substring(index + DONE_MARKER.length()).trim();
+                }
+                line.setLength(0);
+            }
+            if (exited) {
+                // 没有ROOT权限或授权被拒绝
+                Log.i(TAG, "chmod: su exited");
+                return null;
+            }
+            if (System.nanoTime() - deadline >= 0) {
+                // 授权对话框无人处理或 su 无响应
+                Log.i(TAG, "chmod: su timed out");
+                return null;
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+    }
+
+    private static boolean hasExited(Process process) {
+        try {
+            process.exitValue();
+            return true;
+        } catch (IllegalThreadStateException e) {
+            return false;
+        }
+    }
+
+    private synchronized void putCache(File device, long[] stat, boolean granted) {
+        mCache.put(device.getAbsolutePath(), new Entry(stat, granted));
+    }
+
+    /**
+     * @return inode, mtime, ctime, 设备不存在时返回 null
+     */
+    private static long[] stat(File device) {
+        long[] stat = new long[STAT_COUNT];
+        if (NATIVE_AVAILABLE) {
+            return 0 == nativeStat(device.getAbsolutePath(), stat) ? stat : null;
+        }
+        if (!device.exists()) {
+            return null;
+        }
+        stat[STAT_MTIME] = device.lastModified();
+        return stat;
+    }
+
+    private static String quote(String path) {
+        return "'" + path.replace("'", "'\\''") + "'";
+    }
+
+    private static final class Entry {
+        final long mInode;
+        final long mMtime;
+        final long mCtime;
+        final boolean mGranted;
+
+        Entry(long[] stat, boolean granted) {
+            mInode = stat[STAT_INO];
+            mMtime = stat[STAT_MTIME];
+            mCtime = stat[STAT_CTIME];
+            mGranted = granted;
+        }
+
+        boolean matches(long[] stat) {
+            return mInode == stat[STAT_INO] && mMtime == stat[STAT_MTIME] && mCtime == stat[STAT_CTIME];
+        }
+    }
+
+    /**
+     * 一次权限申请的结果, 由后台线程完成, 不能取消
+     */
+    private static final class Request implements Future<Boolean> {
+
+        final File mDevice;
+        private final CountDownLatch mDone = new CountDownLatch(1);
+        private volatile boolean mGranted;
+
+        Request(File device) {
+            mDevice = device;
+        }
+
+        void complete(boolean granted) {
+            mGranted = granted;
+            mDone.countDown();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return 0 == mDone.getCount();
+        }
+
+        @Override
+        public Boolean get() throws InterruptedException {
+            mDone.await();
+            return mGranted;
+        }
+
+        @Override
+        public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+            if (!mDone.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return mGranted;
+        }
+    }
+
+    private static native int nativeStat(String path, long[] out);
+}
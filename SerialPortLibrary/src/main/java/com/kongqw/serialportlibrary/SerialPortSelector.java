@@ -0,0 +1,275 @@
+package com.kongqw.serialportlibrary;
+
+import android.util.Log;
+
+import com.kongqw.serialportlibrary.listener.OnSerialPortReadyListener;
+
+import java.io.FileDescriptor;
+import java.io.IOException;
+
+/**
+ * 串口多路复用器
+ * <p>
+ * 一个线程通过 epoll 监听所有已注册串口的读写就绪事件并分发给对应的监听,
+ * 线程数量不随串口数量增加。
+ */
+
+public class SerialPortSelector {
+
+    static {
+        System.loadLibrary("SerialPort");
+    }
+
+    private static final String TAG = SerialPortSelector.class.getSimpleName();
+
+    // 与 SerialPortSelector.c 中的定义一致
+    public static final int OP_READ = 1;
+    public static final int OP_WRITE = 4;
+    private static final int EVENT_ERROR = 0x100;
+
+    private static final int MAX_EVENTS = 64;
+
+    private static SerialPortSelector sDefault;
+
+    private final Object mLock = new Object();
+    private final int[] mReadyFds = new int[MAX_EVENTS];
+    private final int[] mReadyOps = new int[MAX_EVENTS];
+    // 以 fd 为下标的注册表, 修改时整体替换, 分发线程无锁读取
+    private volatile Registration[] mRegistrations = new Registration[0];
+    private long mHandle;
+    private Thread mSelectThread;
+    private ThreadScheduling mThreadScheduling;
+    private volatile boolean mClosed;
+
+    /**
+     * 全局共享的多路复用器
+     *
+     * @return SerialPortSelector
+     */
+    public static synchronized SerialPortSelector getDefault() throws IOException {
+        if (null == sDefault || sDefault.mClosed) {
+            sDefault = new SerialPortSelector();
+        }
+        return sDefault;
+    }
+
+    public SerialPortSelector() throws IOException {
+        mHandle = nativeCreate();
+    }
+
+    /**
+     * 多路复用线程启动后应用的调度参数, 需在注册第一个串口前设置
+     *
+     * @param scheduling 调度参数, null 表示使用默认调度
+     */
+    public void setThreadScheduling(ThreadScheduling scheduling) {
+        synchronized (mLock) {
+            mThreadScheduling = scheduling;
+        }
+    }
+
+    /**
+     * 注册串口
+     *
+     * @param channel    串口通道
+     * @param interestOps 关注的事件 {@link #OP_READ} {@link #OP_WRITE}
+     * @param listener   事件监听
+     * @throws IOException IOException
+     */
+    public void register(SerialPortChannel channel, int interestOps, OnSerialPortReadyListener listener) throws IOException {
+        synchronized (mLock) {
+            ensureOpen();
+            int fd = nativeRegister(mHandle, channel.getFileDescriptor(), interestOps);
+            Registration[] registrations = mRegistrations;
+            if (fd >= registrations.length) {
+                Registration[] grown = new Registration[Math.max(fd + 1, registrations.length * 2)];
+                System.arraycopy(registrations, 0, grown, 0, registrations.length);
+                registrations = grown;
+            } else {
+                registrations = registrations.clone();
+            }
+            registrations[fd] = new Registration(fd, channel, listener);
+            mRegistrations = registrations;
+            startSelectThread();
+        }
+    }
+
+    /**
+     * 修改关注的事件, 例如发送缓冲区满时临时关注 {@link #OP_WRITE}
+     *
+     * @param channel     串口通道
+     * @param interestOps 关注的事件
+     * @throws IOException IOException
+     */
+    public void setInterestOps(SerialPortChannel channel, int interestOps) throws IOException {
+        synchronized (mLock) {
+            ensureOpen();
+            nativeRegister(mHandle, channel.getFileDescriptor(), interestOps);
+        }
+    }
+
+    /**
+     * 注销串口, 需在关闭串口之前调用
+     *
+     * @param channel 串口通道
+     */
+    public void unregister(SerialPortChannel channel) {
+        synchronized (mLock) {
+            Registration[] registrations = mRegistrations;
+            for (int fd = 0; fd < registrations.length; fd++) {
+                Registration registration = registrations[fd];
+                if (null != registration && registration.channel == channel) {
+                    removeLocked(fd);
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 已注册的串口数量
+     *
+     * @return 数量
+     */
+    public int getRegisteredCount() {
+        int count = 0;
+        for (Registration registration : mRegistrations) {
+            if (null != registration) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 关闭多路复用器, 停止线程
+     */
+    public void close() {
+        Thread selectThread;
+        synchronized (mLock) {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            mRegistrations = new Registration[0];
+            nativeWakeup(mHandle);
+            selectThread = mSelectThread;
+            mSelectThread = null;
+        }
+        if (null != selectThread) {
+            try {
+                selectThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (mLock) {
+            nativeDestroy(mHandle);
+            mHandle = 0;
+        }
+    }
+
+    private void removeLocked(int fd) {
+        Registration[] registrations = mRegistrations.clone();
+        registrations[fd] = null;
+        mRegistrations = registrations;
+        if (!mClosed) {
+            nativeUnregister(mHandle, fd);
+        }
+    }
+
+    private void startSelectThread() {
+        if (null != mSelectThread) {
+            return;
+        }
+        final ThreadScheduling scheduling = mThreadScheduling;
+        mSelectThread = new Thread("SerialPortSelector") {
+            @Override
+            public void run() {
+                if (null != scheduling) {
+                    scheduling.apply();
+                }
+                select();
+            }
+        };
+        mSelectThread.start();
+    }
+
+    private void select() {
+        while (!mClosed) {
+            int count;
+            try {
+                count = nativeWait(mHandle, mReadyFds, mReadyOps, -1);
+            } catch (IOException e) {
+                Log.e(TAG, "select: ", e);
+                return;
+            }
+            Registration[] registrations = mRegistrations;
+            for (int i = 0; i < count; i++) {
+                int fd = mReadyFds[i];
+                if (fd >= registrations.length || null == registrations[fd]) {
+                    continue;
+                }
+                dispatch(registrations[fd], mReadyOps[i]);
+            }
+        }
+    }
+
+    private void dispatch(Registration registration, int readyOps) {
+        OnSerialPortReadyListener listener = registration.listener;
+        try {
+            if (0 != (readyOps & OP_READ)) {
+                listener.onReadable(registration.channel);
+            }
+            if (0 != (readyOps & OP_WRITE)) {
+                listener.onWritable(registration.channel);
+            }
+            if (0 != (readyOps & EVENT_ERROR)) {
+                throw new IOException("Serial port hang up");
+            }
+        } catch (Exception e) {
+            synchronized (mLock) {
+                if (mRegistrations.length <= registration.fd || mRegistrations[registration.fd] != registration) {
+                    // 已被注销, 例如串口在读写时被关闭, 不再回调
+                    return;
+                }
+                removeLocked(registration.fd);
+            }
+            try {
+                listener.onError(registration.channel, e);
+            } catch (Exception e2) {
+                e2.printStackTrace();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (mClosed) {
+            throw new IOException("SerialPortSelector is closed");
+        }
+    }
+
+    private static final class Registration {
+        final int fd;
+        final SerialPortChannel channel;
+        final OnSerialPortReadyListener listener;
+
+        Registration(int fd, SerialPortChannel channel, OnSerialPortReadyListener listener) {
+            this.fd = fd;
+            this.channel = channel;
+            this.listener = listener;
+        }
+    }
+
+    private static native long nativeCreate() throws IOException;
+
+    private static native int nativeRegister(long handle, FileDescriptor fd, int ops) throws IOException;
+
+    private static native void nativeUnregister(long handle, int fd);
+
+    private static native int nativeWait(long handle, int[] readyFds, int[] readyOps, int timeoutMillis) throws IOException;
+
+    private static native void nativeWakeup(long handle);
+
+    private static native void nativeDestroy(long handle);
+}
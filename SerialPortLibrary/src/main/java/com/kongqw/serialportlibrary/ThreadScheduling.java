@@ -0,0 +1,144 @@
+package com.kongqw.serialportlibrary;
+
+import android.os.Process;
+import android.util.Log;
+
+import java.util.Arrays;
+
+/**
+ * 读写线程的调度参数
+ * <p>
+ * 由线程启动后在自身线程中调用 {@link #apply()}, 可以设置优先级、绑定 CPU,
+ * 在有权限时使用 SCHED_FIFO 实时调度, 将对时序敏感的串口与应用的其他线程隔离。
+ */
+
+public class ThreadScheduling {
+
+    private static final String TAG = ThreadScheduling.class.getSimpleName();
+
+    private static final boolean NATIVE_AVAILABLE;
+
+    static {
+        boolean loaded;
+        try {
+            System.loadLibrary("SerialPort");
+            loaded = true;
+        } catch (UnsatisfiedLinkError e) {
+            loaded = false;
+        }
+        NATIVE_AVAILABLE = loaded;
+    }
+
+    private static final int MIN_FIFO_PRIORITY = 1;
+    private static final int MAX_FIFO_PRIORITY = 99;
+
+    private boolean mHasPriority;
+    private int mPriority;
+    private int[] mCpus;
+    private int mFifoPriority;
+
+    /**
+     * 线程优先级
+     *
+     * @param priority {@link Process#setThreadPriority(int)} 的取值, 例如 Process.THREAD_PRIORITY_URGENT_AUDIO
+     * @return ThreadScheduling
+     */
+    public ThreadScheduling setPriority(int priority) {
+        if (priority < -20 || priority > 19) {
+            throw new IllegalArgumentException("priority = " + priority);
+        }
+        mHasPriority = true;
+        mPriority = priority;
+        return this;
+    }
+
+    /**
+     * 只在指定的 CPU 上运行
+     *
+     * @param cpus CPU 编号, 不传表示不限制
+     * @return ThreadScheduling
+     */
+    public ThreadScheduling setCpuAffinity(int... cpus) {
+        for (int cpu : cpus) {
+            if (cpu < 0) {
+                throw new IllegalArgumentException("cpus = " + Arrays.toString(cpus));
+            }
+        }
+        mCpus = 0 == cpus.length ? null : cpus.clone();
+        return this;
+    }
+
+    /**
+     * 使用 SCHED_FIFO 实时调度, 需要 CAP_SYS_NICE, 没有权限时退回 {@link #setPriority(int)} 设置的优先级
+     *
+     * @param priority 实时优先级 1 - 99, 0 表示不使用
+     * @return ThreadScheduling
+     */
+    public ThreadScheduling setFifoPriority(int priority) {
+        if (0 != priority && (priority < MIN_FIFO_PRIORITY || priority > MAX_FIFO_PRIORITY)) {
+            throw new IllegalArgumentException("priority = " + priority);
+        }
+        mFifoPriority = priority;
+        return this;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public int[] getCpuAffinity() {
+        return null == mCpus ? null : mCpus.clone();
+    }
+
+    public int getFifoPriority() {
+        return mFifoPriority;
+    }
+
+    /**
+     * 应用到当前线程
+     *
+     * @return 全部设置成功时返回 true, 失败的设置只记录日志
+     */
+    public boolean apply() {
+        boolean applied = true;
+        String name = Thread.currentThread().getName();
+        if (null != mCpus) {
+            int error = NATIVE_AVAILABLE ? nativeSetAffinity(mCpus) : -1;
+            if (0 != error) {
+                Log.w(TAG, "apply: " + name + " sched_setaffinity " + Arrays.toString(mCpus) + " failed, errno = " + error);
+                applied = false;
+            }
+        }
+        if (0 != mFifoPriority) {
+            int error = NATIVE_AVAILABLE ? nativeSetFifo(mFifoPriority) : -1;
+            if (0 == error) {
+                return applied;
+            }
+            Log.w(TAG, "apply: " + name + " SCHED_FIFO " + mFifoPriority + " failed, errno = " + error);
+            applied = false;
+        }
+        if (mHasPriority) {
+            try {
+                Process.setThreadPriority(mPriority);
+            } catch (RuntimeException e) {
+                // 没有权限设置更高的优先级时抛出 SecurityException
+                Log.w(TAG, "apply: " + name + " setThreadPriority " + mPriority + " failed, " + e);
+                applied = false;
+            }
+        }
+        return applied;
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadScheduling{" +
+                "priority=" + (mHasPriority ? String.valueOf(mPriority) : "default") +
+                ", cpus=" + Arrays.toString(mCpus) +
+                ", fifoPriority=" + mFifoPriority +
+                '}';
+    }
+
+    private static native int nativeSetAffinity(int[] cpus);
+
+    private static native int nativeSetFifo(int priority);
+}
@@ -0,0 +1,17 @@
+package com.kongqw.serialportlibrary;
+
+/**
+ * 能提供数据到达时间的输入流
+ * <p>
+ * 到达时间在本地 read() 返回后立即记录, 而不是在 Java 读取返回之后, 不包含读取线程被调度的延迟。
+ */
+
+public interface TimestampedInput {
+
+    /**
+     * 最近一次读取返回的数据的到达时间, 即其中最后一个字节的读取时间
+     *
+     * @return CLOCK_MONOTONIC, 与 {@link System#nanoTime()} 可比较
+     */
+    long getArrivalNanos();
+}
@@ -0,0 +1,46 @@
+package com.kongqw.serialportlibrary;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 记录每次读取到达时间的串口输入流
+ * <p>
+ * 通过 {@link SerialPortChannel#read(byte[], int, int, long[])} 读取, 每次读取只有一次 JNI 调用, 不分配内存。
+ * 通道由读写共用, 关闭本流不会关闭通道和串口。
+ */
+
+public class TimestampedInputStream extends InputStream implements TimestampedInput {
+
+    private final SerialPortChannel mChannel;
+    private final long[] mArrivalNanos = new long[1];
+    private final byte[] mSingleByte = new byte[1];
+    private volatile boolean mClosed;
+
+    public TimestampedInputStream(SerialPortChannel channel) {
+        mChannel = channel;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return -1 == read(mSingleByte, 0, 1) ? -1 : mSingleByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (mClosed) {
+            return -1;
+        }
+        return mChannel.read(b, off, len, mArrivalNanos);
+    }
+
+    @Override
+    public long getArrivalNanos() {
+        return mArrivalNanos[0];
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+    }
+}
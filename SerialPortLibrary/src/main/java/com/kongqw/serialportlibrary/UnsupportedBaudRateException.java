@@ -0,0 +1,18 @@
+package com.kongqw.serialportlibrary;
+
+import java.io.IOException;
+
+/**
+ * 波特率不受支持
+ * <p>
+ * 不在标准波特率表中的波特率通过 termios2/BOTHER 设置, 内核或驱动不支持时抛出。
+ */
+
+public class UnsupportedBaudRateException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public UnsupportedBaudRateException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,166 @@
+package com.kongqw.serialportlibrary.buffer;
+
+/**
+ * 字节环形缓冲区, 供帧解析器增量解析使用, 非线程安全
+ * <p>
+ * 下标均相对于当前读位置, 0 表示最早写入且尚未消费的字节。
+ */
+
+public final class ByteRingBuffer {
+
+    private final byte[] mBuffer;
+    private int mHead;
+    private int mSize;
+
+    public ByteRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity = " + capacity);
+        }
+        mBuffer = new byte[capacity];
+    }
+
+    /**
+     * 写入数据
+     *
+     * @param src    数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 实际写入的字节数, 缓冲区空间不足时小于 length
+     */
+    public int write(byte[] src, int offset, int length) {
+        int count = Math.min(length, mBuffer.length - mSize);
+        int tail = physicalIndex(mSize);
+        int first = Math.min(count, mBuffer.length - tail);
+        System.arraycopy(src, offset, mBuffer, tail, first);
+        if (count > first) {
+            System.arraycopy(src, offset + first, mBuffer, 0, count - first);
+        }
+        mSize += count;
+        return count;
+    }
+
+    /**
+     * 读取单个字节, 不消费
+     *
+     * @param index 相对下标
+     * @return 字节
+     */
+    public byte get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index = " + index + ", size = " + mSize);
+        }
+        return mBuffer[physicalIndex(index)];
+    }
+
+    /**
+     * 查找字节序列
+     *
+     * @param pattern   字节序列
+     * @param fromIndex 起始相对下标
+     * @return 第一次出现的相对下标, 未找到返回 -1
+     */
+    public int indexOf(byte[] pattern, int fromIndex) {
+        int last = mSize - pattern.length;
+        outer:
+        for (int i = Math.max(fromIndex, 0); i <= last; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if (mBuffer[physicalIndex(i + j)] != pattern[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    /**
+     * 指定区间在底层数组中是否连续
+     *
+     * @param index  相对下标
+     * @param length 长度
+     * @return 是否连续
+     */
+    public boolean isContiguous(int index, int length) {
+        return physicalIndex(index) + length <= mBuffer.length;
+    }
+
+    /**
+     * 相对下标对应的底层数组下标
+     *
+     * @param index 相对下标
+     * @return 数组下标
+     */
+    public int physicalIndex(int index) {
+        int position = mHead + index;
+        return position >= mBuffer.length ? position - mBuffer.length : position;
+    }
+
+    /**
+     * 底层数组, 配合 {@link #isContiguous(int, int)} 和 {@link #physicalIndex(int)} 直接访问
+     *
+     * @return 底层数组
+     */
+    public byte[] array() {
+        return mBuffer;
+    }
+
+    /**
+     * 拷贝数据, 不消费
+     *
+     * @param index     相对下标
+     * @param dst       目标数组
+     * @param dstOffset 目标起始位置
+     * @param length    长度
+     */
+    public void copyTo(int index, byte[] dst, int dstOffset, int length) {
+        int start = physicalIndex(index);
+        int first = Math.min(length, mBuffer.length - start);
+        System.arraycopy(mBuffer, start, dst, dstOffset, first);
+        if (length > first) {
+            System.arraycopy(mBuffer, 0, dst, dstOffset + first, length - first);
+        }
+    }
+
+    /**
+     * 消费数据
+     *
+     * @param length 长度
+     */
+    public void skip(int length) {
+        if (length < 0 || length > mSize) {
+            throw new IndexOutOfBoundsException("length = " + length + ", size = " + mSize);
+        }
+        mHead = physicalIndex(length);
+        mSize -= length;
+        if (0 == mSize) {
+            mHead = 0;
+        }
+    }
+
+    public void clear() {
+        mHead = 0;
+        mSize = 0;
+    }
+
+    /**
+     * 未消费的字节数
+     *
+     * @return 字节数
+     */
+    public int available() {
+        return mSize;
+    }
+
+    /**
+     * 剩余可写入的字节数
+     *
+     * @return 字节数
+     */
+    public int remaining() {
+        return mBuffer.length - mSize;
+    }
+
+    public int capacity() {
+        return mBuffer.length;
+    }
+}
@@ -0,0 +1,139 @@
+package com.kongqw.serialportlibrary.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 可复用的接收缓冲区
+ * <p>
+ * 由 {@link ReceiveBufferPool} 分配, 有效数据位于 [offset, offset + length)。
+ * 使用完毕后必须调用 {@link #recycle()} 归还缓冲池, 归还后不可再访问。
+ */
+
+public final class ReceiveBuffer {
+
+    private final ReceiveBufferPool mPool;
+    private final byte[] mArray;
+    private final ByteBuffer mByteBuffer;
+    private int mLength;
+    private long mArrivalNanos;
+    private long mGapNanos = -1;
+    private boolean mInUse;
+
+    ReceiveBuffer(ReceiveBufferPool pool, int capacity) {
+        mPool = pool;
+        mArray = new byte[capacity];
+        mByteBuffer = ByteBuffer.wrap(mArray);
+    }
+
+    /**
+     * 底层数组
+     *
+     * @return 底层数组
+     */
+    public byte[] array() {
+        return mArray;
+    }
+
+    /**
+     * 有效数据在数组中的起始位置
+     *
+     * @return 起始位置
+     */
+    public int offset() {
+        return 0;
+    }
+
+    /**
+     * 有效数据长度
+     *
+     * @return 数据长度
+     */
+    public int length() {
+        return mLength;
+    }
+
+    /**
+     * 缓冲区容量
+     *
+     * @return 容量
+     */
+    public int capacity() {
+        return mArray.length;
+    }
+
+    /**
+     * 设置有效数据长度, 由读取线程在填充数据后调用
+     *
+     * @param length 数据长度
+     */
+    public void setLength(int length) {
+        if (length < 0 || length > mArray.length) {
+            throw new IndexOutOfBoundsException("length = " + length + ", capacity = " + mArray.length);
+        }
+        mLength = length;
+    }
+
+    /**
+     * 数据到达时间, 读取返回后立即记录, 开启接收时间戳时由本地代码在 read() 返回后记录
+     *
+     * @return {@link System#nanoTime()}
+     */
+    public long getArrivalNanos() {
+        return mArrivalNanos;
+    }
+
+    public void setArrivalNanos(long arrivalNanos) {
+        mArrivalNanos = arrivalNanos;
+    }
+
+    /**
+     * 与同一串口上一段数据到达时间的间隔, 减去本段数据的传输时间即为之前的静默时长
+     *
+     * @return 纳秒, 第一段数据为 -1
+     */
+    public long getGapNanos() {
+        return mGapNanos;
+    }
+
+    public void setGapNanos(long gapNanos) {
+        mGapNanos = gapNanos;
+    }
+
+    /**
+     * 以 ByteBuffer 的形式访问有效数据, 每次调用返回同一个对象并重置 position/limit
+     *
+     * @return 覆盖有效数据的 ByteBuffer
+     */
+    public ByteBuffer byteBuffer() {
+        mByteBuffer.clear();
+        mByteBuffer.limit(mLength);
+        return mByteBuffer;
+    }
+
+    /**
+     * 拷贝出有效数据
+     *
+     * @return 新的数组
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[mLength];
+        System.arraycopy(mArray, 0, bytes, 0, mLength);
+        return bytes;
+    }
+
+    /**
+     * 归还缓冲池
+     */
+    public void recycle() {
+        if (!mInUse) {
+            throw new IllegalStateException("ReceiveBuffer already recycled");
+        }
+        mInUse = false;
+        mLength = 0;
+        mPool.release(this);
+    }
+
+    void markInUse() {
+        mInUse = true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.kongqw.serialportlibrary.buffer;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 接收缓冲池
+ * <p>
+ * 读取线程从池中获取缓冲区填充数据, 监听者处理完后归还, 稳定运行时不再产生新的数组。
+ * 池中没有空闲缓冲区时会临时分配新的缓冲区, 归还时超出上限的部分直接丢弃。
+ */
+
+public class ReceiveBufferPool {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+    public static final int DEFAULT_POOL_SIZE = 16;
+
+    private final int mBufferSize;
+    private final ArrayBlockingQueue<ReceiveBuffer> mFreeBuffers;
+
+    public ReceiveBufferPool() {
+        this(DEFAULT_BUFFER_SIZE, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param bufferSize 单个缓冲区大小
+     * @param poolSize   池中最多保留的空闲缓冲区数量
+     */
+    public ReceiveBufferPool(int bufferSize, int poolSize) {
+        if (bufferSize <= 0 || poolSize <= 0) {
+            throw new IllegalArgumentException("bufferSize = " + bufferSize + ", poolSize = " + poolSize);
+        }
+        mBufferSize = bufferSize;
+        mFreeBuffers = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            mFreeBuffers.offer(new ReceiveBuffer(this, bufferSize));
+        }
+    }
+
+    /**
+     * 获取一个空闲缓冲区
+     *
+     * @return 缓冲区
+     */
+    public ReceiveBuffer acquire() {
+        ReceiveBuffer buffer = mFreeBuffers.poll();
+        if (null == buffer) {
+            buffer = new ReceiveBuffer(this, mBufferSize);
+        }
+        buffer.markInUse();
+        return buffer;
+    }
+
+    void release(ReceiveBuffer buffer) {
+        mFreeBuffers.offer(buffer);
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * 当前空闲缓冲区数量
+     *
+     * @return 空闲数量
+     */
+    public int getFreeCount() {
+        return mFreeBuffers.size();
+    }
+}
@@ -0,0 +1,143 @@
+package com.kongqw.serialportlibrary.buffer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁有界环形队列
+ * <p>
+ * 多个发送线程同时入队, 由发送线程出队。每个槽位带有序号, 入队和出队只需一次 CAS,
+ * 入队出队过程中不分配对象。
+ *
+ * @param <E> 元素类型
+ */
+
+public final class SendRing<E> {
+
+    private final int mMask;
+    private final Object[] mElements;
+    private final long[] mTimestamps;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mEnqueuePosition = new AtomicLong();
+    private final AtomicLong mDequeuePosition = new AtomicLong();
+
+    /**
+     * @param capacity 容量, 向上取整为 2 的幂
+     */
+    public SendRing(int capacity) {
+        if (capacity < 2) {
+            capacity = 2;
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mElements = new Object[size];
+        mTimestamps = new long[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    /**
+     * 入队
+     *
+     * @param element 元素
+     * @return 队列已满时返回 false
+     */
+    public boolean offer(E element) {
+        return offer(element, 0);
+    }
+
+    /**
+     * 入队
+     *
+     * @param element   元素
+     * @param timestamp 随元素保存的时间戳, 出队时取回
+     * @return 队列已满时返回 false
+     */
+    public boolean offer(E element, long timestamp) {
+        long position = mEnqueuePosition.get();
+        int index;
+        while (true) {
+            index = (int) position & mMask;
+            long difference = mSequences.get(index) - position;
+            if (0 == difference) {
+                if (mEnqueuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mEnqueuePosition.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = mEnqueuePosition.get();
+            }
+        }
+        mElements[index] = element;
+        mTimestamps[index] = timestamp;
+        mSequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * 出队
+     *
+     * @return 队列为空(或队首元素尚未写入完成)时返回 null
+     */
+    public E poll() {
+        return poll(null);
+    }
+
+    /**
+     * 出队
+     *
+     * @param timestamp 不为 null 时 timestamp[0] 存放入队时的时间戳
+     * @return 队列为空(或队首元素尚未写入完成)时返回 null
+     */
+    @SuppressWarnings("unchecked")
+    public E poll(long[] timestamp) {
+        long position = mDequeuePosition.get();
+        int index;
+        while (true) {
+            index = (int) position & mMask;
+            long difference = mSequences.get(index) - (position + 1);
+            if (0 == difference) {
+                if (mDequeuePosition.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = mDequeuePosition.get();
+            } else if (difference < 0) {
+                return null;
+            } else {
+                position = mDequeuePosition.get();
+            }
+        }
+        E element = (E) mElements[index];
+        if (null != timestamp) {
+            timestamp[0] = mTimestamps[index];
+        }
+        mElements[index] = null;
+        mSequences.lazySet(index, position + mMask + 1);
+        return element;
+    }
+
+    /**
+     * 当前元素数量(包括已占位但尚未写入完成的元素)
+     *
+     * @return 数量
+     */
+    public int size() {
+        long size = mEnqueuePosition.get() - mDequeuePosition.get();
+        if (size < 0) {
+            return 0;
+        }
+        return (int) Math.min(size, mElements.length);
+    }
+
+    public boolean isEmpty() {
+        return 0 == size();
+    }
+
+    public int capacity() {
+        return mElements.length;
+    }
+}
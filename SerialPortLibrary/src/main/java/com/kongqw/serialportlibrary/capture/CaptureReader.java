@@ -0,0 +1,103 @@
+package com.kongqw.serialportlibrary.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 按时间顺序读取 {@link TrafficRecorder} 记录的分段文件
+ * <p>
+ * 由一个线程读取, {@link #close()} 可以在其他线程中调用, 正在进行的 {@link #next()} 随后返回 null。
+ */
+
+public class CaptureReader implements Closeable {
+
+    private final File[] mSegments;
+    private int mNextSegment;
+    private ByteBuffer mSegment;
+    private long mBaseWallClockMillis;
+    private long mBaseNanos;
+    private volatile boolean mClosed;
+
+    /**
+     * @param directory 分段文件所在目录
+     */
+    public CaptureReader(File directory) {
+        mSegments = TrafficRecorder.listSegments(directory);
+    }
+
+    /**
+     * 读取下一条记录
+     *
+     * @return 已读完时返回 null
+     * @throws IOException 分段文件无法读取或格式错误
+     */
+    public CaptureRecord next() throws IOException {
+        while (true) {
+            if (mClosed) {
+                mSegment = null;
+                return null;
+            }
+            if (null == mSegment || mSegment.remaining() < TrafficRecorder.RECORD_HEADER_SIZE) {
+                if (!openNextSegment()) {
+                    return null;
+                }
+                continue;
+            }
+            int length = mSegment.getInt();
+            if (0 == length) {
+                // 分段结束
+                mSegment = null;
+                continue;
+            }
+            byte direction = mSegment.get();
+            long timestampNanos = mSegment.getLong();
+            if (length < 0 || length > mSegment.remaining()) {
+                throw new IOException("corrupt record, length = " + length);
+            }
+            byte[] data = new byte[length];
+            mSegment.get(data);
+            long wallClockMillis = mBaseWallClockMillis + (timestampNanos - mBaseNanos) / 1000000L;
+            return new CaptureRecord(direction, timestampNanos, wallClockMillis, data);
+        }
+    }
+
+    private boolean openNextSegment() throws IOException {
+        mSegment = null;
+        if (mNextSegment >= mSegments.length) {
+            return false;
+        }
+        File file = mSegments[mNextSegment++];
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            mSegment = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        mSegment.order(ByteOrder.LITTLE_ENDIAN);
+        byte[] magic = new byte[TrafficRecorder.MAGIC.length];
+        if (mSegment.remaining() < TrafficRecorder.FILE_HEADER_SIZE) {
+            throw new IOException("truncated segment " + file);
+        }
+        mSegment.get(magic);
+        if (!Arrays.equals(magic, TrafficRecorder.MAGIC)) {
+            throw new IOException("not a capture segment " + file);
+        }
+        mBaseWallClockMillis = mSegment.getLong();
+        mBaseNanos = mSegment.getLong();
+        return true;
+    }
+
+    /**
+     * 结束读取, 分段文件的映射由读取线程释放
+     */
+    @Override
+    public void close() {
+        mClosed = true;
+    }
+}
@@ -0,0 +1,53 @@
+package com.kongqw.serialportlibrary.capture;
+
+/**
+ * 一条收发记录
+ */
+
+public final class CaptureRecord {
+
+    private final byte mDirection;
+    private final long mTimestampNanos;
+    private final long mWallClockMillis;
+    private final byte[] mData;
+
+    CaptureRecord(byte direction, long timestampNanos, long wallClockMillis, byte[] data) {
+        mDirection = direction;
+        mTimestampNanos = timestampNanos;
+        mWallClockMillis = wallClockMillis;
+        mData = data;
+    }
+
+    /**
+     * @return {@link TrafficRecorder#DIRECTION_RX} / {@link TrafficRecorder#DIRECTION_TX}
+     */
+    public byte getDirection() {
+        return mDirection;
+    }
+
+    public boolean isReceived() {
+        return TrafficRecorder.DIRECTION_RX == mDirection;
+    }
+
+    /**
+     * 记录时的 {@link System#nanoTime()}, 只能在同一次开机内比较
+     *
+     * @return 时间戳
+     */
+    public long getTimestampNanos() {
+        return mTimestampNanos;
+    }
+
+    /**
+     * 根据分段文件头换算出的墙上时间
+     *
+     * @return 毫秒
+     */
+    public long getWallClockMillis() {
+        return mWallClockMillis;
+    }
+
+    public byte[] getData() {
+        return mData;
+    }
+}
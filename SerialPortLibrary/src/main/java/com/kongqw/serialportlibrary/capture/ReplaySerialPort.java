@@ -0,0 +1,132 @@
+package com.kongqw.serialportlibrary.capture;
+
+import com.kongqw.serialportlibrary.ISerialPort;
+import com.kongqw.serialportlibrary.SerialConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 回放 {@link TrafficRecorder} 记录的接收数据, 用于离线测试
+ * <p>
+ * 传给 {@link com.kongqw.serialportlibrary.SerialPortManager#SerialPortManager(ISerialPort)} 后,
+ * 记录中的接收数据按记录块从输入流读出, 回放完毕后输入流结束; 写入的数据被丢弃。
+ */
+
+public class ReplaySerialPort implements ISerialPort {
+
+    private final File mDirectory;
+    private final boolean mRealTime;
+    private CaptureReader mReader;
+    private volatile boolean mClosed;
+
+    /**
+     * @param directory 分段文件所在目录
+     * @param realTime  是否按记录时的时间间隔回放, false 时尽快回放
+     */
+    public ReplaySerialPort(File directory, boolean realTime) {
+        mDirectory = directory;
+        mRealTime = realTime;
+    }
+
+    @Override
+    public boolean open(String path, int baudRate, int flags) throws IOException {
+        return open(path, new SerialConfig(baudRate).setFlags(flags));
+    }
+
+    @Override
+    public boolean open(String path, SerialConfig config) throws IOException {
+        if (!mDirectory.isDirectory()) {
+            throw new IOException(mDirectory + " is not a directory");
+        }
+        mReader = new CaptureReader(mDirectory);
+        mClosed = false;
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        final CaptureReader reader = mReader;
+        if (null == reader) {
+            throw new IOException("Serial port is not initialized");
+        }
+        return new InputStream() {
+            private byte[] mData;
+            private int mPosition;
+            private long mFirstRecordNanos;
+            private long mStartNanos;
+
+            @Override
+            public int read() throws IOException {
+                byte[] one = new byte[1];
+                return -1 == read(one, 0, 1) ? -1 : one[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                while (null == mData || mPosition == mData.length) {
+                    if (mClosed) {
+                        return -1;
+                    }
+                    CaptureRecord record = reader.next();
+                    if (null == record) {
+                        return -1;
+                    }
+                    if (!record.isReceived()) {
+                        continue;
+                    }
+                    pace(record.getTimestampNanos());
+                    mData = record.getData();
+                    mPosition = 0;
+                }
+                int n = Math.min(len, mData.length - mPosition);
+                System.arraycopy(mData, mPosition, b, off, n);
+                mPosition += n;
+                return n;
+            }
+
+            private void pace(long timestampNanos) throws IOException {
+                if (!mRealTime) {
+                    return;
+                }
+                if (0 == mStartNanos) {
+                    mStartNanos = System.nanoTime();
+                    mFirstRecordNanos = timestampNanos;
+                    return;
+                }
+                long delay = (timestampNanos - mFirstRecordNanos) - (System.nanoTime() - mStartNanos);
+                if (delay > 0) {
+                    try {
+                        Thread.sleep(delay / 1000000L, (int) (delay % 1000000L));
+                    } catch (InterruptedException e) {
+                        throw new IOException("interrupted");
+                    }
+                }
+            }
+        };
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        };
+    }
+
+    @Override
+    public void close() {
+        mClosed = true;
+        if (null != mReader) {
+            mReader.close();
+            mReader = null;
+        }
+    }
+}
@@ -0,0 +1,355 @@
+package com.kongqw.serialportlibrary.capture;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 串口收发数据记录
+ * <p>
+ * 数据追加写入内存映射的分段文件, 写入只是一次内存拷贝, 不会阻塞读写线程。
+ * 下一个分段由后台线程预先创建并映射, 当前分段写满后直接切换; 创建文件、删除超过分段数上限的旧分段都在后台线程中进行,
+ * 切换时也不刷新磁盘。后台线程还未准备好下一个分段时, 新数据被丢弃并计入 {@link #getDroppedBytes()}。
+ * 占用空间不超过 segmentSize * (maxSegments + 1), 包括预先创建的空分段。
+ * <p>
+ * 分段文件格式 (小端):
+ * <pre>
+ * 文件头: magic "SPCAP001" | 创建时的 System.currentTimeMillis() (8) | 创建时的 System.nanoTime() (8)
+ * 记录:   数据长度 (4) | 方向 {@link #DIRECTION_RX} / {@link #DIRECTION_TX} (1) | System.nanoTime() (8) | 数据
+ * </pre>
+ * 数据长度为 0 表示分段结束, 文件剩余部分为 0。
+ */
+
+public class TrafficRecorder implements Closeable {
+
+    public static final byte DIRECTION_RX = 0;
+    public static final byte DIRECTION_TX = 1;
+
+    public static final int DEFAULT_SEGMENT_SIZE = 8 * 1024 * 1024;
+    public static final int DEFAULT_MAX_SEGMENTS = 8;
+
+    static final byte[] MAGIC = {'S', 'P', 'C', 'A', 'P', '0', '0', '1'};
+    static final int FILE_HEADER_SIZE = 24;
+    static final int RECORD_HEADER_SIZE = 13;
+    static final String SEGMENT_PREFIX = "capture-";
+    static final String SEGMENT_SUFFIX = ".bin";
+
+    private final File mDirectory;
+    private final int mSegmentSize;
+    private final int mMaxSegments;
+    private final ExecutorService mAllocator;
+    private MappedByteBuffer mSegment;
+    private long mSegmentIndex;
+    // 后台线程预先创建的下一个分段
+    private Segment mSpare;
+    private boolean mPreparing;
+    private long mNextSegmentIndex;
+    private long mRecordedBytes;
+    private long mDroppedBytes;
+    private boolean mClosed;
+
+    public TrafficRecorder(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_MAX_SEGMENTS);
+    }
+
+    /**
+     * @param directory   分段文件所在目录, 不存在时创建, 已有的分段之后继续编号
+     * @param segmentSize 单个分段文件大小
+     * @param maxSegments 最多保留的分段数, 不包括预先创建的空分段
+     * @throws IOException 目录或第一个分段无法创建
+     */
+    public TrafficRecorder(File directory, int segmentSize, int maxSegments) throws IOException {
+        if (segmentSize <= FILE_HEADER_SIZE + RECORD_HEADER_SIZE || maxSegments <= 0) {
+            throw new IllegalArgumentException("segmentSize = " + segmentSize + ", maxSegments = " + maxSegments);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("cannot create " + directory);
+        }
+        mDirectory = directory;
+        mSegmentSize = segmentSize;
+        mMaxSegments = maxSegments;
+        File[] segments = listSegments(directory);
+        if (segments.length > 0) {
+            mNextSegmentIndex = segmentIndex(segments[segments.length - 1]) + 1;
+        }
+        // 第一个分段在调用方线程中创建, 之后的分段由后台线程创建
+        Segment first = allocate(mNextSegmentIndex++);
+        mSegment = first.mBuffer;
+        mSegmentIndex = first.mIndex;
+        mAllocator = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "TrafficRecorder");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        synchronized (this) {
+            prepareSpare();
+        }
+    }
+
+    /**
+     * 记录接收到的数据
+     */
+    public void recordReceived(byte[] buffer, int offset, int length, long timestampNanos) {
+        record(DIRECTION_RX, buffer, offset, length, timestampNanos);
+    }
+
+    /**
+     * 记录已发送的数据
+     */
+    public void recordSent(byte[] buffer, int offset, int length, long timestampNanos) {
+        record(DIRECTION_TX, buffer, offset, length, timestampNanos);
+    }
+
+    /**
+     * 记录已发送的数据, 不修改缓冲区的 position
+     */
+    public synchronized void recordSent(ByteBuffer buffer, long timestampNanos) {
+        ByteBuffer data = buffer.duplicate();
+        while (data.hasRemaining() && ensureSpace()) {
+            int length = Math.min(data.remaining(), mSegment.remaining() - RECORD_HEADER_SIZE);
+            putHeader(DIRECTION_TX, length, timestampNanos);
+            int limit = data.limit();
+            data.limit(data.position() + length);
+            mSegment.put(data);
+            data.limit(limit);
+            mRecordedBytes += length;
+        }
+        mDroppedBytes += data.remaining();
+    }
+
+    /**
+     * 追加一条记录, 当前分段剩余空间不足时拆分到下一个分段
+     *
+     * @param direction      {@link #DIRECTION_RX} / {@link #DIRECTION_TX}
+     * @param buffer         数据
+     * @param offset         起始位置
+     * @param length         长度
+     * @param timestampNanos {@link System#nanoTime()}
+     */
+    public synchronized void record(byte direction, byte[] buffer, int offset, int length, long timestampNanos) {
+        while (length > 0 && ensureSpace()) {
+            int n = Math.min(length, mSegment.remaining() - RECORD_HEADER_SIZE);
+            putHeader(direction, n, timestampNanos);
+            mSegment.put(buffer, offset, n);
+            offset += n;
+            length -= n;
+            mRecordedBytes += n;
+        }
+        mDroppedBytes += length;
+    }
+
+    /**
+     * 已记录的数据字节数, 不含记录头
+     *
+     * @return 字节数
+     */
+    public synchronized long getRecordedBytes() {
+        return mRecordedBytes;
+    }
+
+    /**
+     * 因后台线程未能及时准备好下一个分段或已关闭而丢弃的数据字节数
+     *
+     * @return 字节数
+     */
+    public synchronized long getDroppedBytes() {
+        return mDroppedBytes;
+    }
+
+    public File getDirectory() {
+        return mDirectory;
+    }
+
+    /**
+     * 将当前分段刷新到磁盘
+     */
+    public synchronized void flush() {
+        if (null != mSegment) {
+            mSegment.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        Segment spare;
+        synchronized (this) {
+            if (mClosed) {
+                return;
+            }
+            flush();
+            mSegment = null;
+            mClosed = true;
+            spare = mSpare;
+            mSpare = null;
+        }
+        mAllocator.shutdown();
+        if (null != spare) {
+            delete(spare.mFile);
+        }
+    }
+
+    private void putHeader(byte direction, int length, long timestampNanos) {
+        mSegment.putInt(length);
+        mSegment.put(direction);
+        mSegment.putLong(timestampNanos);
+    }
+
+    /**
+     * 保证当前分段至少还能写入 1 字节数据, 写满时切换到预先创建的分段
+     *
+     * @return 已关闭或下一个分段还未准备好时返回 false, 数据被丢弃
+     */
+    private boolean ensureSpace() {
+        if (mClosed) {
+            return false;
+        }
+        if (null != mSegment && mSegment.remaining() > RECORD_HEADER_SIZE) {
+            return true;
+        }
+        Segment spare = mSpare;
+        if (null == spare) {
+            // 上一次后台创建失败时重试
+            prepareSpare();
+            return false;
+        }
+        // 写满的分段由系统回写, 不在读写线程中 force
+        mSpare = null;
+        mSegment = spare.mBuffer;
+        mSegmentIndex = spare.mIndex;
+        prepareSpare();
+        return true;
+    }
+
+    /**
+     * 交给后台线程创建下一个分段并删除超过上限的旧分段, 需持有锁
+     */
+    private void prepareSpare() {
+        if (mPreparing || mClosed) {
+            return;
+        }
+        mPreparing = true;
+        final long index = mNextSegmentIndex++;
+        final long current = mSegmentIndex;
+        mAllocator.execute(new Runnable() {
+            @Override
+            public void run() {
+                // 先删除再创建, 文件数不超过上限
+                deleteSegmentsBefore(current - mMaxSegments + 1);
+                Segment segment = null;
+                try {
+                    segment = allocate(index);
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+                synchronized (TrafficRecorder.this) {
+                    mPreparing = false;
+                    if (null != segment && !mClosed) {
+                        mSpare = segment;
+                        return;
+                    }
+                }
+                if (null != segment) {
+                    delete(segment.mFile);
+                }
+            }
+        });
+    }
+
+    /**
+     * 创建并映射分段文件, 写入文件头
+     */
+    private Segment allocate(long index) throws IOException {
+        File file = new File(mDirectory, String.format(Locale.US, "%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+        MappedByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(mSegmentSize);
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, mSegmentSize);
+        } finally {
+            // 映射在通道关闭后仍然有效
+            raf.close();
+        }
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(MAGIC);
+        buffer.putLong(System.currentTimeMillis());
+        buffer.putLong(System.nanoTime());
+        return new Segment(index, file, buffer);
+    }
+
+    /**
+     * 删除编号小于 index 的分段
+     */
+    private void deleteSegmentsBefore(long index) {
+        for (File segment : listSegments(mDirectory)) {
+            if (segmentIndex(segment) >= index) {
+                break;
+            }
+            delete(segment);
+        }
+    }
+
+    private static void delete(File file) {
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+
+    /**
+     * 目录下的分段文件, 按编号排序
+     */
+    static File[] listSegments(File directory) {
+        File[] files = directory.listFiles();
+        if (null == files) {
+            return new File[0];
+        }
+        int count = 0;
+        for (File file : files) {
+            if (isSegment(file)) {
+                files[count++] = file;
+            }
+        }
+        File[] segments = Arrays.copyOf(files, count);
+        // 编号为定长十进制, 按文件名排序即按编号排序
+        Arrays.sort(segments);
+        return segments;
+    }
+
+    private static boolean isSegment(File file) {
+        String name = file.getName();
+        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+    }
+
+    private static final class Segment {
+        final long mIndex;
+        final File mFile;
+        final MappedByteBuffer mBuffer;
+
+        Segment(long index, File file, MappedByteBuffer buffer) {
+            mIndex = index;
+            mFile = file;
+            mBuffer = buffer;
+        }
+    }
+
+    private static long segmentIndex(File file) {
+        String name = file.getName();
+        try {
+            return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
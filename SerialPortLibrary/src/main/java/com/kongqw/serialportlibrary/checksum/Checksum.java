@@ -0,0 +1,160 @@
+package com.kongqw.serialportlibrary.checksum;
+
+/**
+ * 帧校验
+ * <p>
+ * 校验值位于帧末尾, 按构造时指定的字节序存放。校验和写入都直接在原数组上进行, 不分配内存,
+ * 实例不保存计算状态, 可以在读写线程间共用。
+ */
+
+public abstract class Checksum {
+
+    private final int mSize;
+    private final boolean mBigEndian;
+
+    /**
+     * @param size      校验值字节数, 1 - 8
+     * @param bigEndian 校验值是否高字节在前
+     */
+    protected Checksum(int size, boolean bigEndian) {
+        if (size <= 0 || size > 8) {
+            throw new IllegalArgumentException("size = " + size);
+        }
+        mSize = size;
+        mBigEndian = bigEndian;
+    }
+
+    /**
+     * 计算校验值
+     *
+     * @param data   数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 校验值, 只有低 {@link #size()} 字节有效
+     */
+    public abstract long compute(byte[] data, int offset, int length);
+
+    /**
+     * 校验值字节数
+     *
+     * @return 字节数
+     */
+    public final int size() {
+        return mSize;
+    }
+
+    /**
+     * 校验末尾带校验值的帧
+     *
+     * @param frame  帧数据
+     * @param offset 起始位置
+     * @param length 长度, 包括校验值
+     * @return 帧长度不足或校验值不符时返回 false
+     */
+    public final boolean verify(byte[] frame, int offset, int length) {
+        int dataLength = length - mSize;
+        if (dataLength < 0) {
+            return false;
+        }
+        return read(frame, offset + dataLength) == (compute(frame, offset, dataLength) & mask());
+    }
+
+    /**
+     * 计算校验值并写在数据之后, 数组在 offset + length 之后需留有 {@link #size()} 字节
+     *
+     * @param buffer 数据
+     * @param offset 起始位置
+     * @param length 数据长度, 不包括校验值
+     * @return 加上校验值后的帧长度
+     */
+    public final int append(byte[] buffer, int offset, int length) {
+        if (offset + length + mSize > buffer.length) {
+            throw new IndexOutOfBoundsException("buffer.length = " + buffer.length + ", offset = " + offset
+                    + ", length = " + length + ", checksum size = " + mSize);
+        }
+        long value = compute(buffer, offset, length);
+        int position = offset + length;
+        for (int i = 0; i < mSize; i++) {
+            int shift = 8 * (mBigEndian ? mSize - 1 - i : i);
+            buffer[position + i] = (byte) (value >>> shift);
+        }
+        return length + mSize;
+    }
+
+    private long read(byte[] frame, int position) {
+        long value = 0;
+        for (int i = 0; i < mSize; i++) {
+            int shift = 8 * (mBigEndian ? mSize - 1 - i : i);
+            value |= (frame[position + i] & 0xFFL) << shift;
+        }
+        return value;
+    }
+
+    private long mask() {
+        return 8 == mSize ? -1L : (1L << (8 * mSize)) - 1;
+    }
+
+    /**
+     * 生成反射 CRC 的 slice-by-8 查找表, table[k][i] 为字节 i 之后再跟 k 个 0 字节的 CRC
+     *
+     * @param polynomial 反射后的生成多项式
+     * @return 8 张查找表
+     */
+    static int[][] reflectedTables(int polynomial) {
+        int[][] tables = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int bit = 0; bit < 8; bit++) {
+                crc = 0 != (crc & 1) ? (crc >>> 1) ^ polynomial : crc >>> 1;
+            }
+            tables[0][i] = crc;
+        }
+        for (int k = 1; k < 8; k++) {
+            for (int i = 0; i < 256; i++) {
+                int previous = tables[k - 1][i];
+                tables[k][i] = (previous >>> 8) ^ tables[0][previous & 0xFF];
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * 反射 CRC 的 slice-by-8 计算, 每次处理 8 字节, 宽度不超过 32 位的 CRC 通用
+     *
+     * @param tables {@link #reflectedTables(int)} 生成的查找表
+     * @param crc    初始值
+     * @param data   数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 未做最终异或的 CRC
+     */
+    static int updateReflected(int[][] tables, int crc, byte[] data, int offset, int length) {
+        int[] t0 = tables[0];
+        int[] t1 = tables[1];
+        int[] t2 = tables[2];
+        int[] t3 = tables[3];
+        int[] t4 = tables[4];
+        int[] t5 = tables[5];
+        int[] t6 = tables[6];
+        int[] t7 = tables[7];
+        int i = offset;
+        int end = offset + length;
+        while (end - i >= 8) {
+            int one = crc ^ ((data[i] & 0xFF)
+                    | (data[i + 1] & 0xFF) << 8
+                    | (data[i + 2] & 0xFF) << 16
+                    | (data[i + 3] & 0xFF) << 24);
+            int two = (data[i + 4] & 0xFF)
+                    | (data[i + 5] & 0xFF) << 8
+                    | (data[i + 6] & 0xFF) << 16
+                    | (data[i + 7] & 0xFF) << 24;
+            crc = t7[one & 0xFF] ^ t6[(one >>> 8) & 0xFF] ^ t5[(one >>> 16) & 0xFF] ^ t4[one >>> 24]
+                    ^ t3[two & 0xFF] ^ t2[(two >>> 8) & 0xFF] ^ t1[(two >>> 16) & 0xFF] ^ t0[two >>> 24];
+            i += 8;
+        }
+        while (i < end) {
+            crc = (crc >>> 8) ^ t0[(crc ^ data[i++]) & 0xFF];
+        }
+        return crc;
+    }
+}
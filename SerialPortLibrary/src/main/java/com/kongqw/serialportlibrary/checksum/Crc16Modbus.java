@@ -0,0 +1,21 @@
+package com.kongqw.serialportlibrary.checksum;
+
+/**
+ * CRC-16/MODBUS
+ * <p>
+ * 多项式 0x8005 (反射 0xA001), 初始值 0xFFFF, 低字节在前, 用于 Modbus RTU 等协议。
+ */
+
+public class Crc16Modbus extends Checksum {
+
+    private static final int[][] TABLES = reflectedTables(0xA001);
+
+    public Crc16Modbus() {
+        super(2, false);
+    }
+
+    @Override
+    public long compute(byte[] data, int offset, int length) {
+        return updateReflected(TABLES, 0xFFFF, data, offset, length) & 0xFFFF;
+    }
+}
@@ -0,0 +1,32 @@
+package com.kongqw.serialportlibrary.checksum;
+
+/**
+ * CRC-32 (与 {@link java.util.zip.CRC32} 结果相同)
+ * <p>
+ * 多项式 0x04C11DB7 (反射 0xEDB88320), 初始值和最终异或值 0xFFFFFFFF。
+ * 使用 slice-by-8 查找表在 Java 中计算, 短帧不必经过 JNI, 也不需要为每帧创建 CRC32 对象。
+ */
+
+public class Crc32 extends Checksum {
+
+    private static final int[][] TABLES = reflectedTables(0xEDB88320);
+
+    /**
+     * 低字节在前
+     */
+    public Crc32() {
+        this(false);
+    }
+
+    /**
+     * @param bigEndian 校验值是否高字节在前
+     */
+    public Crc32(boolean bigEndian) {
+        super(4, bigEndian);
+    }
+
+    @Override
+    public long compute(byte[] data, int offset, int length) {
+        return ~updateReflected(TABLES, 0xFFFFFFFF, data, offset, length) & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,35 @@
+package com.kongqw.serialportlibrary.checksum;
+
+/**
+ * 单字节异或校验
+ * <p>
+ * 所有字节异或后的结果作为 1 字节校验值。NMEA 0183 语句的 "*hh" 是以十六进制文本表示的同一校验值,
+ * 需由帧监听自行比较。
+ */
+
+public class XorChecksum extends Checksum {
+
+    public XorChecksum() {
+        super(1, false);
+    }
+
+    @Override
+    public long compute(byte[] data, int offset, int length) {
+        int xor = 0;
+        int end = offset + length;
+        int i = offset;
+        // 每次合并 4 字节, 最后折叠为 1 字节
+        for (; end - i >= 4; i += 4) {
+            xor ^= (data[i] & 0xFF)
+                    | (data[i + 1] & 0xFF) << 8
+                    | (data[i + 2] & 0xFF) << 16
+                    | (data[i + 3] & 0xFF) << 24;
+        }
+        xor ^= xor >>> 16;
+        xor ^= xor >>> 8;
+        while (i < end) {
+            xor ^= data[i++];
+        }
+        return xor & 0xFF;
+    }
+}
@@ -0,0 +1,59 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.buffer.ByteRingBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * 分隔符帧解析器, 例如以 "\r\n" 结尾的 NMEA 语句
+ */
+
+public class DelimiterFrameDecoder extends FrameDecoder {
+
+    private final byte[] mDelimiter;
+    private final int mMaxFrameLength;
+    private final boolean mStripDelimiter;
+    // 已经确认不包含分隔符的字节数, 避免每次从头查找
+    private int mSearchedLength;
+
+    /**
+     * @param delimiter      分隔符
+     * @param maxFrameLength 最大帧长度(不含分隔符), 超过后丢弃重新同步
+     * @param stripDelimiter 回调的帧中是否去掉分隔符
+     */
+    public DelimiterFrameDecoder(byte[] delimiter, int maxFrameLength, boolean stripDelimiter) {
+        super(Math.max(DEFAULT_BUFFER_CAPACITY, (maxFrameLength + delimiter.length) * 2));
+        if (0 == delimiter.length || maxFrameLength <= 0) {
+            throw new IllegalArgumentException("delimiter.length = " + delimiter.length + ", maxFrameLength = " + maxFrameLength);
+        }
+        mDelimiter = delimiter.clone();
+        mMaxFrameLength = maxFrameLength;
+        mStripDelimiter = stripDelimiter;
+    }
+
+    @Override
+    protected boolean decodeFrame(ByteRingBuffer in, OnSerialPortFrameListener listener) {
+        int index = in.indexOf(mDelimiter, Math.max(0, mSearchedLength - mDelimiter.length + 1));
+        if (-1 == index) {
+            mSearchedLength = in.available();
+            if (mSearchedLength > mMaxFrameLength + mDelimiter.length) {
+                discard(mSearchedLength);
+                mSearchedLength = 0;
+            }
+            return false;
+        }
+        mSearchedLength = 0;
+        if (index > mMaxFrameLength) {
+            discard(index + mDelimiter.length);
+            return true;
+        }
+        int consumed = index + mDelimiter.length;
+        emit(in, 0, mStripDelimiter ? index : consumed, consumed, listener);
+        return true;
+    }
+
+    @Override
+    public void reset() {
+        super.reset();
+        mSearchedLength = 0;
+    }
+}
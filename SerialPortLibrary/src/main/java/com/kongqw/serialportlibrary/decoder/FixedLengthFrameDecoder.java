@@ -0,0 +1,33 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.buffer.ByteRingBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * 定长帧解析器
+ */
+
+public class FixedLengthFrameDecoder extends FrameDecoder {
+
+    private final int mFrameLength;
+
+    /**
+     * @param frameLength 帧长度
+     */
+    public FixedLengthFrameDecoder(int frameLength) {
+        super(Math.max(DEFAULT_BUFFER_CAPACITY, frameLength * 2));
+        if (frameLength <= 0) {
+            throw new IllegalArgumentException("frameLength = " + frameLength);
+        }
+        mFrameLength = frameLength;
+    }
+
+    @Override
+    protected boolean decodeFrame(ByteRingBuffer in, OnSerialPortFrameListener listener) {
+        if (in.available() < mFrameLength) {
+            return false;
+        }
+        emit(in, 0, mFrameLength, mFrameLength, listener);
+        return true;
+    }
+}
@@ -0,0 +1,188 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.buffer.ByteRingBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * 帧解析器
+ * <p>
+ * 接收到的数据先写入环形缓冲区, 再由子类增量解析出完整的帧。帧在缓冲区中连续时直接回调缓冲区中的数据,
+ * 只有跨越缓冲区末尾的帧才会拷贝到内部的临时数组。解析器非线程安全, 由读取线程使用,
+ * 需要空闲检查时 {@link #onIdle} 由 {@link com.kongqw.serialportlibrary.thread.FrameIdleThread} 与解析互斥调用。
+ */
+
+public abstract class FrameDecoder {
+
+    public static final int DEFAULT_BUFFER_CAPACITY = 4096;
+
+    private final ByteRingBuffer mBuffer;
+    private byte[] mFrameArray = new byte[64];
+    private long mDiscardedBytes;
+    private long mArrivalNanos;
+    private long mGapNanos = -1;
+
+    protected FrameDecoder() {
+        this(DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * @param bufferCapacity 缓冲区容量, 需大于最大帧长度
+     */
+    protected FrameDecoder(int bufferCapacity) {
+        mBuffer = new ByteRingBuffer(bufferCapacity);
+    }
+
+    /**
+     * 解析接收到的数据
+     *
+     * @param data         数据
+     * @param offset       起始位置
+     * @param length       长度
+     * @param arrivalNanos 数据到达时间 {@link System#nanoTime()}
+     * @param listener     帧回调
+     */
+    public final void decode(byte[] data, int offset, int length, long arrivalNanos, OnSerialPortFrameListener listener) {
+        mGapNanos = 0 == mArrivalNanos ? -1 : arrivalNanos - mArrivalNanos;
+        mArrivalNanos = arrivalNanos;
+        onDataArrived(mBuffer, length, arrivalNanos, listener);
+        while (length > 0) {
+            int written = mBuffer.write(data, offset, length);
+            offset += written;
+            length -= written;
+            while (mBuffer.available() > 0 && decodeFrame(mBuffer, listener)) {
+                // 继续解析下一帧
+            }
+            if (length > 0 && 0 == mBuffer.remaining()) {
+                // 缓冲区已满仍无法解析出帧, 丢弃已有数据重新同步
+                discard(mBuffer.available());
+            }
+        }
+    }
+
+    /**
+     * 一段时间内没有新数据时调用, 供依赖超时分帧的解析器输出最后一帧
+     *
+     * @param nowNanos 当前时间 {@link System#nanoTime()}
+     * @param listener 帧回调
+     */
+    public void onIdle(long nowNanos, OnSerialPortFrameListener listener) {
+    }
+
+    /**
+     * 缓冲区中有未输出的数据时, 超过多长时间没有新数据需要调用 {@link #onIdle}
+     *
+     * @return 纳秒, 不依赖超时分帧时返回 0
+     */
+    public long getIdleTimeoutNanos() {
+        return 0;
+    }
+
+    /**
+     * 缓冲区中还未解析成帧的字节数
+     *
+     * @return 字节数
+     */
+    public int getPendingBytes() {
+        return mBuffer.available();
+    }
+
+    /**
+     * 清空缓冲区
+     */
+    public void reset() {
+        mBuffer.clear();
+        mArrivalNanos = 0;
+        mGapNanos = -1;
+    }
+
+    /**
+     * 正在解析的数据的到达时间, 可在子类和帧回调中使用
+     *
+     * @return {@link System#nanoTime()}, 尚未收到数据时为 0
+     */
+    public long getArrivalNanos() {
+        return mArrivalNanos;
+    }
+
+    /**
+     * 正在解析的数据与上一段数据到达时间的间隔
+     *
+     * @return 纳秒, 第一段数据为 -1
+     */
+    public long getGapNanos() {
+        return mGapNanos;
+    }
+
+    /**
+     * 解析器内部的缓冲区, 供子类在 {@link #onIdle} 中使用
+     *
+     * @return 缓冲区
+     */
+    protected final ByteRingBuffer buffer() {
+        return mBuffer;
+    }
+
+    /**
+     * 因无法解析而丢弃的字节数
+     *
+     * @return 字节数
+     */
+    public long getDiscardedBytes() {
+        return mDiscardedBytes;
+    }
+
+    /**
+     * 新数据写入缓冲区之前回调
+     *
+     * @param in           缓冲区
+     * @param length       新数据长度
+     * @param arrivalNanos 新数据到达时间
+     * @param listener     帧回调
+     */
+    protected void onDataArrived(ByteRingBuffer in, int length, long arrivalNanos, OnSerialPortFrameListener listener) {
+    }
+
+    /**
+     * 尝试从缓冲区头部解析一帧
+     *
+     * @param in       缓冲区
+     * @param listener 帧回调
+     * @return 解析出一帧或消费了数据时返回 true, 数据不足时返回 false
+     */
+    protected abstract boolean decodeFrame(ByteRingBuffer in, OnSerialPortFrameListener listener);
+
+    /**
+     * 回调一帧并消费数据
+     *
+     * @param in          缓冲区
+     * @param frameOffset 帧数据的相对起始位置
+     * @param frameLength 帧数据长度
+     * @param consumed    需要消费的总字节数, 包括帧前后的分隔符等
+     * @param listener    帧回调
+     */
+    protected final void emit(ByteRingBuffer in, int frameOffset, int frameLength, int consumed, OnSerialPortFrameListener listener) {
+        try {
+            if (in.isContiguous(frameOffset, frameLength)) {
+                listener.onFrameReceived(in.array(), in.physicalIndex(frameOffset), frameLength);
+            } else {
+                if (mFrameArray.length < frameLength) {
+                    mFrameArray = new byte[Math.max(frameLength, mFrameArray.length * 2)];
+                }
+                in.copyTo(frameOffset, mFrameArray, 0, frameLength);
+                listener.onFrameReceived(mFrameArray, 0, frameLength);
+            }
+        } finally {
+            in.skip(consumed);
+        }
+    }
+
+    /**
+     * 丢弃无法解析的数据
+     *
+     * @param length 长度
+     */
+    protected final void discard(int length) {
+        mBuffer.skip(length);
+        mDiscardedBytes += length;
+    }
+}
@@ -0,0 +1,74 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.buffer.ByteRingBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * 长度字段帧解析器
+ * <p>
+ * 帧长度 = lengthFieldOffset + lengthFieldLength + 长度字段的值 + lengthAdjustment
+ */
+
+public class LengthFieldFrameDecoder extends FrameDecoder {
+
+    private final int mMaxFrameLength;
+    private final int mLengthFieldOffset;
+    private final int mLengthFieldLength;
+    private final int mLengthAdjustment;
+    private final int mInitialBytesToStrip;
+    private final boolean mBigEndian;
+
+    /**
+     * @param maxFrameLength      最大帧长度, 超过时丢弃一个字节重新同步
+     * @param lengthFieldOffset   长度字段的偏移
+     * @param lengthFieldLength   长度字段的字节数, 1 2 3 4
+     * @param lengthAdjustment    长度字段的值与长度字段之后实际字节数的差值, 例如长度包含校验位时为 -2
+     * @param initialBytesToStrip 回调时从帧头去掉的字节数
+     * @param bigEndian           长度字段是否为大端
+     */
+    public LengthFieldFrameDecoder(int maxFrameLength, int lengthFieldOffset, int lengthFieldLength,
+                                   int lengthAdjustment, int initialBytesToStrip, boolean bigEndian) {
+        super(Math.max(DEFAULT_BUFFER_CAPACITY, maxFrameLength * 2));
+        if (lengthFieldLength < 1 || lengthFieldLength > 4) {
+            throw new IllegalArgumentException("lengthFieldLength = " + lengthFieldLength);
+        }
+        if (lengthFieldOffset < 0 || initialBytesToStrip < 0 || maxFrameLength < lengthFieldOffset + lengthFieldLength) {
+            throw new IllegalArgumentException("maxFrameLength = " + maxFrameLength + ", lengthFieldOffset = " + lengthFieldOffset
+                    + ", initialBytesToStrip = " + initialBytesToStrip);
+        }
+        mMaxFrameLength = maxFrameLength;
+        mLengthFieldOffset = lengthFieldOffset;
+        mLengthFieldLength = lengthFieldLength;
+        mLengthAdjustment = lengthAdjustment;
+        mInitialBytesToStrip = initialBytesToStrip;
+        mBigEndian = bigEndian;
+    }
+
+    @Override
+    protected boolean decodeFrame(ByteRingBuffer in, OnSerialPortFrameListener listener) {
+        int headerLength = mLengthFieldOffset + mLengthFieldLength;
+        if (in.available() < headerLength) {
+            return false;
+        }
+        long frameLength = (long) headerLength + readLengthField(in) + mLengthAdjustment;
+        if (frameLength < headerLength || frameLength > mMaxFrameLength || frameLength < mInitialBytesToStrip) {
+            discard(1);
+            return true;
+        }
+        if (in.available() < frameLength) {
+            return false;
+        }
+        int length = (int) frameLength;
+        emit(in, mInitialBytesToStrip, length - mInitialBytesToStrip, length, listener);
+        return true;
+    }
+
+    private long readLengthField(ByteRingBuffer in) {
+        long value = 0;
+        for (int i = 0; i < mLengthFieldLength; i++) {
+            int b = in.get(mLengthFieldOffset + (mBigEndian ? i : mLengthFieldLength - 1 - i)) & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,85 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.buffer.ByteRingBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * Modbus RTU 帧解析器
+ * <p>
+ * 以 3.5 个字符时间的静默作为帧间隔: 新数据到达时, 如果与上次数据之间的静默超过 t3.5,
+ * 缓冲区中已有的数据作为一帧输出。最后一帧在下一次数据到达或 {@link #onIdle} 时输出。
+ * 波特率高于 19200 时按协议规定固定使用 1.75ms。
+ */
+
+public class ModbusRtuFrameDecoder extends FrameDecoder {
+
+    // 地址 + 功能码 + CRC
+    private static final int MIN_FRAME_LENGTH = 4;
+    private static final int MAX_FRAME_LENGTH = 256;
+    // 1 起始位 + 8 数据位 + 1 校验位 + 1 停止位
+    private static final int BITS_PER_CHARACTER = 11;
+
+    private final long mCharacterNanos;
+    private final long mSilenceNanos;
+
+    /**
+     * @param baudRate 波特率
+     */
+    public ModbusRtuFrameDecoder(int baudRate) {
+        super(MAX_FRAME_LENGTH * 4);
+        if (baudRate <= 0) {
+            throw new IllegalArgumentException("baudRate = " + baudRate);
+        }
+        mCharacterNanos = BITS_PER_CHARACTER * 1000000000L / baudRate;
+        mSilenceNanos = baudRate > 19200 ? 1750000L : mCharacterNanos * 7 / 2;
+    }
+
+    /**
+     * 帧间隔静默时间
+     *
+     * @return 纳秒
+     */
+    public long getSilenceNanos() {
+        return mSilenceNanos;
+    }
+
+    @Override
+    public long getIdleTimeoutNanos() {
+        return mSilenceNanos;
+    }
+
+    @Override
+    protected void onDataArrived(ByteRingBuffer in, int length, long arrivalNanos, OnSerialPortFrameListener listener) {
+        // 到达时间是本段数据最后一个字节的接收时间, 间隔减去本段数据的传输时间得到静默时长
+        long silence = getGapNanos() - length * mCharacterNanos;
+        if (in.available() > 0 && silence >= mSilenceNanos) {
+            emitPending(in, listener);
+        }
+    }
+
+    @Override
+    protected boolean decodeFrame(ByteRingBuffer in, OnSerialPortFrameListener listener) {
+        if (in.available() > MAX_FRAME_LENGTH) {
+            // 没有静默间隔, 超过最大帧长度, 丢弃重新同步
+            discard(in.available());
+        }
+        return false;
+    }
+
+    @Override
+    public void onIdle(long nowNanos, OnSerialPortFrameListener listener) {
+        ByteRingBuffer in = buffer();
+        if (in.available() > 0 && nowNanos - getArrivalNanos() >= mSilenceNanos) {
+            emitPending(in, listener);
+        }
+    }
+
+    private void emitPending(ByteRingBuffer in, OnSerialPortFrameListener listener) {
+        int length = in.available();
+        if (length < MIN_FRAME_LENGTH) {
+            discard(length);
+            return;
+        }
+        emit(in, 0, length, length, listener);
+    }
+}
@@ -0,0 +1,166 @@
+package com.kongqw.serialportlibrary.dispatch;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 监听回调的分发方式
+ * <p>
+ * 默认在读写线程中直接回调。其余方式先把事件放入预先分配的多生产者单消费者队列,
+ * 接收和发送各一个队列, 再由同一个 Runnable 在目标线程中批量回调,
+ * 每个事件不额外创建包装对象, 读写线程也不必等待应用代码。
+ * <p>
+ * 同一个分发器只能用于一个 {@link com.kongqw.serialportlibrary.SerialPortManager},
+ * 多个串口可以共用同一个 Executor。接收和发送的回调之间不保证先后顺序。
+ */
+
+public abstract class CallbackDispatcher {
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    // 接收侧事件, 由读取线程、多路复用线程或帧空闲检查线程产生
+    public static final int EVENT_BUFFER_RECEIVED = 1;
+    public static final int EVENT_DATA_RECEIVED = 2;
+    public static final int EVENT_FRAME_RECEIVED = 3;
+    public static final int EVENT_RECEIVE_ERROR = 4;
+    // 发送侧事件, 由发送线程产生
+    public static final int EVENT_DATA_SENT = 5;
+    public static final int EVENT_BUFFERS_SENT = 6;
+    public static final int EVENT_SEND_ERROR = 7;
+
+    /**
+     * 回调目标线程处理不过来、队列已满时的处理策略
+     */
+    public enum SlowConsumerPolicy {
+        /**
+         * 丢弃新事件, 接收缓冲区直接归还缓冲池
+         */
+        DROP,
+        /**
+         * 读写线程等待队列有空位, 数据积压在内核缓冲区或发送队列中
+         */
+        BLOCK
+    }
+
+    /**
+     * 事件接收方
+     */
+    public interface Target {
+
+        /**
+         * 在回调线程中处理事件
+         *
+         * @param event        事件类型
+         * @param payload      事件数据
+         * @param arrivalNanos 接收侧事件对应数据的到达时间 {@link System#nanoTime()}, 没有时为 0
+         */
+        void onEvent(int event, Object payload, long arrivalNanos);
+    }
+
+    /**
+     * 在读写线程中直接回调
+     *
+     * @return CallbackDispatcher
+     */
+    public static CallbackDispatcher inline() {
+        return InlineDispatcher.INSTANCE;
+    }
+
+    /**
+     * 在指定的 Executor 中回调, 同一时间最多提交一个回调任务, 回调按事件产生的顺序执行
+     *
+     * @param executor Executor
+     * @param capacity 接收和发送队列各自的容量, 向上取整为 2 的幂
+     * @param policy   队列已满时的处理策略
+     * @return CallbackDispatcher
+     */
+    public static CallbackDispatcher executor(Executor executor, int capacity, SlowConsumerPolicy policy) {
+        return new RingDispatcher(executor, null, capacity, policy);
+    }
+
+    /**
+     * 在主线程中回调
+     *
+     * @param capacity 接收和发送队列各自的容量, 向上取整为 2 的幂
+     * @param policy   队列已满时的处理策略
+     * @return CallbackDispatcher
+     */
+    public static CallbackDispatcher mainLooper(int capacity, SlowConsumerPolicy policy) {
+        final Handler handler = new Handler(Looper.getMainLooper());
+        return new RingDispatcher(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                handler.post(command);
+            }
+        }, null, capacity, policy);
+    }
+
+    /**
+     * 在独立的回调线程中回调, 不再使用时调用 {@link #release()} 结束线程
+     *
+     * @param capacity 接收和发送队列各自的容量, 向上取整为 2 的幂
+     * @param policy   队列已满时的处理策略
+     * @return CallbackDispatcher
+     */
+    public static CallbackDispatcher dedicatedThread(int capacity, SlowConsumerPolicy policy) {
+        ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "SerialPortCallback");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        return new RingDispatcher(executor, executor, capacity, policy);
+    }
+
+    /**
+     * 分发事件, 由产生事件的线程调用
+     * <p>
+     * 可由多个线程同时调用, 例如读取线程与帧空闲检查线程同时产生接收侧事件,
+     * 同一线程产生的事件按产生的顺序回调。
+     *
+     * @param target       事件接收方
+     * @param event        事件类型
+     * @param payload      事件数据
+     * @param arrivalNanos 接收侧事件对应数据的到达时间, 随事件交给 {@link Target#onEvent}, 没有时为 0
+     * @return 事件被丢弃时返回 false
+     */
+    public abstract boolean dispatch(Target target, int event, Object payload, long arrivalNanos);
+
+    /**
+     * 是否在产生事件的线程中直接回调
+     *
+     * @return 直接回调时返回 true, 此时回调参数可以引用读写线程的内部缓冲区
+     */
+    public abstract boolean isInline();
+
+    /**
+     * 等待回调的事件数
+     *
+     * @return 事件数
+     */
+    public abstract int getPendingCount();
+
+    /**
+     * 因队列已满丢弃的事件数
+     *
+     * @return 事件数
+     */
+    public abstract long getDroppedCount();
+
+    /**
+     * 释放分发器创建的回调线程, 尚未回调的事件不再回调
+     */
+    public void release() {
+    }
+
+    static boolean isReceiveEvent(int event) {
+        return event <= EVENT_RECEIVE_ERROR;
+    }
+}
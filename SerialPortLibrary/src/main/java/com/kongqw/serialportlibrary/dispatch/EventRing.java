@@ -0,0 +1,128 @@
+package com.kongqw.serialportlibrary.dispatch;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 多生产者单消费者的回调事件队列
+ * <p>
+ * 槽位在创建时分配, 事件类型、接收方、数据和到达时间分别存放在平行数组中, 入队出队过程中不分配对象。
+ * 与 {@link com.kongqw.serialportlibrary.buffer.SendRing} 相同, 每个槽位带有序号, 入队只需一次 CAS,
+ * 读取线程与帧空闲检查线程可以同时产生接收侧事件。
+ */
+
+final class EventRing {
+
+    private final int mMask;
+    private final int[] mEvents;
+    private final CallbackDispatcher.Target[] mTargets;
+    private final Object[] mPayloads;
+    private final long[] mArrivalNanos;
+    private final AtomicLongArray mSequences;
+    private final AtomicLong mHead = new AtomicLong();
+    private final AtomicLong mTail = new AtomicLong();
+
+    /**
+     * @param capacity 容量, 向上取整为 2 的幂
+     */
+    EventRing(int capacity) {
+        if (capacity < 2) {
+            capacity = 2;
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mEvents = new int[size];
+        mTargets = new CallbackDispatcher.Target[size];
+        mPayloads = new Object[size];
+        mArrivalNanos = new long[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            mSequences.set(i, i);
+        }
+    }
+
+    /**
+     * 入队, 可由多个生产者线程同时调用
+     *
+     * @return 队列已满时返回 false
+     */
+    boolean offer(CallbackDispatcher.Target target, int event, Object payload, long arrivalNanos) {
+        long tail = mTail.get();
+        int index;
+        while (true) {
+            index = (int) tail & mMask;
+            long difference = mSequences.get(index) - tail;
+            if (0 == difference) {
+                if (mTail.compareAndSet(tail, tail + 1)) {
+                    break;
+                }
+                tail = mTail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                tail = mTail.get();
+            }
+        }
+        mEvents[index] = event;
+        mTargets[index] = target;
+        mPayloads[index] = payload;
+        mArrivalNanos[index] = arrivalNanos;
+        // 与 CallbackDispatcher 中调度标记的读取构成全屏障, 不能使用 lazySet
+        mSequences.set(index, tail + 1);
+        return true;
+    }
+
+    /**
+     * 出队并回调, 只能由消费者线程调用
+     * <p>
+     * 遇到已占位但尚未写入完成的槽位时停止, 该事件由写入方之后的调度回调。
+     *
+     * @param limit 本次最多回调的事件数
+     * @return 回调的事件数
+     */
+    int drain(int limit) {
+        long head = mHead.get();
+        int count = 0;
+        while (count < limit) {
+            int index = (int) head & mMask;
+            if (mSequences.get(index) != head + 1) {
+                break;
+            }
+            int event = mEvents[index];
+            CallbackDispatcher.Target target = mTargets[index];
+            Object payload = mPayloads[index];
+            long arrivalNanos = mArrivalNanos[index];
+            mTargets[index] = null;
+            mPayloads[index] = null;
+            mSequences.lazySet(index, head + mMask + 1);
+            mHead.lazySet(++head);
+            count++;
+            try {
+                target.onEvent(event, payload, arrivalNanos);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 等待回调的事件数(包括已占位但尚未写入完成的事件)
+     */
+    int size() {
+        long size = mTail.get() - mHead.get();
+        return size < 0 ? 0 : (int) Math.min(size, mMask + 1);
+    }
+
+    /**
+     * 队首事件是否已写入完成, 可以回调
+     */
+    boolean isHeadReady() {
+        long head = mHead.get();
+        return mSequences.get((int) head & mMask) == head + 1;
+    }
+
+    int capacity() {
+        return mMask + 1;
+    }
+}
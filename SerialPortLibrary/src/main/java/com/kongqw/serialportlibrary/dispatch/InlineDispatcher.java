@@ -0,0 +1,34 @@
+package com.kongqw.serialportlibrary.dispatch;
+
+/**
+ * 在产生事件的线程中直接回调
+ */
+
+final class InlineDispatcher extends CallbackDispatcher {
+
+    static final InlineDispatcher INSTANCE = new InlineDispatcher();
+
+    private InlineDispatcher() {
+    }
+
+    @Override
+    public boolean dispatch(Target target, int event, Object payload, long arrivalNanos) {
+        target.onEvent(event, payload, arrivalNanos);
+        return true;
+    }
+
+    @Override
+    public boolean isInline() {
+        return true;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return 0;
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return 0;
+    }
+}
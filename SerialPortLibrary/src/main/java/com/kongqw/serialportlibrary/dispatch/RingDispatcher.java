@@ -0,0 +1,129 @@
+package com.kongqw.serialportlibrary.dispatch;
+
+import android.util.Log;
+
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 通过队列交给 Executor 回调
+ * <p>
+ * 队列由空变为非空时提交唯一的回调任务, 同一时间最多有一个回调任务在等待或执行。
+ */
+
+final class RingDispatcher extends CallbackDispatcher {
+
+    private static final String TAG = RingDispatcher.class.getSimpleName();
+    // BLOCK 策略下等待队列空位的间隔
+    private static final long BLOCK_PARK_NANOS = 50000;
+
+    private final Executor mExecutor;
+    private final ExecutorService mOwnedExecutor;
+    private final SlowConsumerPolicy mPolicy;
+    private final EventRing mReceiveRing;
+    private final EventRing mSendRing;
+    private final AtomicBoolean mScheduled = new AtomicBoolean();
+    private final AtomicLong mDropped = new AtomicLong();
+    private final int mBatchSize;
+    private final Runnable mDrain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    RingDispatcher(Executor executor, ExecutorService ownedExecutor, int capacity, SlowConsumerPolicy policy) {
+        if (null == executor || capacity <= 0 || null == policy) {
+            throw new IllegalArgumentException("executor = " + executor + ", capacity = " + capacity + ", policy = " + policy);
+        }
+        mExecutor = executor;
+        mOwnedExecutor = ownedExecutor;
+        mPolicy = policy;
+        mReceiveRing = new EventRing(capacity);
+        mSendRing = new EventRing(capacity);
+        mBatchSize = mReceiveRing.capacity();
+    }
+
+    @Override
+    public boolean dispatch(Target target, int event, Object payload, long arrivalNanos) {
+        EventRing ring = isReceiveEvent(event) ? mReceiveRing : mSendRing;
+        while (!ring.offer(target, event, payload, arrivalNanos)) {
+            if (SlowConsumerPolicy.DROP == mPolicy) {
+                mDropped.incrementAndGet();
+                if (payload instanceof ReceiveBuffer) {
+                    ((ReceiveBuffer) payload).recycle();
+                }
+                return false;
+            }
+            schedule();
+            LockSupport.parkNanos(BLOCK_PARK_NANOS);
+        }
+        schedule();
+        return true;
+    }
+
+    @Override
+    public boolean isInline() {
+        return false;
+    }
+
+    @Override
+    public int getPendingCount() {
+        return mReceiveRing.size() + mSendRing.size();
+    }
+
+    @Override
+    public long getDroppedCount() {
+        return mDropped.get();
+    }
+
+    @Override
+    public void release() {
+        if (null != mOwnedExecutor) {
+            mOwnedExecutor.shutdownNow();
+        }
+    }
+
+    private void schedule() {
+        if (mScheduled.get() || !mScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            mExecutor.execute(mDrain);
+        } catch (RejectedExecutionException e) {
+            mScheduled.set(false);
+            Log.w(TAG, "schedule: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在回调线程中轮流回调两个队列, 每个队列每次最多回调一个队列容量的事件,
+     * 仍有剩余时重新提交, 避免长时间占用主线程
+     */
+    private void drain() {
+        while (true) {
+            mReceiveRing.drain(mBatchSize);
+            mSendRing.drain(mBatchSize);
+            // 已占位但尚未写入完成的事件不重新提交, 由写入方写入后调度
+            if (mReceiveRing.isHeadReady() || mSendRing.isHeadReady()) {
+                try {
+                    mExecutor.execute(mDrain);
+                    return;
+                } catch (RejectedExecutionException e) {
+                    continue;
+                }
+            }
+            mScheduled.set(false);
+            // 清除标记后再检查一次, 生产者可能在上面的检查之后入队但看到了旧的标记
+            if ((!mReceiveRing.isHeadReady() && !mSendRing.isHeadReady()) || !mScheduled.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
@@ -15,6 +15,7 @@ public interface OnOpenSerialPortListener {
 
     enum Status {
         NO_READ_WRITE_PERMISSION,
-        OPEN_FAIL
+        OPEN_FAIL,
+        UNSUPPORTED_BAUD_RATE
     }
 }
@@ -0,0 +1,31 @@
+package com.kongqw.serialportlibrary.listener;
+
+/**
+ * 发送队列监听
+ * <p>
+ * 用于生产者根据队列深度自行限流, 回调中不要执行耗时操作。
+ */
+
+public interface OnSendQueueListener {
+
+    /**
+     * 队列深度达到高水位, 在调用发送的线程中回调
+     *
+     * @param depth 当前队列深度
+     */
+    void onHighWaterMark(int depth);
+
+    /**
+     * 队列深度从高水位回落到低水位, 在发送线程中回调
+     *
+     * @param depth 当前队列深度
+     */
+    void onLowWaterMark(int depth);
+
+    /**
+     * 队列已满, 数据按溢出策略被丢弃
+     *
+     * @param bytes 被丢弃的数据
+     */
+    void onDataDropped(byte[] bytes);
+}
@@ -0,0 +1,19 @@
+package com.kongqw.serialportlibrary.listener;
+
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+
+/**
+ * 串口数据接收监听(缓冲池模式)
+ * <p>
+ * 数据直接存放在缓冲池的缓冲区中, 不会为每次读取分配新数组。
+ */
+
+public interface OnSerialPortBufferListener {
+
+    /**
+     * 数据接收, 在读取线程中回调
+     *
+     * @param buffer 接收到的数据, 处理完毕后必须调用 {@link ReceiveBuffer#recycle()} 归还
+     */
+    void onBufferReceived(ReceiveBuffer buffer);
+}
@@ -0,0 +1,34 @@
+package com.kongqw.serialportlibrary.listener;
+
+import java.io.File;
+
+/**
+ * 断线重连监听, 在重连线程中回调
+ */
+
+public interface OnSerialPortConnectionListener {
+
+    /**
+     * 检测到串口断开, 即将开始重连
+     *
+     * @param device 串口设备
+     * @param cause  断开原因
+     */
+    void onDisconnected(File device, Exception cause);
+
+    /**
+     * 重连成功, 读写线程已切换到新打开的串口
+     *
+     * @param device   串口设备
+     * @param attempts 尝试次数
+     */
+    void onReconnected(File device, int attempts);
+
+    /**
+     * 达到最多重试次数仍未成功, 串口保持关闭
+     *
+     * @param device   串口设备
+     * @param attempts 尝试次数
+     */
+    void onReconnectFailed(File device, int attempts);
+}
@@ -0,0 +1,24 @@
+package com.kongqw.serialportlibrary.listener;
+
+import com.kongqw.serialportlibrary.Device;
+
+/**
+ * 串口设备插拔监听, 在监听 /dev 的线程中回调
+ */
+
+public interface OnSerialPortDeviceListener {
+
+    /**
+     * 新的串口设备出现
+     *
+     * @param device 设备
+     */
+    void onDeviceAttached(Device device);
+
+    /**
+     * 串口设备被移除
+     *
+     * @param device 设备
+     */
+    void onDeviceDetached(Device device);
+}
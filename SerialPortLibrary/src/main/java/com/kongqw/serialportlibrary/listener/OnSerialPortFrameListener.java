@@ -0,0 +1,19 @@
+package com.kongqw.serialportlibrary.listener;
+
+/**
+ * 串口数据帧监听
+ */
+
+public interface OnSerialPortFrameListener {
+
+    /**
+     * 接收到完整的一帧, 在读取线程中回调
+     * <p>
+     * 数据直接引用解析器内部的缓冲区, 仅在回调期间有效, 需要保留时请自行拷贝。
+     *
+     * @param buffer 缓冲区
+     * @param offset 帧起始位置
+     * @param length 帧长度
+     */
+    void onFrameReceived(byte[] buffer, int offset, int length);
+}
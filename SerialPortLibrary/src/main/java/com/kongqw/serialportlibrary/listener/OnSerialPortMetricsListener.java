@@ -0,0 +1,17 @@
+package com.kongqw.serialportlibrary.listener;
+
+import com.kongqw.serialportlibrary.metrics.SerialPortMetrics;
+
+/**
+ * 串口性能统计监听
+ */
+
+public interface OnSerialPortMetricsListener {
+
+    /**
+     * 定时回调统计快照, 在统计定时器线程中回调
+     *
+     * @param snapshot 快照
+     */
+    void onMetrics(SerialPortMetrics.Snapshot snapshot);
+}
@@ -0,0 +1,38 @@
+package com.kongqw.serialportlibrary.listener;
+
+import com.kongqw.serialportlibrary.SerialPortChannel;
+
+import java.io.IOException;
+
+/**
+ * 串口就绪事件监听, 在 {@link com.kongqw.serialportlibrary.SerialPortSelector} 的线程中回调
+ * <p>
+ * 所有串口共用同一个线程, 回调中不要执行耗时操作。
+ */
+
+public interface OnSerialPortReadyListener {
+
+    /**
+     * 串口可读
+     *
+     * @param channel 串口通道
+     * @throws IOException 抛出异常后自动注销并回调 {@link #onError}
+     */
+    void onReadable(SerialPortChannel channel) throws IOException;
+
+    /**
+     * 串口可写
+     *
+     * @param channel 串口通道
+     * @throws IOException 抛出异常后自动注销并回调 {@link #onError}
+     */
+    void onWritable(SerialPortChannel channel) throws IOException;
+
+    /**
+     * 串口发生错误或被挂断, 回调后已自动注销
+     *
+     * @param channel 串口通道
+     * @param e       具体异常
+     */
+    void onError(SerialPortChannel channel, Exception e);
+}
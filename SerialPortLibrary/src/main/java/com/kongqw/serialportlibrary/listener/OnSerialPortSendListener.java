@@ -0,0 +1,17 @@
+package com.kongqw.serialportlibrary.listener;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 缓冲区发送完成监听, 对应不拷贝数据的发送方式, 在发送线程中回调
+ */
+
+public interface OnSerialPortSendListener {
+
+    /**
+     * 数据已写入串口, 此后可以修改或复用这些缓冲区
+     *
+     * @param parts 发送时传入的缓冲区, sendBytes(byte[], int, int) 对应包装该数组的单个 ByteBuffer
+     */
+    void onBuffersSent(ByteBuffer[] parts);
+}
@@ -0,0 +1,158 @@
+package com.kongqw.serialportlibrary.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 无锁延迟直方图
+ * <p>
+ * 按 2 的幂划分桶, 第 i 个桶统计 [2^(i-1), 2^i) 纳秒的样本, 记录一次只需几次原子自增。
+ * 百分位数取所在桶的上界, 误差不超过一倍。
+ */
+
+public class LatencyHistogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mSum = new AtomicLong();
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * 记录一个样本
+     *
+     * @param nanos 延迟, 纳秒
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        mBuckets.incrementAndGet(bucketOf(nanos));
+        mSum.addAndGet(nanos);
+        long max = mMax.get();
+        while (nanos > max && !mMax.compareAndSet(max, nanos)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * 生成快照
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+            count += buckets[i];
+        }
+        return new Snapshot(buckets, count, mSum.get(), mMax.get());
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mSum.set(0);
+        mMax.set(0);
+    }
+
+    private static int bucketOf(long nanos) {
+        return Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(nanos));
+    }
+
+    /**
+     * 直方图快照
+     */
+    public static class Snapshot {
+
+        private final long[] mBuckets;
+        private final long mCount;
+        private final long mSum;
+        private final long mMax;
+
+        Snapshot(long[] buckets, long count, long sum, long max) {
+            mBuckets = buckets;
+            mCount = count;
+            mSum = sum;
+            mMax = max;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        /**
+         * 平均值
+         *
+         * @return 纳秒
+         */
+        public long getMean() {
+            return 0 == mCount ? 0 : mSum / mCount;
+        }
+
+        /**
+         * 最大值
+         *
+         * @return 纳秒
+         */
+        public long getMax() {
+            return mMax;
+        }
+
+        /**
+         * 百分位数
+         *
+         * @param percentile 0 ~ 100
+         * @return 纳秒, 所在桶的上界
+         */
+        public long getPercentile(double percentile) {
+            if (0 == mCount) {
+                return 0;
+            }
+            long target = (long) Math.ceil(mCount * percentile / 100.0);
+            long seen = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                seen += mBuckets[i];
+                if (seen >= target && seen > 0) {
+                    return Math.min(0 == i ? 0 : (1L << i) - 1, mMax);
+                }
+            }
+            return mMax;
+        }
+
+        /**
+         * 各个桶的样本数, 第 i 个桶统计 [2^(i-1), 2^i) 纳秒
+         *
+         * @return 桶计数
+         */
+        public long[] getBuckets() {
+            return mBuckets.clone();
+        }
+
+        /**
+         * 与另一个快照合并, 用于汇总多个串口的统计
+         *
+         * @param other 另一个快照
+         * @return 合并后的快照
+         */
+        public Snapshot merge(Snapshot other) {
+            long[] buckets = new long[mBuckets.length];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = mBuckets[i] + other.mBuckets[i];
+            }
+            return new Snapshot(buckets, mCount + other.mCount, mSum + other.mSum, Math.max(mMax, other.mMax));
+        }
+
+        @Override
+        public String toString() {
+            return "{count=" + mCount +
+                    ", mean=" + getMean() +
+                    ", p50=" + getPercentile(50) +
+                    ", p99=" + getPercentile(99) +
+                    ", max=" + mMax +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,337 @@
+package com.kongqw.serialportlibrary.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 串口性能统计
+ * <p>
+ * 读写线程在热路径上只做原子自增, 通过 {@link #snapshot(int, Snapshot)} 获取某一时刻的统计快照。
+ * 生成快照不修改统计, 需要按时间窗口计算速率的使用方各自保留上一次的快照。
+ */
+
+public class SerialPortMetrics {
+
+    private final AtomicLong mBytesIn = new AtomicLong();
+    private final AtomicLong mBytesOut = new AtomicLong();
+    private final AtomicLong mFramesIn = new AtomicLong();
+    private final AtomicLong mFramesOut = new AtomicLong();
+    private final AtomicLong mReads = new AtomicLong();
+    private final AtomicLong mWrites = new AtomicLong();
+    private final AtomicLong mCallbacksDropped = new AtomicLong();
+    private final AtomicLong mCorruptFrames = new AtomicLong();
+    private final LatencyHistogram mSendLatency = new LatencyHistogram();
+    private final LatencyHistogram mDispatchLatency = new LatencyHistogram();
+
+    private long mStartNanos = System.nanoTime();
+
+    /**
+     * 读取到数据
+     *
+     * @param bytes 本次读取的字节数
+     */
+    public void onRead(int bytes) {
+        mReads.incrementAndGet();
+        mBytesIn.addAndGet(bytes);
+    }
+
+    /**
+     * 解析出一帧
+     */
+    public void onFrameReceived() {
+        mFramesIn.incrementAndGet();
+    }
+
+    /**
+     * 丢弃一个校验失败的帧
+     */
+    public void onCorruptFrame() {
+        mCorruptFrames.incrementAndGet();
+    }
+
+    /**
+     * 完成一次写入
+     *
+     * @param bytes  写入的字节数
+     * @param frames 合并写入的帧数
+     */
+    public void onWrite(int bytes, int frames) {
+        mWrites.incrementAndGet();
+        mBytesOut.addAndGet(bytes);
+        mFramesOut.addAndGet(frames);
+    }
+
+    /**
+     * 回调队列已满, 丢弃一个回调事件
+     */
+    public void onCallbackDropped() {
+        mCallbacksDropped.incrementAndGet();
+    }
+
+    /**
+     * 从调用发送到写入串口的延迟
+     *
+     * @return 直方图
+     */
+    public LatencyHistogram getSendLatency() {
+        return mSendLatency;
+    }
+
+    /**
+     * 从读取到数据到回调监听的延迟
+     *
+     * @return 直方图
+     */
+    public LatencyHistogram getDispatchLatency() {
+        return mDispatchLatency;
+    }
+
+    /**
+     * 生成快照, 速率按开始统计或清零以来的平均值计算
+     *
+     * @param sendQueueDepth 当前发送队列深度
+     * @return 快照
+     */
+    public Snapshot snapshot(int sendQueueDepth) {
+        return snapshot(sendQueueDepth, null);
+    }
+
+    /**
+     * 生成快照, 速率按与上一次快照之间的变化计算
+     *
+     * @param sendQueueDepth 当前发送队列深度
+     * @param previous       本统计的上一次快照, null 或早于清零时按开始统计或清零以来的平均值计算
+     * @return 快照
+     */
+    public synchronized Snapshot snapshot(int sendQueueDepth, Snapshot previous) {
+        long now = System.nanoTime();
+        long reads = mReads.get();
+        long bytesIn = mBytesIn.get();
+        long bytesOut = mBytesOut.get();
+        long sinceNanos = mStartNanos;
+        long sinceReads = 0;
+        long sinceBytesIn = 0;
+        long sinceBytesOut = 0;
+        if (null != previous && previous.mNanos - mStartNanos >= 0) {
+            sinceNanos = previous.mNanos;
+            sinceReads = previous.mReads;
+            sinceBytesIn = previous.mBytesIn;
+            sinceBytesOut = previous.mBytesOut;
+        }
+        double seconds = Math.max(now - sinceNanos, 1) / 1e9;
+        return new Snapshot(now,
+                bytesIn, bytesOut, mFramesIn.get(), mFramesOut.get(), reads, mWrites.get(), mCallbacksDropped.get(),
+                mCorruptFrames.get(),
+                (reads - sinceReads) / seconds,
+                (bytesIn - sinceBytesIn) / seconds,
+                (bytesOut - sinceBytesOut) / seconds,
+                sendQueueDepth, mSendLatency.snapshot(), mDispatchLatency.snapshot());
+    }
+
+    /**
+     * 清零
+     */
+    public synchronized void reset() {
+        mBytesIn.set(0);
+        mBytesOut.set(0);
+        mFramesIn.set(0);
+        mFramesOut.set(0);
+        mReads.set(0);
+        mWrites.set(0);
+        mCallbacksDropped.set(0);
+        mCorruptFrames.set(0);
+        mSendLatency.reset();
+        mDispatchLatency.reset();
+        mStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 统计快照
+     */
+    public static class Snapshot {
+
+        private final long mNanos;
+        private final long mBytesIn;
+        private final long mBytesOut;
+        private final long mFramesIn;
+        private final long mFramesOut;
+        private final long mReads;
+        private final long mWrites;
+        private final long mCallbacksDropped;
+        private final long mCorruptFrames;
+        private final double mReadsPerSecond;
+        private final double mBytesInPerSecond;
+        private final double mBytesOutPerSecond;
+        private final int mSendQueueDepth;
+        private final LatencyHistogram.Snapshot mSendLatency;
+        private final LatencyHistogram.Snapshot mDispatchLatency;
+
+        Snapshot(long nanos, long bytesIn, long bytesOut, long framesIn, long framesOut, long reads, long writes, long callbacksDropped,
+                 long corruptFrames,
+                 double readsPerSecond, double bytesInPerSecond, double bytesOutPerSecond, int sendQueueDepth,
+                 LatencyHistogram.Snapshot sendLatency, LatencyHistogram.Snapshot dispatchLatency) {
+            mNanos = nanos;
+            mBytesIn = bytesIn;
+            mBytesOut = bytesOut;
+            mFramesIn = framesIn;
+            mFramesOut = framesOut;
+            mReads = reads;
+            mWrites = writes;
+            mCallbacksDropped = callbacksDropped;
+            mCorruptFrames = corruptFrames;
+            mReadsPerSecond = readsPerSecond;
+            mBytesInPerSecond = bytesInPerSecond;
+            mBytesOutPerSecond = bytesOutPerSecond;
+            mSendQueueDepth = sendQueueDepth;
+            mSendLatency = sendLatency;
+            mDispatchLatency = dispatchLatency;
+        }
+
+        /**
+         * 生成快照的时间
+         *
+         * @return {@link System#nanoTime()}
+         */
+        public long getNanos() {
+            return mNanos;
+        }
+
+        public long getBytesIn() {
+            return mBytesIn;
+        }
+
+        public long getBytesOut() {
+            return mBytesOut;
+        }
+
+        /**
+         * 帧解析器解析出的帧数
+         *
+         * @return 帧数
+         */
+        public long getFramesIn() {
+            return mFramesIn;
+        }
+
+        /**
+         * 发送的帧数
+         *
+         * @return 帧数
+         */
+        public long getFramesOut() {
+            return mFramesOut;
+        }
+
+        public long getReads() {
+            return mReads;
+        }
+
+        /**
+         * 实际写入次数, 与发送帧数的比值反映合并写入的效果
+         *
+         * @return 写入次数
+         */
+        public long getWrites() {
+            return mWrites;
+        }
+
+        /**
+         * 回调队列已满时丢弃的回调事件数
+         *
+         * @return 事件数
+         */
+        public long getCallbacksDropped() {
+            return mCallbacksDropped;
+        }
+
+        /**
+         * 校验失败被丢弃的帧数, 不计入 {@link #getFramesIn()}
+         *
+         * @return 帧数
+         */
+        public long getCorruptFrames() {
+            return mCorruptFrames;
+        }
+
+        public double getReadsPerSecond() {
+            return mReadsPerSecond;
+        }
+
+        public double getBytesInPerSecond() {
+            return mBytesInPerSecond;
+        }
+
+        public double getBytesOutPerSecond() {
+            return mBytesOutPerSecond;
+        }
+
+        /**
+         * 平均每次读取的字节数, 用于调整 VMIN/VTIME
+         *
+         * @return 字节数
+         */
+        public double getAverageBytesPerRead() {
+            return 0 == mReads ? 0 : (double) mBytesIn / mReads;
+        }
+
+        public int getSendQueueDepth() {
+            return mSendQueueDepth;
+        }
+
+        /**
+         * 从调用发送到写入串口的延迟
+         *
+         * @return 直方图快照
+         */
+        public LatencyHistogram.Snapshot getSendLatency() {
+            return mSendLatency;
+        }
+
+        /**
+         * 从读取到数据到回调监听的延迟
+         *
+         * @return 直方图快照
+         */
+        public LatencyHistogram.Snapshot getDispatchLatency() {
+            return mDispatchLatency;
+        }
+
+        /**
+         * 与另一个快照合并, 计数、速率和队列深度相加, 用于汇总多个串口的统计。
+         * 合并后的快照不能作为 {@link SerialPortMetrics#snapshot(int, Snapshot)} 的上一次快照
+         *
+         * @param other 另一个快照
+         * @return 合并后的快照
+         */
+        public Snapshot merge(Snapshot other) {
+            return new Snapshot(Math.max(mNanos, other.mNanos),
+                    mBytesIn + other.mBytesIn, mBytesOut + other.mBytesOut,
+                    mFramesIn + other.mFramesIn, mFramesOut + other.mFramesOut,
+                    mReads + other.mReads, mWrites + other.mWrites, mCallbacksDropped + other.mCallbacksDropped,
+                    mCorruptFrames + other.mCorruptFrames,
+                    mReadsPerSecond + other.mReadsPerSecond,
+                    mBytesInPerSecond + other.mBytesInPerSecond,
+                    mBytesOutPerSecond + other.mBytesOutPerSecond,
+                    mSendQueueDepth + other.mSendQueueDepth,
+                    mSendLatency.merge(other.mSendLatency), mDispatchLatency.merge(other.mDispatchLatency));
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "bytesIn=" + mBytesIn +
+                    ", bytesOut=" + mBytesOut +
+                    ", framesIn=" + mFramesIn +
+                    ", framesOut=" + mFramesOut +
+                    ", reads=" + mReads +
+                    ", writes=" + mWrites +
+                    ", callbacksDropped=" + mCallbacksDropped +
+                    ", corruptFrames=" + mCorruptFrames +
+                    ", readsPerSecond=" + mReadsPerSecond +
+                    ", averageBytesPerRead=" + getAverageBytesPerRead() +
+                    ", sendQueueDepth=" + mSendQueueDepth +
+                    ", sendLatency=" + mSendLatency +
+                    ", dispatchLatency=" + mDispatchLatency +
+                    '}';
+        }
+    }
+}
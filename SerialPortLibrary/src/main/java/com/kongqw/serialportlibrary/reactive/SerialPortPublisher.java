@@ -0,0 +1,311 @@
+package com.kongqw.serialportlibrary.reactive;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 接收数据的 Reactive Streams 发布者
+ * <p>
+ * 每次读取到的数据拷贝为一个 byte[] 放入有界队列, 所有订阅者收到同一个数组, 不为每个订阅者拷贝,
+ * 订阅者不能修改收到的数组。数据按各订阅者 request(n) 的需求发送, 最慢的订阅者未取走的数据占满队列后
+ * 读取线程等待, 不再从串口读取, 背压经内核缓冲区传递到对端。
+ * <p>
+ * 订阅者只收到订阅之后到达的数据, 没有订阅者时到达的数据直接丢弃。
+ */
+
+public class SerialPortPublisher implements Publisher<byte[]> {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final ReceiveSubscription[] EMPTY = new ReceiveSubscription[0];
+
+    private final int mMask;
+    private final byte[][] mRing;
+    // 以下字段由 this 保护
+    private long mHead;
+    private long mTail;
+    private ReceiveSubscription[] mSubscriptions = EMPTY;
+    private boolean mDone;
+    private Throwable mError;
+    private boolean mProducerWaiting;
+
+    public SerialPortPublisher() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity 队列容量(读取次数), 向上取整为 2 的幂
+     */
+    public SerialPortPublisher(int capacity) {
+        if (capacity < 2) {
+            capacity = 2;
+        }
+        int size = Integer.highestOneBit(capacity - 1) << 1;
+        mMask = size - 1;
+        mRing = new byte[size][];
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super byte[]> subscriber) {
+        if (null == subscriber) {
+            throw new NullPointerException("subscriber == null");
+        }
+        ReceiveSubscription subscription = new ReceiveSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // onSubscribe 返回后再加入, 此前 request 的需求在加入后一并处理
+        synchronized (this) {
+            if (!subscription.mCancelled) {
+                subscription.mCursor = mTail;
+                if (!mDone) {
+                    ReceiveSubscription[] subscriptions = new ReceiveSubscription[mSubscriptions.length + 1];
+                    System.arraycopy(mSubscriptions, 0, subscriptions, 0, mSubscriptions.length);
+                    subscriptions[mSubscriptions.length] = subscription;
+                    mSubscriptions = subscriptions;
+                }
+            }
+        }
+        subscription.drain();
+    }
+
+    /**
+     * 发布一次读取到的数据, 由读取线程调用, 队列已满时等待最慢的订阅者
+     *
+     * @param buffer 数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 已结束或等待时被中断返回 false
+     */
+    public boolean publish(byte[] buffer, int offset, int length) {
+        ReceiveSubscription[] subscriptions;
+        synchronized (this) {
+            try {
+                while (!mDone && 0 != mSubscriptions.length && mTail - mHead > mMask) {
+                    mProducerWaiting = true;
+                    wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            } finally {
+                mProducerWaiting = false;
+            }
+            if (mDone) {
+                return false;
+            }
+            if (0 == mSubscriptions.length) {
+                return true;
+            }
+            byte[] chunk = new byte[length];
+            System.arraycopy(buffer, offset, chunk, 0, length);
+            mRing[(int) mTail & mMask] = chunk;
+            mTail++;
+            subscriptions = mSubscriptions;
+        }
+        for (ReceiveSubscription subscription : subscriptions) {
+            subscription.drain();
+        }
+        return true;
+    }
+
+    /**
+     * 结束数据流, 订阅者取完队列中的数据后收到 onComplete
+     */
+    public void complete() {
+        terminate(null);
+    }
+
+    /**
+     * 以异常结束数据流, 订阅者取完队列中的数据后收到 onError
+     *
+     * @param error 异常
+     */
+    public void error(Throwable error) {
+        if (null == error) {
+            throw new NullPointerException("error == null");
+        }
+        terminate(error);
+    }
+
+    /**
+     * 当前订阅者数量
+     *
+     * @return 订阅者数量
+     */
+    public synchronized int getSubscriberCount() {
+        return mSubscriptions.length;
+    }
+
+    /**
+     * 队列中尚未被所有订阅者取走的数据数
+     *
+     * @return 读取次数
+     */
+    public synchronized int size() {
+        return (int) (mTail - mHead);
+    }
+
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    private void terminate(Throwable error) {
+        ReceiveSubscription[] subscriptions;
+        synchronized (this) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mError = error;
+            subscriptions = mSubscriptions;
+            notifyAll();
+        }
+        for (ReceiveSubscription subscription : subscriptions) {
+            subscription.drain();
+        }
+    }
+
+    private void removeLocked(ReceiveSubscription subscription) {
+        ReceiveSubscription[] subscriptions = mSubscriptions;
+        for (int i = 0; i < subscriptions.length; i++) {
+            if (subscriptions[i] == subscription) {
+                ReceiveSubscription[] removed = subscriptions.length == 1 ? EMPTY : new ReceiveSubscription[subscriptions.length - 1];
+                System.arraycopy(subscriptions, 0, removed, 0, i);
+                System.arraycopy(subscriptions, i + 1, removed, i, subscriptions.length - i - 1);
+                mSubscriptions = removed;
+                advanceHeadLocked();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 队首推进到最慢的订阅者处, 释放已被所有订阅者取走的数据
+     */
+    private void advanceHeadLocked() {
+        long head = mTail;
+        for (ReceiveSubscription subscription : mSubscriptions) {
+            head = Math.min(head, subscription.mCursor);
+        }
+        if (head == mHead) {
+            return;
+        }
+        for (long i = mHead; i < head; i++) {
+            mRing[(int) i & mMask] = null;
+        }
+        mHead = head;
+        if (mProducerWaiting) {
+            notifyAll();
+        }
+    }
+
+    private final class ReceiveSubscription implements Subscription {
+
+        private final Subscriber<? super byte[]> mSubscriber;
+        private final AtomicLong mRequested = new AtomicLong();
+        private final AtomicInteger mWip = new AtomicInteger();
+        // 由 SerialPortPublisher.this 保护, 加入前为 -1
+        private long mCursor = -1;
+        private volatile boolean mCancelled;
+        private volatile Throwable mBadRequest;
+        // 只在 drain 中访问
+        private boolean mTerminated;
+
+        ReceiveSubscription(Subscriber<? super byte[]> subscriber) {
+            mSubscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                mBadRequest = new IllegalArgumentException("request(" + n + "), n must be positive");
+            } else {
+                long current;
+                long next;
+                do {
+                    current = mRequested.get();
+                    next = current + n;
+                    if (next < 0) {
+                        next = Long.MAX_VALUE;
+                    }
+                } while (!mRequested.compareAndSet(current, next));
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            mCancelled = true;
+            synchronized (SerialPortPublisher.this) {
+                removeLocked(this);
+            }
+        }
+
+        /**
+         * 按需求发送数据, 同一时间只有一个线程执行, 其他线程的调用合并到正在执行的线程中
+         */
+        void drain() {
+            if (0 != mWip.getAndIncrement()) {
+                return;
+            }
+            int missed = 1;
+            do {
+                while (!mTerminated && !mCancelled) {
+                    Throwable badRequest = mBadRequest;
+                    if (null != badRequest) {
+                        cancel();
+                        mTerminated = true;
+                        mSubscriber.onError(badRequest);
+                        break;
+                    }
+                    byte[] chunk = null;
+                    boolean complete = false;
+                    Throwable error = null;
+                    synchronized (SerialPortPublisher.this) {
+                        if (mCursor < 0) {
+                            // 还在 onSubscribe 中
+                            break;
+                        }
+                        if (mCursor < mTail) {
+                            if (0 == mRequested.get()) {
+                                break;
+                            }
+                            chunk = mRing[(int) mCursor & mMask];
+                            mCursor++;
+                            advanceHeadLocked();
+                        } else if (mDone) {
+                            complete = true;
+                            error = mError;
+                            removeLocked(this);
+                        } else {
+                            break;
+                        }
+                    }
+                    if (complete) {
+                        mTerminated = true;
+                        if (null == error) {
+                            mSubscriber.onComplete();
+                        } else {
+                            mSubscriber.onError(error);
+                        }
+                        break;
+                    }
+                    if (Long.MAX_VALUE != mRequested.get()) {
+                        mRequested.decrementAndGet();
+                    }
+                    try {
+                        mSubscriber.onNext(chunk);
+                    } catch (RuntimeException e) {
+                        // 订阅者不应抛出异常, 视为取消
+                        e.printStackTrace();
+                        cancel();
+                    }
+                }
+                missed = mWip.addAndGet(-missed);
+            } while (0 != missed);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.kongqw.serialportlibrary.reactive;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+/**
+ * 发送数据的 Reactive Streams 订阅者
+ * <p>
+ * 最多请求 window 帧在途, 每帧由发送线程写出后才向上游请求下一帧, 上游的发送速度受串口实际写出速度限制,
+ * 发送队列中不会积压超过 window 帧。收到的数组直接进入发送队列, 写出前上游不能修改。
+ */
+
+public abstract class SerialPortSubscriber implements Subscriber<byte[]> {
+
+    /**
+     * 发送一帧
+     *
+     * @param bytes 数据
+     * @return 是否成功进入发送队列
+     */
+    protected abstract boolean send(byte[] bytes);
+
+    /**
+     * 数据流结束、出错或发送失败后回调一次
+     */
+    protected void onTerminate() {
+    }
+
+    public static final int DEFAULT_WINDOW = 4;
+
+    private final int mWindowSize;
+    // 以下字段由 this 保护
+    // 按发送顺序排列的在途帧
+    private final ArrayDeque<byte[]> mInFlight = new ArrayDeque<>();
+    private Subscription mSubscription;
+    private boolean mDone;
+    private Throwable mError;
+
+    /**
+     * @param window 最多同时在途的帧数
+     */
+    public SerialPortSubscriber(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("window = " + window);
+        }
+        mWindowSize = window;
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (null == subscription) {
+            throw new NullPointerException("subscription == null");
+        }
+        synchronized (this) {
+            if (null != mSubscription || mDone) {
+                // 只接受一个上游
+                subscription.cancel();
+                return;
+            }
+            mSubscription = subscription;
+        }
+        subscription.request(mWindowSize);
+    }
+
+    @Override
+    public void onNext(byte[] bytes) {
+        if (null == bytes) {
+            throw new NullPointerException("bytes == null");
+        }
+        Subscription subscription;
+        synchronized (this) {
+            if (mDone) {
+                return;
+            }
+            if (0 != bytes.length) {
+                mInFlight.addLast(bytes);
+            }
+            subscription = mSubscription;
+        }
+        if (0 == bytes.length) {
+            // 空帧不进入发送队列, 也不会回调 onSent, 直接释放窗口
+            if (null != subscription) {
+                subscription.request(1);
+            }
+            return;
+        }
+        if (!send(bytes)) {
+            cancel(new IOException("send failed"));
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        if (null == t) {
+            throw new NullPointerException("t == null");
+        }
+        terminate(t, false);
+    }
+
+    @Override
+    public void onComplete() {
+        terminate(null, false);
+    }
+
+    /**
+     * 一帧已由发送线程写出, 在发送线程中调用
+     * <p>
+     * 按引用匹配在途帧, 之前未回调的帧视为已结束, 一并从窗口中释放。
+     *
+     * @param bytes 写出的数据
+     * @return 是否为本订阅者发出的帧
+     */
+    public boolean onSent(byte[] bytes) {
+        Subscription subscription;
+        int released = 0;
+        synchronized (this) {
+            if (mDone && mInFlight.isEmpty()) {
+                return false;
+            }
+            boolean found = false;
+            for (byte[] inFlight : mInFlight) {
+                if (inFlight == bytes) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                return false;
+            }
+            Iterator<byte[]> iterator = mInFlight.iterator();
+            while (iterator.hasNext()) {
+                byte[] inFlight = iterator.next();
+                iterator.remove();
+                released++;
+                if (inFlight == bytes) {
+                    break;
+                }
+            }
+            subscription = mDone ? null : mSubscription;
+        }
+        if (null != subscription) {
+            subscription.request(released);
+        }
+        return true;
+    }
+
+    /**
+     * 取消订阅, 串口关闭时调用
+     *
+     * @param cause 取消原因
+     */
+    public void cancel(Exception cause) {
+        terminate(cause, true);
+    }
+
+    public synchronized boolean isDone() {
+        return mDone;
+    }
+
+    /**
+     * 结束原因
+     *
+     * @return 正常结束或尚未结束时返回 null
+     */
+    public synchronized Throwable getError() {
+        return mError;
+    }
+
+    /**
+     * 已进入发送队列但尚未写出的帧数
+     *
+     * @return 帧数
+     */
+    public synchronized int getInFlightCount() {
+        return mInFlight.size();
+    }
+
+    private void terminate(Throwable error, boolean cancelUpstream) {
+        Subscription subscription;
+        synchronized (this) {
+            if (mDone) {
+                return;
+            }
+            mDone = true;
+            mError = error;
+            subscription = mSubscription;
+        }
+        if (cancelUpstream && null != subscription) {
+            subscription.cancel();
+        }
+        onTerminate();
+    }
+}
@@ -0,0 +1,56 @@
+package com.kongqw.serialportlibrary.simulation;
+
+import com.kongqw.serialportlibrary.capture.CaptureReader;
+import com.kongqw.serialportlibrary.capture.CaptureRecord;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 按记录时的间隔发出 {@link com.kongqw.serialportlibrary.capture.TrafficRecorder} 记录的接收数据
+ */
+
+public class CaptureSource implements TrafficSource {
+
+    private final CaptureReader mReader;
+    private byte[] mData;
+    private int mPosition;
+    private long mLastTimestampNanos;
+    private long mDelayNanos;
+
+    /**
+     * @param directory 分段文件所在目录
+     */
+    public CaptureSource(File directory) {
+        mReader = new CaptureReader(directory);
+    }
+
+    @Override
+    public int nextChunk(byte[] buffer, int offset, int maxLength) throws IOException {
+        mDelayNanos = 0;
+        while (null == mData || mPosition == mData.length) {
+            CaptureRecord record = mReader.next();
+            if (null == record) {
+                return -1;
+            }
+            if (!record.isReceived()) {
+                continue;
+            }
+            if (0 != mLastTimestampNanos) {
+                mDelayNanos = Math.max(0, record.getTimestampNanos() - mLastTimestampNanos);
+            }
+            mLastTimestampNanos = record.getTimestampNanos();
+            mData = record.getData();
+            mPosition = 0;
+        }
+        int length = Math.min(maxLength, mData.length - mPosition);
+        System.arraycopy(mData, mPosition, buffer, offset, length);
+        mPosition += length;
+        return length;
+    }
+
+    @Override
+    public long getDelayNanos() {
+        return mDelayNanos;
+    }
+}
@@ -0,0 +1,70 @@
+package com.kongqw.serialportlibrary.simulation;
+
+import java.util.Random;
+
+/**
+ * 按指定速率生成数据, 内容为循环重复的模板
+ */
+
+public class GeneratedSource implements TrafficSource {
+
+    private final byte[] mPattern;
+    private final int mChunkSize;
+    private final long mBytesPerSecond;
+    private final double mJitter;
+    private final long mTotalBytes;
+    private final Random mRandom;
+    private int mPatternPosition;
+    private long mGeneratedBytes;
+    private long mDelayNanos;
+
+    /**
+     * @param pattern        数据模板, 循环输出
+     * @param chunkSize      每块数据的长度
+     * @param bytesPerSecond 平均速率, 0 表示不限速
+     * @param jitter         块间隔的随机抖动比例, 0 - 1
+     * @param totalBytes     总长度, -1 表示无限
+     * @param seed           随机种子, 相同种子生成相同的时序
+     */
+    public GeneratedSource(byte[] pattern, int chunkSize, long bytesPerSecond, double jitter, long totalBytes, long seed) {
+        if (null == pattern || 0 == pattern.length || chunkSize <= 0 || bytesPerSecond < 0 || jitter < 0 || jitter > 1) {
+            throw new IllegalArgumentException("chunkSize = " + chunkSize + ", bytesPerSecond = " + bytesPerSecond + ", jitter = " + jitter);
+        }
+        mPattern = pattern;
+        mChunkSize = chunkSize;
+        mBytesPerSecond = bytesPerSecond;
+        mJitter = jitter;
+        mTotalBytes = totalBytes;
+        mRandom = new Random(seed);
+    }
+
+    @Override
+    public int nextChunk(byte[] buffer, int offset, int maxLength) {
+        int length = Math.min(mChunkSize, maxLength);
+        if (mTotalBytes >= 0) {
+            if (mGeneratedBytes >= mTotalBytes) {
+                return -1;
+            }
+            length = (int) Math.min(length, mTotalBytes - mGeneratedBytes);
+        }
+        for (int i = 0; i < length; i++) {
+            buffer[offset + i] = mPattern[mPatternPosition];
+            if (++mPatternPosition == mPattern.length) {
+                mPatternPosition = 0;
+            }
+        }
+        mGeneratedBytes += length;
+        if (0 == mBytesPerSecond) {
+            mDelayNanos = 0;
+        } else {
+            double interval = length * 1e9 / mBytesPerSecond;
+            mDelayNanos = (long) (interval * (1 + mJitter * (2 * mRandom.nextDouble() - 1)));
+        }
+        return length;
+    }
+
+    @Override
+    public long getDelayNanos() {
+        return mDelayNanos;
+    }
+}
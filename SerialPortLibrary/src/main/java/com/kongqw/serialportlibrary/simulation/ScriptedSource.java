@@ -0,0 +1,66 @@
+package com.kongqw.serialportlibrary.simulation;
+
+/**
+ * 按顺序发出预先指定的数据块
+ */
+
+public class ScriptedSource implements TrafficSource {
+
+    private final byte[][] mChunks;
+    private final long mIntervalNanos;
+    private final int mRepeat;
+    private int mIndex;
+    private int mPosition;
+    private int mRound;
+
+    /**
+     * @param chunks 数据块, 每块作为一次到达的数据
+     */
+    public ScriptedSource(byte[]... chunks) {
+        this(0, 1, chunks);
+    }
+
+    /**
+     * @param intervalNanos 相邻两块之间的间隔
+     * @param repeat        重复次数, 0 表示无限重复
+     * @param chunks        数据块, 每块作为一次到达的数据
+     */
+    public ScriptedSource(long intervalNanos, int repeat, byte[]... chunks) {
+        if (intervalNanos < 0 || repeat < 0 || null == chunks || 0 == chunks.length) {
+            throw new IllegalArgumentException("intervalNanos = " + intervalNanos + ", repeat = " + repeat);
+        }
+        for (byte[] chunk : chunks) {
+            if (null == chunk || 0 == chunk.length) {
+                throw new IllegalArgumentException("empty chunk");
+            }
+        }
+        mChunks = chunks;
+        mIntervalNanos = intervalNanos;
+        mRepeat = repeat;
+    }
+
+    @Override
+    public int nextChunk(byte[] buffer, int offset, int maxLength) {
+        if (mPosition == mChunks[mIndex].length) {
+            mPosition = 0;
+            if (++mIndex == mChunks.length) {
+                mIndex = 0;
+                mRound++;
+            }
+        }
+        if (0 != mRepeat && mRound >= mRepeat) {
+            return -1;
+        }
+        byte[] chunk = mChunks[mIndex];
+        // 超过缓冲区的数据块拆分为多次到达
+        int length = Math.min(maxLength, chunk.length - mPosition);
+        System.arraycopy(chunk, mPosition, buffer, offset, length);
+        mPosition += length;
+        return length;
+    }
+
+    @Override
+    public long getDelayNanos() {
+        return mIntervalNanos;
+    }
+}
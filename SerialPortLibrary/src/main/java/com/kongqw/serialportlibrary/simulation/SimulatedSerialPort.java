@@ -0,0 +1,261 @@
+package com.kongqw.serialportlibrary.simulation;
+
+import com.kongqw.serialportlibrary.ISerialPort;
+import com.kongqw.serialportlibrary.SerialConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 内存中模拟的串口, 用于在没有硬件的环境下测试解析器和 {@link com.kongqw.serialportlibrary.SerialPortManager}
+ * <p>
+ * 接收数据由 {@link TrafficSource} 按块生成, 每块在其间隔到达后可读;
+ * 开启波特率模拟时间隔不小于按 {@link SerialConfig} 计算出的传输时间。
+ * 所有间隔除以 speedFactor, 例如 10 表示以 10 倍线速运行。
+ * 数据来源结束后读取阻塞, 直到串口关闭。写入的数据只计数, 可以限制写入速率模拟发送耗时。
+ */
+
+public class SimulatedSerialPort implements ISerialPort {
+
+    public static final int DEFAULT_CHUNK_CAPACITY = 4096;
+
+    private final TrafficSource mSource;
+    private final int mChunkCapacity;
+    private double mSpeedFactor = 1;
+    private boolean mEmulateBaudRate;
+    private long mWriteBytesPerSecond;
+    private final AtomicLong mReceivedBytes = new AtomicLong();
+    private final AtomicLong mWrittenBytes = new AtomicLong();
+    private final Object mLock = new Object();
+    private volatile SerialConfig mConfig;
+    private volatile boolean mOpen;
+    private volatile boolean mSourceExhausted;
+    private volatile Thread mReader;
+    private InputStream mInputStream;
+    private OutputStream mOutputStream;
+
+    public SimulatedSerialPort(TrafficSource source) {
+        this(source, DEFAULT_CHUNK_CAPACITY);
+    }
+
+    /**
+     * @param source        接收数据来源
+     * @param chunkCapacity 单块数据的最大长度
+     */
+    public SimulatedSerialPort(TrafficSource source, int chunkCapacity) {
+        if (null == source || chunkCapacity <= 0) {
+            throw new IllegalArgumentException("source = " + source + ", chunkCapacity = " + chunkCapacity);
+        }
+        mSource = source;
+        mChunkCapacity = chunkCapacity;
+    }
+
+    /**
+     * @param speedFactor 时间压缩倍数, 需在打开前设置
+     * @return SimulatedSerialPort
+     */
+    public SimulatedSerialPort setSpeedFactor(double speedFactor) {
+        if (speedFactor <= 0) {
+            throw new IllegalArgumentException("speedFactor = " + speedFactor);
+        }
+        mSpeedFactor = speedFactor;
+        return this;
+    }
+
+    /**
+     * @param emulateBaudRate 是否按打开时的波特率和帧格式限制收发速率, 需在打开前设置
+     * @return SimulatedSerialPort
+     */
+    public SimulatedSerialPort setBaudRateEmulation(boolean emulateBaudRate) {
+        mEmulateBaudRate = emulateBaudRate;
+        return this;
+    }
+
+    /**
+     * @param bytesPerSecond 写入的消耗速率, 0 表示不限 (开启波特率模拟时按波特率), 需在打开前设置
+     * @return SimulatedSerialPort
+     */
+    public SimulatedSerialPort setWriteRate(long bytesPerSecond) {
+        if (bytesPerSecond < 0) {
+            throw new IllegalArgumentException("bytesPerSecond = " + bytesPerSecond);
+        }
+        mWriteBytesPerSecond = bytesPerSecond;
+        return this;
+    }
+
+    public long getReceivedBytes() {
+        return mReceivedBytes.get();
+    }
+
+    public long getWrittenBytes() {
+        return mWrittenBytes.get();
+    }
+
+    /**
+     * 数据来源是否已经全部读出
+     *
+     * @return 是否结束
+     */
+    public boolean isSourceExhausted() {
+        return mSourceExhausted;
+    }
+
+    @Override
+    public boolean open(String path, int baudRate, int flags) throws IOException {
+        return open(path, new SerialConfig(baudRate).setFlags(flags));
+    }
+
+    @Override
+    public boolean open(String path, SerialConfig config) throws IOException {
+        if (mEmulateBaudRate && config.getBaudRate() <= 0) {
+            throw new IOException("baudRate = " + config.getBaudRate());
+        }
+        mConfig = config;
+        mInputStream = new SimulatedInputStream();
+        mOutputStream = new SimulatedOutputStream();
+        mOpen = true;
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() throws IOException {
+        if (!mOpen) {
+            throw new IOException("Serial port is not initialized");
+        }
+        return mInputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        if (!mOpen) {
+            throw new IOException("Serial port is not initialized");
+        }
+        return mOutputStream;
+    }
+
+    @Override
+    public void close() {
+        mOpen = false;
+        synchronized (mLock) {
+            mLock.notifyAll();
+        }
+        Thread reader = mReader;
+        if (null != reader) {
+            LockSupport.unpark(reader);
+        }
+    }
+
+    /**
+     * 按帧格式传输 length 字节所需的时间
+     */
+    private long transmitNanos(int length) {
+        SerialConfig config = mConfig;
+        int parityBits = SerialConfig.Parity.NONE == config.getParity() ? 0 : 1;
+        int bitsPerChar = 1 + config.getDataBits() + parityBits + config.getStopBits();
+        return (long) (length * bitsPerChar * 1e9 / config.getBaudRate());
+    }
+
+    /**
+     * 等待到指定时间, 串口关闭时提前返回
+     */
+    private void waitUntil(long deadlineNanos) {
+        long remaining;
+        while (mOpen && (remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    private class SimulatedInputStream extends InputStream {
+
+        private final byte[] mChunk = new byte[mChunkCapacity];
+        private int mPosition;
+        private int mLength;
+        // 下一块数据可读的时间, 落后时连续返回以追上平均速率
+        private long mNextNanos;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return -1 == read(one, 0, 1) ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (0 == len) {
+                return 0;
+            }
+            mReader = Thread.currentThread();
+            if (mPosition == mLength && !nextChunk()) {
+                return -1;
+            }
+            int n = Math.min(len, mLength - mPosition);
+            System.arraycopy(mChunk, mPosition, b, off, n);
+            mPosition += n;
+            return n;
+        }
+
+        private boolean nextChunk() throws IOException {
+            int length = mSourceExhausted ? -1 : mSource.nextChunk(mChunk, 0, mChunk.length);
+            if (length < 0) {
+                mSourceExhausted = true;
+                // 线路空闲, 直到关闭
+                synchronized (mLock) {
+                    while (mOpen) {
+                        try {
+                            mLock.wait();
+                        } catch (InterruptedException e) {
+                            throw new IOException("interrupted");
+                        }
+                    }
+                }
+                return false;
+            }
+            long delay = mSource.getDelayNanos();
+            if (mEmulateBaudRate) {
+                delay = Math.max(delay, transmitNanos(length));
+            }
+            long now = System.nanoTime();
+            mNextNanos = (0 == mNextNanos ? now : mNextNanos) + (long) (delay / mSpeedFactor);
+            waitUntil(mNextNanos);
+            if (!mOpen) {
+                return false;
+            }
+            mPosition = 0;
+            mLength = length;
+            mReceivedBytes.addAndGet(length);
+            return true;
+        }
+    }
+
+    private class SimulatedOutputStream extends OutputStream {
+
+        private long mNextNanos;
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (!mOpen) {
+                throw new IOException("closed");
+            }
+            mWrittenBytes.addAndGet(len);
+            long nanos;
+            if (mWriteBytesPerSecond > 0) {
+                nanos = (long) (len * 1e9 / mWriteBytesPerSecond);
+            } else if (mEmulateBaudRate) {
+                nanos = transmitNanos(len);
+            } else {
+                return;
+            }
+            long now = System.nanoTime();
+            mNextNanos = Math.max(now, mNextNanos) + (long) (nanos / mSpeedFactor);
+            waitUntil(mNextNanos);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.kongqw.serialportlibrary.simulation;
+
+import java.io.IOException;
+
+/**
+ * {@link SimulatedSerialPort} 的接收数据来源
+ */
+
+public interface TrafficSource {
+
+    /**
+     * 生成下一块数据, 在读取线程中回调
+     *
+     * @param buffer    数据写入的数组
+     * @param offset    起始位置
+     * @param maxLength 最大长度
+     * @return 数据长度, -1 表示没有更多数据
+     * @throws IOException 数据来源出错
+     */
+    int nextChunk(byte[] buffer, int offset, int maxLength) throws IOException;
+
+    /**
+     * 刚生成的这块数据与上一块之间的间隔
+     *
+     * @return 纳秒, 0 表示立即可读
+     */
+    long getDelayNanos();
+}
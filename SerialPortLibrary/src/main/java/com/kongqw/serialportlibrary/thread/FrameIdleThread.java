@@ -0,0 +1,93 @@
+package com.kongqw.serialportlibrary.thread;
+
+import com.kongqw.serialportlibrary.decoder.FrameDecoder;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+/**
+ * 帧解析器的空闲检查线程
+ * <p>
+ * 依赖超时分帧的解析器 (如 Modbus RTU) 在缓冲区中有未输出的数据, 且超过
+ * {@link FrameDecoder#getIdleTimeoutNanos()} 没有新数据时, 由本线程调用 {@link FrameDecoder#onIdle},
+ * 与读取方式无关。缓冲区为空时线程一直等待, 不定时唤醒。
+ * 数据通过 {@link #decode} 解析, 与空闲检查互斥, 解析器本身不需要线程安全。
+ */
+
+public class FrameIdleThread extends Thread {
+
+    private final FrameDecoder mDecoder;
+    private final OnSerialPortFrameListener mListener;
+    private final long mTimeoutNanos;
+    private final Object mLock = new Object();
+    private boolean mReleased;
+
+    /**
+     * @param decoder  帧解析器, {@link FrameDecoder#getIdleTimeoutNanos()} 需大于 0
+     * @param listener 帧回调, 空闲时输出的帧在本线程中回调
+     */
+    public FrameIdleThread(FrameDecoder decoder, OnSerialPortFrameListener listener) {
+        super("SerialPortFrameIdle");
+        if (decoder.getIdleTimeoutNanos() <= 0) {
+            throw new IllegalArgumentException(decoder + " has no idle timeout");
+        }
+        mDecoder = decoder;
+        mListener = listener;
+        mTimeoutNanos = decoder.getIdleTimeoutNanos();
+        setDaemon(true);
+    }
+
+    /**
+     * 解析接收到的数据, 在读取线程中调用
+     *
+     * @param data         数据
+     * @param offset       起始位置
+     * @param length       长度
+     * @param arrivalNanos 数据到达时间 {@link System#nanoTime()}
+     */
+    public void decode(byte[] data, int offset, int length, long arrivalNanos) {
+        synchronized (mLock) {
+            mDecoder.decode(data, offset, length, arrivalNanos, mListener);
+            if (mDecoder.getPendingBytes() > 0) {
+                mLock.notify();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        synchronized (mLock) {
+            while (!mReleased) {
+                try {
+                    if (0 == mDecoder.getPendingBytes()) {
+                        mLock.wait();
+                        continue;
+                    }
+                    long arrivalNanos = mDecoder.getArrivalNanos();
+                    long remaining = arrivalNanos + mTimeoutNanos - System.nanoTime();
+                    if (remaining > 0) {
+                        mLock.wait(remaining / 1000000, (int) (remaining % 1000000));
+                        continue;
+                    }
+                    mDecoder.onIdle(System.nanoTime(), mListener);
+                    if (mDecoder.getPendingBytes() > 0 && arrivalNanos == mDecoder.getArrivalNanos()) {
+                        // 解析器没有输出剩余数据, 等待新数据, 避免空转
+                        mLock.wait();
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * 结束线程, 之后 {@link #decode} 仍可继续使用, 但不再做空闲检查
+     */
+    public void release() {
+        synchronized (mLock) {
+            mReleased = true;
+            mLock.notify();
+        }
+    }
+}
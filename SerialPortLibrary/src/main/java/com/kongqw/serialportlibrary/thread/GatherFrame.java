@@ -0,0 +1,66 @@
+package com.kongqw.serialportlibrary.thread;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 由多段 ByteBuffer 组成的待发送帧
+ * <p>
+ * 只保存调用方缓冲区的副本视图, 不拷贝数据, 调用方缓冲区的 position / limit 保持不变。
+ */
+
+final class GatherFrame {
+
+    private final ByteBuffer[] mOriginals;
+    private final ByteBuffer[] mParts;
+    private final int[] mPositions;
+    private final int mLength;
+
+    GatherFrame(ByteBuffer[] parts) {
+        mOriginals = parts;
+        mParts = new ByteBuffer[parts.length];
+        mPositions = new int[parts.length];
+        int length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            mParts[i] = parts[i].duplicate();
+            mPositions[i] = parts[i].position();
+            length += parts[i].remaining();
+        }
+        mLength = length;
+    }
+
+    int length() {
+        return mLength;
+    }
+
+    /**
+     * 待写入的各段, 每次调用都从头开始, 写入失败后可以重新获取再写一次
+     *
+     * @return 各段数据
+     */
+    ByteBuffer[] parts() {
+        for (int i = 0; i < mParts.length; i++) {
+            mParts[i].position(mPositions[i]);
+        }
+        return mParts;
+    }
+
+    /**
+     * 调用方传入的缓冲区
+     *
+     * @return 缓冲区
+     */
+    ByteBuffer[] originals() {
+        return mOriginals;
+    }
+
+    byte[] toByteArray() {
+        byte[] bytes = new byte[mLength];
+        int offset = 0;
+        for (ByteBuffer part : parts()) {
+            int length = part.remaining();
+            part.get(bytes, offset, length);
+            offset += length;
+        }
+        return bytes;
+    }
+}
@@ -2,6 +2,12 @@ package com.kongqw.serialportlibrary.thread;
 
 import android.util.Log;
 
+import com.kongqw.serialportlibrary.ThreadScheduling;
+import com.kongqw.serialportlibrary.TimestampedInput;
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+import com.kongqw.serialportlibrary.buffer.ReceiveBufferPool;
+import com.kongqw.serialportlibrary.capture.TrafficRecorder;
+
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -17,39 +23,148 @@ public abstract class SerialPortReadThread extends Thread {
     public abstract void onError(Exception e);
 
     private static final String TAG = SerialPortReadThread.class.getSimpleName();
-    private InputStream mInputStream;
-    private byte[] mReadBuffer;
+    private volatile InputStream mInputStream;
+    private final ReceiveBufferPool mBufferPool;
+    private volatile boolean mDebug;
+    private long mReadTimeoutNanos;
+    private boolean mReconnectable;
+    private TrafficRecorder mTrafficRecorder;
+    private ThreadScheduling mThreadScheduling;
+    private long mLastArrivalNanos;
+    // 每次 resume 加一, 用于判断出错的流是否已被替换
+    private volatile int mGeneration;
+    private volatile boolean mReleased;
+    private final Object mStreamLock = new Object();
 
     public SerialPortReadThread(InputStream inputStream) {
+        this(inputStream, new ReceiveBufferPool());
+    }
+
+    public SerialPortReadThread(InputStream inputStream, ReceiveBufferPool bufferPool) {
         mInputStream = inputStream;
-        mReadBuffer = new byte[1024];
+        mBufferPool = bufferPool;
+    }
+
+    /**
+     * 数据接收(缓冲池模式)
+     * <p>
+     * 默认实现拷贝出数据并回调 {@link #onDataReceived(byte[])}, 然后归还缓冲区。
+     * 重写此方法可以直接使用缓冲区, 使用完毕后必须调用 {@link ReceiveBuffer#recycle()}。
+     *
+     * @param buffer 接收到的数据
+     */
+    public void onBufferReceived(ReceiveBuffer buffer) {
+        try {
+            onDataReceived(buffer.toByteArray());
+        } finally {
+            buffer.recycle();
+        }
+    }
+
+    /**
+     * 读取超时, 仅在 {@link #setReadTimeout(int)} 开启后回调
+     *
+     * @throws IOException 视为读取出错, 例如检测到设备已被拔出
+     */
+    public void onReadTimeout() throws IOException {
+    }
+
+    /**
+     * 串口配置为 VMIN = 0 且 VTIME > 0 时, read 超时返回 0, 流会返回 -1。
+     * 开启后等待了接近超时时间才返回的 -1 视为读取超时并回调 {@link #onReadTimeout()}, 而不是结束线程;
+     * 立即返回的 -1 (例如 USB 设备拔出后) 仍视为流结束。
+     *
+     * @param timeoutMillis 读取超时, 即 VTIME * 100; 默认 0 表示关闭, 需在线程启动前设置
+     */
+    public void setReadTimeout(int timeoutMillis) {
+        mReadTimeoutNanos = timeoutMillis * 1000000L;
+    }
+
+    /**
+     * 开启后读取出错或流结束时回调 {@link #onError(Exception)} 并等待 {@link #resume(InputStream)},
+     * 而不是结束线程
+     *
+     * @param reconnectable 默认关闭, 需在线程启动前设置
+     */
+    public void setReconnectable(boolean reconnectable) {
+        mReconnectable = reconnectable;
+    }
+
+    /**
+     * 切换到重新打开的串口输入流, 当前阻塞在旧流上的读取返回后生效
+     *
+     * @param inputStream 新的输入流
+     */
+    public void resume(InputStream inputStream) {
+        synchronized (mStreamLock) {
+            mInputStream = inputStream;
+            mGeneration++;
+            mStreamLock.notifyAll();
+        }
+    }
+
+    /**
+     * 记录接收到的数据, 需在线程启动前设置
+     *
+     * @param recorder 记录器
+     */
+    public void setTrafficRecorder(TrafficRecorder recorder) {
+        mTrafficRecorder = recorder;
+    }
+
+    /**
+     * 线程启动后应用的调度参数, 需在线程启动前设置
+     *
+     * @param scheduling 调度参数, null 表示使用默认调度
+     */
+    public void setThreadScheduling(ThreadScheduling scheduling) {
+        mThreadScheduling = scheduling;
+    }
+
+    /**
+     * 是否输出每次读取的调试日志
+     *
+     * @param debug 默认关闭
+     */
+    public void setDebug(boolean debug) {
+        mDebug = debug;
     }
 
     @Override
     public void run() {
         super.run();
+        if (null != mThreadScheduling) {
+            mThreadScheduling.apply();
+        }
 
         while (!isInterrupted()) {
+            InputStream inputStream = mInputStream;
+            if (null == inputStream) {
+                return;
+            }
+            int generation = mGeneration;
+
+            ReceiveBuffer buffer = mBufferPool.acquire();
+            int size;
             try {
-                if (null == mInputStream) {
-                    return;
+                long readNanos = 0 < mReadTimeoutNanos ? System.nanoTime() : 0;
+                size = inputStream.read(buffer.array(), buffer.offset(), buffer.capacity());
+                if (0 >= size && 0 < mReadTimeoutNanos && System.nanoTime() - readNanos >= mReadTimeoutNanos / 2) {
+                    buffer.recycle();
+                    buffer = null;
+                    onReadTimeout();
+                    continue;
                 }
-
-                Log.i(TAG, "run: ");
-                int size = mInputStream.read(mReadBuffer);
-
-                if (-1 == size || 0 >= size) {
+            } catch (IOException e) {
+                if (null != buffer) {
+                    buffer.recycle();
+                }
+                if (mReconnectable) {
+                    if (awaitResume(e, generation)) {
+                        continue;
+                    }
                     return;
                 }
-
-                byte[] readBytes = new byte[size];
-
-                System.arraycopy(mReadBuffer, 0, readBytes, 0, size);
-
-                Log.i(TAG, "run: readBytes = " + new String(readBytes));
-                onDataReceived(readBytes);
-
-            } catch (IOException e) {
                 e.printStackTrace();
                 try {
                     onError(e);
@@ -58,7 +173,75 @@ public abstract class SerialPortReadThread extends Thread {
                 }
                 return;
             }
+
+            if (0 >= size) {
+                // 流结束, 读取超时模式下是立即返回的 -1
+                buffer.recycle();
+                if (mReconnectable) {
+                    if (awaitResume(new IOException("end of stream"), generation)) {
+                        continue;
+                    }
+                    return;
+                }
+                if (!mReleased) {
+                    try {
+                        onError(new IOException("end of stream"));
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+                return;
+            }
+
+            // 流能提供本地记录的到达时间时使用, 不包含本线程被调度的延迟
+            long arrivalNanos = inputStream instanceof TimestampedInput
+                    ? ((TimestampedInput) inputStream).getArrivalNanos() : System.nanoTime();
+            buffer.setLength(size);
+            buffer.setArrivalNanos(arrivalNanos);
+            buffer.setGapNanos(0 == mLastArrivalNanos ? -1 : arrivalNanos - mLastArrivalNanos);
+            mLastArrivalNanos = arrivalNanos;
+            if (null != mTrafficRecorder) {
+                mTrafficRecorder.recordReceived(buffer.array(), buffer.offset(), size, buffer.getArrivalNanos());
+            }
+
+            if (mDebug) {
+                Log.i(TAG, "run: readBytes = " + new String(buffer.array(), buffer.offset(), size));
+            }
+            onBufferReceived(buffer);
+        }
+    }
+
+    /**
+     * 回调错误并等待切换到新的输入流
+     *
+     * @param e          错误
+     * @param generation 出错的流对应的代数
+     * @return 线程已释放时返回 false
+     */
+    private boolean awaitResume(IOException e, int generation) {
+        if (mReleased) {
+            return false;
+        }
+        if (generation != mGeneration) {
+            // 出错的是已被替换的旧流
+            return true;
+        }
+        e.printStackTrace();
+        try {
+            onError(e);
+        } catch (Exception e2) {
+            e2.printStackTrace();
+        }
+        synchronized (mStreamLock) {
+            while (generation == mGeneration && !mReleased) {
+                try {
+                    mStreamLock.wait();
+                } catch (InterruptedException e2) {
+                    return false;
+                }
+            }
         }
+        return !mReleased;
     }
 
     @Override
@@ -70,6 +253,10 @@ public abstract class SerialPortReadThread extends Thread {
      * 关闭线程 释放资源
      */
     public void release() {
+        mReleased = true;
+        synchronized (mStreamLock) {
+            mStreamLock.notifyAll();
+        }
         if (null != mInputStream) {
             try {
                 mInputStream.close();
@@ -0,0 +1,858 @@
+package com.kongqw.serialportlibrary.thread;
+
+import com.kongqw.serialportlibrary.ISerialPortChannel;
+import com.kongqw.serialportlibrary.SerialPortChannel;
+import com.kongqw.serialportlibrary.ThreadScheduling;
+import com.kongqw.serialportlibrary.buffer.SendRing;
+import com.kongqw.serialportlibrary.capture.TrafficRecorder;
+import com.kongqw.serialportlibrary.listener.OnSendQueueListener;
+import com.kongqw.serialportlibrary.metrics.SerialPortMetrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 串口消息发送线程
+ * <p>
+ * 发送的数据先进入无锁队列, 线程每次唤醒后取出队列中的多帧数据合并为一次写入,
+ * 写入完成后逐帧回调 {@link #onDataSent(byte[])}。
+ */
+
+public abstract class SerialPortWriteThread extends Thread {
+
+    public abstract void onDataSent(byte[] bytes);
+
+    public abstract void onError(Exception e);
+
+    private static final String TAG = SerialPortWriteThread.class.getSimpleName();
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH_BYTES = 4096;
+    // 按 UART 发送速度等待时每次至少等待的时间
+    private static final long MIN_PACING_NANOS = 100000;
+
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum OverflowPolicy {
+        // 阻塞调用者直到队列有空位
+        BLOCK,
+        // 丢弃队列中最早的数据
+        DROP_OLDEST,
+        // 丢弃本次发送的数据
+        DROP_NEWEST,
+        // 立即返回发送失败
+        FAIL
+    }
+
+    private volatile OutputStream mOutputStream;
+    private volatile ISerialPortChannel mChannel;
+    private final SendRing<Object> mSendRing;
+    private final int mMaxBatchBytes;
+    private final long mFlushDeadlineNanos;
+    // 合并写入的缓冲区, 有通道时使用 Direct ByteBuffer 直接写入
+    private final ByteBuffer mBatchBuffer;
+    private final byte[] mBatchArray;
+    // byte[] 或 GatherFrame
+    private Object[] mBatchFrames = new Object[16];
+    private long[] mBatchEnqueueNanos = new long[16];
+    private int mBatchFrameCount;
+    private int mBatchBytes;
+    private Object mPendingFrame;
+    private long mPendingEnqueueNanos;
+    // takeFrame 取出的帧的入队时间
+    private final long[] mTakenEnqueueNanos = new long[1];
+    private SerialPortMetrics mMetrics;
+    private TrafficRecorder mTrafficRecorder;
+    private ThreadScheduling mThreadScheduling;
+    private int mOutputQueueLimit = -1;
+    private long mNanosPerByte;
+    // 由 SerialPortWriterPool 的工作线程发送时不为 null, 此时本线程不启动
+    private volatile SerialPortWriterPool.Worker mWorker;
+    // 工作线程中写入失败、等待重连时记录出错时的 generation, -1 表示没有等待
+    private int mFailedGeneration = -1;
+    // 只由工作线程访问, 本轮等待 UART 发送的估算时间
+    private long mPacingDelayNanos;
+    private volatile boolean mParked;
+    private volatile boolean mRunning = true;
+
+    private OverflowPolicy mOverflowPolicy = OverflowPolicy.FAIL;
+    private OnSendQueueListener mOnSendQueueListener;
+    private int mHighWaterMark = Integer.MAX_VALUE;
+    private int mLowWaterMark;
+    private final AtomicBoolean mAboveHighWaterMark = new AtomicBoolean();
+    private final Object mSpaceLock = new Object();
+    private volatile int mBlockedProducers;
+    private boolean mReconnectable;
+    // 每次 resume 加一, 用于判断出错的流是否已被替换
+    private volatile int mGeneration;
+    private final Object mStreamLock = new Object();
+
+    /**
+     * @param outputStream       串口输出流
+     * @param channel            串口通道, 为 null 时通过输出流写入
+     * @param queueCapacity      队列容量
+     * @param maxBatchBytes      单次合并写入的最大字节数
+     * @param flushDeadlineNanos 取到第一帧后最多等待多久以合并后续帧, 0 表示不等待
+     */
+    public SerialPortWriteThread(OutputStream outputStream, ISerialPortChannel channel,
+                                 int queueCapacity, int maxBatchBytes, long flushDeadlineNanos) {
+        super("SerialPortWriteThread");
+        mOutputStream = outputStream;
+        mChannel = channel;
+        mSendRing = new SendRing<>(queueCapacity);
+        mMaxBatchBytes = maxBatchBytes;
+        mFlushDeadlineNanos = flushDeadlineNanos;
+        if (null != channel) {
+            mBatchBuffer = ByteBuffer.allocateDirect(maxBatchBytes);
+            mBatchArray = null;
+        } else {
+            mBatchBuffer = null;
+            mBatchArray = new byte[maxBatchBytes];
+        }
+    }
+
+    /**
+     * 设置队列已满时的处理策略, 需在线程启动前设置
+     *
+     * @param policy 默认 {@link OverflowPolicy#FAIL}
+     */
+    public void setOverflowPolicy(OverflowPolicy policy) {
+        mOverflowPolicy = policy;
+    }
+
+    /**
+     * 设置性能统计, 需在线程启动前设置
+     *
+     * @param metrics 统计
+     */
+    public void setMetrics(SerialPortMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    /**
+     * 记录已发送的数据, 需在线程启动前设置
+     *
+     * @param recorder 记录器
+     */
+    public void setTrafficRecorder(TrafficRecorder recorder) {
+        mTrafficRecorder = recorder;
+    }
+
+    /**
+     * 线程启动后应用的调度参数, 需在线程启动前设置
+     *
+     * @param scheduling 调度参数, null 表示使用默认调度
+     */
+    public void setThreadScheduling(ThreadScheduling scheduling) {
+        mThreadScheduling = scheduling;
+    }
+
+    /**
+     * 按 UART 实际发送速度控制写入, 需在线程启动前设置, 只对 {@link SerialPortChannel} 有效
+     * <p>
+     * 写入前内核发送队列(TIOCOUTQ)超过上限时先等待 UART 发出多余的字节,
+     * 期间的新帧留在发送队列中合并, 不会在内核缓冲区中积压。
+     *
+     * @param outputQueueLimit 内核发送队列的上限(字节), 小于 0 表示不控制
+     * @param nanosPerByte     传输一个字节所需的时间, 用于估算等待时间
+     */
+    public void setOutputPacing(int outputQueueLimit, long nanosPerByte) {
+        mOutputQueueLimit = outputQueueLimit;
+        mNanosPerByte = nanosPerByte;
+    }
+
+    /**
+     * 是否已按 UART 发送速度控制写入, 写入时不会在内核缓冲区已满时长时间阻塞
+     */
+    boolean isOutputPaced() {
+        return mOutputQueueLimit >= 0 && mChannel instanceof SerialPortChannel;
+    }
+
+    /**
+     * 设置队列监听, 需在线程启动前设置
+     *
+     * @param listener      listener
+     * @param highWaterMark 队列深度达到该值时回调 {@link OnSendQueueListener#onHighWaterMark(int)}
+     * @param lowWaterMark  达到高水位后回落到该值时回调 {@link OnSendQueueListener#onLowWaterMark(int)}
+     */
+    public void setOnSendQueueListener(OnSendQueueListener listener, int highWaterMark, int lowWaterMark) {
+        if (lowWaterMark < 0 || lowWaterMark >= highWaterMark) {
+            throw new IllegalArgumentException("highWaterMark = " + highWaterMark + ", lowWaterMark = " + lowWaterMark);
+        }
+        mOnSendQueueListener = listener;
+        mHighWaterMark = highWaterMark;
+        mLowWaterMark = lowWaterMark;
+    }
+
+    /**
+     * 开启后写入失败时回调 {@link #onError(Exception)} 并等待 {@link #resume(OutputStream, ISerialPortChannel)},
+     * 写入失败的这一批数据在恢复后整批重发, 队列中的数据保持不变
+     *
+     * @param reconnectable 默认关闭, 需在线程启动前设置
+     */
+    public void setReconnectable(boolean reconnectable) {
+        mReconnectable = reconnectable;
+    }
+
+    /**
+     * 切换到重新打开的串口
+     *
+     * @param outputStream 新的输出流
+     * @param channel      新的通道, 是否为 null 需与构造时一致
+     */
+    public void resume(OutputStream outputStream, ISerialPortChannel channel) {
+        if ((null == channel) != (null == mBatchBuffer)) {
+            throw new IllegalArgumentException("channel = " + channel);
+        }
+        synchronized (mStreamLock) {
+            mOutputStream = outputStream;
+            mChannel = channel;
+            mGeneration++;
+            mStreamLock.notifyAll();
+        }
+        wakeUp();
+    }
+
+    /**
+     * 发送完成, 对应 {@link #send(byte[], int, int)} 和 {@link #send(ByteBuffer...)} 发送的数据
+     *
+     * @param parts 发送时传入的缓冲区, 此后调用方可以修改或复用
+     */
+    public void onBuffersSent(ByteBuffer[] parts) {
+    }
+
+    /**
+     * 发送数据, 可在任意线程调用
+     *
+     * @param bytes 发送的数据
+     * @return 数据未能进入队列时返回 false
+     */
+    public boolean send(byte[] bytes) {
+        if (null == bytes) {
+            return false;
+        }
+        if (0 == bytes.length) {
+            return true;
+        }
+        return enqueue(bytes);
+    }
+
+    /**
+     * 发送数组的一部分, 不拷贝数据, 在 {@link #onBuffersSent(ByteBuffer[])} 之前不能修改
+     *
+     * @param bytes  数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 数据未能进入队列时返回 false
+     */
+    public boolean send(byte[] bytes, int offset, int length) {
+        if (null == bytes) {
+            return false;
+        }
+        if (offset < 0 || length < 0 || offset + length > bytes.length) {
+            throw new IndexOutOfBoundsException("offset = " + offset + ", length = " + length + ", array = " + bytes.length);
+        }
+        if (0 == length) {
+            return true;
+        }
+        return enqueue(new GatherFrame(new ByteBuffer[]{ByteBuffer.wrap(bytes, offset, length)}));
+    }
+
+    /**
+     * 将多段数据作为一帧发送, 有串口通道时通过 writev 一次写入
+     * <p>
+     * 发送 [position, limit) 之间的数据, 不修改缓冲区的 position / limit,
+     * 在 {@link #onBuffersSent(ByteBuffer[])} 之前不能修改缓冲区内容。
+     *
+     * @param parts 各段数据
+     * @return 数据未能进入队列时返回 false
+     */
+    public boolean send(ByteBuffer... parts) {
+        if (null == parts) {
+            return false;
+        }
+        for (ByteBuffer part : parts) {
+            if (null == part) {
+                return false;
+            }
+        }
+        GatherFrame frame = new GatherFrame(parts);
+        if (0 == frame.length()) {
+            return true;
+        }
+        return enqueue(frame);
+    }
+
+    private boolean enqueue(Object frame) {
+        if (!mRunning) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (!mSendRing.offer(frame, now) && !offerOnOverflow(frame, now)) {
+            return false;
+        }
+        wakeUp();
+        checkHighWaterMark();
+        return true;
+    }
+
+    private void wakeUp() {
+        SerialPortWriterPool.Worker worker = mWorker;
+        if (null != worker) {
+            worker.wakeUp();
+        } else if (mParked) {
+            LockSupport.unpark(this);
+        }
+    }
+
+    private boolean offerOnOverflow(Object bytes, long now) {
+        switch (mOverflowPolicy) {
+            case BLOCK:
+                synchronized (mSpaceLock) {
+                    mBlockedProducers++;
+                    try {
+                        while (!mSendRing.offer(bytes, now)) {
+                            if (!mRunning) {
+                                return false;
+                            }
+                            mSpaceLock.wait(100);
+                        }
+                        return true;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return false;
+                    } finally {
+                        mBlockedProducers--;
+                    }
+                }
+            case DROP_OLDEST:
+                while (!mSendRing.offer(bytes, now)) {
+                    Object dropped = mSendRing.poll();
+                    if (null != dropped) {
+                        notifyDropped(dropped);
+                    }
+                }
+                return true;
+            case DROP_NEWEST:
+                notifyDropped(bytes);
+                return false;
+            case FAIL:
+            default:
+                return false;
+        }
+    }
+
+    private void notifyDropped(Object frame) {
+        OnSendQueueListener listener = mOnSendQueueListener;
+        if (null != listener) {
+            try {
+                listener.onDataDropped(frame instanceof byte[] ? (byte[]) frame : ((GatherFrame) frame).toByteArray());
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void checkHighWaterMark() {
+        OnSendQueueListener listener = mOnSendQueueListener;
+        if (null == listener) {
+            return;
+        }
+        int depth = mSendRing.size();
+        if (depth >= mHighWaterMark && mAboveHighWaterMark.compareAndSet(false, true)) {
+            try {
+                listener.onHighWaterMark(depth);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void checkLowWaterMark() {
+        OnSendQueueListener listener = mOnSendQueueListener;
+        if (null == listener || !mAboveHighWaterMark.get()) {
+            return;
+        }
+        int depth = mSendRing.size();
+        if (depth <= mLowWaterMark && mAboveHighWaterMark.compareAndSet(true, false)) {
+            try {
+                listener.onLowWaterMark(depth);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * 队列中等待发送的帧数
+     *
+     * @return 帧数
+     */
+    public int getQueueSize() {
+        return mSendRing.size();
+    }
+
+    @Override
+    public void run() {
+        super.run();
+        if (null != mThreadScheduling) {
+            mThreadScheduling.apply();
+        }
+
+        while (mRunning) {
+            Object frame = takeFrame(0);
+            if (null == frame) {
+                continue;
+            }
+            paceOutput();
+            int generation = mGeneration;
+            try {
+                writeBatch(frame);
+            } catch (IOException e) {
+                if (!recover(e, generation)) {
+                    clearBatch();
+                    continue;
+                }
+            }
+            completeBatch();
+        }
+    }
+
+    /**
+     * 交给 SerialPortWriterPool 的工作线程发送, 代替 {@link #start()}
+     */
+    void attach(SerialPortWriterPool.Worker worker) {
+        mWorker = worker;
+    }
+
+    /**
+     * 在工作线程中发送一批数据, 不等待合并, 也不阻塞等待重连或 UART 发送
+     *
+     * @return {@link SerialPortWriterPool#PUMP_IDLE} 没有数据,
+     * {@link SerialPortWriterPool#PUMP_WORKED} 发送了一批, {@link SerialPortWriterPool#PUMP_PACING} 等待 UART 发送
+     */
+    int pump() {
+        mPacingDelayNanos = 0;
+        if (!mRunning) {
+            return SerialPortWriterPool.PUMP_IDLE;
+        }
+        if (mFailedGeneration >= 0) {
+            int generation = mGeneration;
+            if (mFailedGeneration == generation) {
+                return SerialPortWriterPool.PUMP_IDLE;
+            }
+            mFailedGeneration = -1;
+            try {
+                rewriteBatch();
+            } catch (IOException e) {
+                onPumpFailed(e, generation);
+                return SerialPortWriterPool.PUMP_WORKED;
+            }
+            completeBatch();
+            return SerialPortWriterPool.PUMP_WORKED;
+        }
+        if (null == mPendingFrame && mSendRing.isEmpty()) {
+            return SerialPortWriterPool.PUMP_IDLE;
+        }
+        long delay = pacingDelayNanos();
+        if (delay > 0) {
+            mPacingDelayNanos = delay;
+            return SerialPortWriterPool.PUMP_PACING;
+        }
+        Object frame = takeFrame(-1);
+        if (null == frame) {
+            return SerialPortWriterPool.PUMP_IDLE;
+        }
+        int generation = mGeneration;
+        try {
+            writeBatch(frame);
+        } catch (IOException e) {
+            onPumpFailed(e, generation);
+            return SerialPortWriterPool.PUMP_WORKED;
+        }
+        completeBatch();
+        return SerialPortWriterPool.PUMP_WORKED;
+    }
+
+    /**
+     * 最近一次 {@link #pump()} 返回 {@link SerialPortWriterPool#PUMP_PACING} 时估算的等待时间
+     *
+     * @return 纳秒, 其他结果时为 0
+     */
+    long getPacingDelayNanos() {
+        return mPacingDelayNanos;
+    }
+
+    /**
+     * 是否有待发送的数据, 由工作线程在休眠前检查
+     */
+    boolean hasWork() {
+        return mRunning && ((mFailedGeneration >= 0 && mFailedGeneration != mGeneration)
+                || (mFailedGeneration < 0 && (null != mPendingFrame || !mSendRing.isEmpty())));
+    }
+
+    /**
+     * 工作线程中写入失败, 与 {@link #recover(IOException, int)} 相同, 但不在工作线程中等待重连
+     */
+    private void onPumpFailed(IOException e, int generation) {
+        if (generation == mGeneration) {
+            e.printStackTrace();
+            try {
+                onError(e);
+            } catch (Exception e2) {
+                e2.printStackTrace();
+            }
+        }
+        if (mReconnectable && mRunning) {
+            // 保留当前这一批, 切换到新的串口后重发
+            mFailedGeneration = generation;
+        } else {
+            clearBatch();
+        }
+    }
+
+    /**
+     * 一批数据写入完成后统计、记录并回调
+     */
+    private void completeBatch() {
+        recordMetrics();
+        recordTraffic();
+        for (int i = 0; i < mBatchFrameCount; i++) {
+            try {
+                Object sent = mBatchFrames[i];
+                if (sent instanceof byte[]) {
+                    onDataSent((byte[]) sent);
+                } else {
+                    onBuffersSent(((GatherFrame) sent).originals());
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+        clearBatch();
+        checkLowWaterMark();
+    }
+
+    /**
+     * 写入失败后回调错误, 可重连时等待切换到新的串口并重发当前这一批
+     *
+     * @return 重发成功时返回 true
+     */
+    private boolean recover(IOException e, int generation) {
+        while (true) {
+            if (generation == mGeneration) {
+                e.printStackTrace();
+                try {
+                    onError(e);
+                } catch (Exception e2) {
+                    e2.printStackTrace();
+                }
+            }
+            if (!mReconnectable) {
+                return false;
+            }
+            synchronized (mStreamLock) {
+                while (generation == mGeneration && mRunning) {
+                    try {
+                        mStreamLock.wait();
+                    } catch (InterruptedException e2) {
+                        return false;
+                    }
+                }
+            }
+            if (!mRunning) {
+                return false;
+            }
+            generation = mGeneration;
+            try {
+                rewriteBatch();
+                return true;
+            } catch (IOException e2) {
+                e = e2;
+            }
+        }
+    }
+
+    /**
+     * 内核发送队列超过上限时, 按超出的字节数估算 UART 发完所需的时间并等待
+     */
+    private void paceOutput() {
+        long delay;
+        while (mRunning && (delay = pacingDelayNanos()) > 0) {
+            LockSupport.parkNanos(delay);
+        }
+    }
+
+    /**
+     * @return 需要等待的时间, 0 表示可以写入
+     */
+    private long pacingDelayNanos() {
+        ISerialPortChannel channel = mChannel;
+        if (mOutputQueueLimit < 0 || !(channel instanceof SerialPortChannel)) {
+            return 0;
+        }
+        try {
+            int queued = ((SerialPortChannel) channel).getOutputQueueSize();
+            if (queued <= mOutputQueueLimit) {
+                return 0;
+            }
+            return Math.max((queued - mOutputQueueLimit) * mNanosPerByte, MIN_PACING_NANOS);
+        } catch (IOException e) {
+            // 由接下来的写入报告错误
+            return 0;
+        }
+    }
+
+    /**
+     * 从第一帧开始, 在截止时间前尽量取出更多帧合并为一次写入
+     */
+    private void writeBatch(Object first) throws IOException {
+        if (length(first) >= mMaxBatchBytes) {
+            addBatchFrame(first);
+            writeDirect(first);
+            return;
+        }
+        int size = append(first, 0);
+        long deadline = System.nanoTime() + mFlushDeadlineNanos;
+        while (size < mMaxBatchBytes) {
+            // 工作线程由多个串口共用, 不等待后续帧
+            long remaining = null == mWorker ? deadline - System.nanoTime() : -1;
+            Object frame = takeFrame(remaining > 0 ? remaining : -1);
+            if (null == frame) {
+                break;
+            }
+            if (size + length(frame) > mMaxBatchBytes) {
+                // 放不下, 留到下一批
+                mPendingFrame = frame;
+                mPendingEnqueueNanos = mTakenEnqueueNanos[0];
+                break;
+            }
+            size = append(frame, size);
+        }
+        flush(size);
+    }
+
+    /**
+     * 重新写入当前这一批
+     */
+    private void rewriteBatch() throws IOException {
+        if (1 == mBatchFrameCount && length(mBatchFrames[0]) >= mMaxBatchBytes) {
+            writeDirect(mBatchFrames[0]);
+            return;
+        }
+        int size = 0;
+        for (int i = 0; i < mBatchFrameCount; i++) {
+            size = copyToBatch(mBatchFrames[i], size);
+        }
+        flush(size);
+    }
+
+    private int append(Object frame, int size) {
+        addBatchFrame(frame);
+        return copyToBatch(frame, size);
+    }
+
+    private int copyToBatch(Object frame, int size) {
+        if (frame instanceof byte[]) {
+            byte[] bytes = (byte[]) frame;
+            if (null != mBatchBuffer) {
+                mBatchBuffer.put(bytes);
+            } else {
+                System.arraycopy(bytes, 0, mBatchArray, size, bytes.length);
+            }
+            return size + bytes.length;
+        }
+        for (ByteBuffer part : ((GatherFrame) frame).parts()) {
+            int length = part.remaining();
+            if (null != mBatchBuffer) {
+                mBatchBuffer.put(part);
+            } else {
+                part.get(mBatchArray, size, length);
+            }
+            size += length;
+        }
+        return size;
+    }
+
+    private static int length(Object frame) {
+        return frame instanceof byte[] ? ((byte[]) frame).length : ((GatherFrame) frame).length();
+    }
+
+    private void flush(int size) throws IOException {
+        if (null != mBatchBuffer) {
+            mBatchBuffer.flip();
+            try {
+                while (mBatchBuffer.hasRemaining()) {
+                    mChannel.write(mBatchBuffer);
+                }
+            } finally {
+                mBatchBuffer.clear();
+            }
+        } else {
+            mOutputStream.write(mBatchArray, 0, size);
+        }
+    }
+
+    private void writeDirect(Object frame) throws IOException {
+        if (frame instanceof byte[]) {
+            byte[] bytes = (byte[]) frame;
+            if (null != mChannel) {
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    mChannel.write(buffer);
+                }
+            } else {
+                mOutputStream.write(bytes);
+            }
+            return;
+        }
+        GatherFrame gatherFrame = (GatherFrame) frame;
+        ByteBuffer[] parts = gatherFrame.parts();
+        if (null != mChannel) {
+            long remaining = gatherFrame.length();
+            while (remaining > 0) {
+                remaining -= mChannel.write(parts);
+            }
+            return;
+        }
+        for (ByteBuffer part : parts) {
+            if (part.hasArray()) {
+                mOutputStream.write(part.array(), part.arrayOffset() + part.position(), part.remaining());
+                continue;
+            }
+            // 没有通道时 Direct ByteBuffer 经批量数组分段写出
+            while (part.hasRemaining()) {
+                int length = Math.min(part.remaining(), mBatchArray.length);
+                part.get(mBatchArray, 0, length);
+                mOutputStream.write(mBatchArray, 0, length);
+            }
+        }
+    }
+
+    /**
+     * 记录刚由 takeFrame 取出的帧
+     */
+    private void addBatchFrame(Object frame) {
+        if (mBatchFrameCount == mBatchFrames.length) {
+            Object[] grown = new Object[mBatchFrames.length * 2];
+            System.arraycopy(mBatchFrames, 0, grown, 0, mBatchFrameCount);
+            mBatchFrames = grown;
+            long[] grownNanos = new long[grown.length];
+            System.arraycopy(mBatchEnqueueNanos, 0, grownNanos, 0, mBatchFrameCount);
+            mBatchEnqueueNanos = grownNanos;
+        }
+        mBatchEnqueueNanos[mBatchFrameCount] = mTakenEnqueueNanos[0];
+        mBatchFrames[mBatchFrameCount++] = frame;
+        mBatchBytes += length(frame);
+    }
+
+    private void clearBatch() {
+        for (int i = 0; i < mBatchFrameCount; i++) {
+            mBatchFrames[i] = null;
+        }
+        mBatchFrameCount = 0;
+        mBatchBytes = 0;
+    }
+
+    private void recordMetrics() {
+        SerialPortMetrics metrics = mMetrics;
+        if (null == metrics) {
+            return;
+        }
+        long now = System.nanoTime();
+        metrics.onWrite(mBatchBytes, mBatchFrameCount);
+        for (int i = 0; i < mBatchFrameCount; i++) {
+            metrics.getSendLatency().record(now - mBatchEnqueueNanos[i]);
+        }
+    }
+
+    private void recordTraffic() {
+        TrafficRecorder recorder = mTrafficRecorder;
+        if (null == recorder) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < mBatchFrameCount; i++) {
+            Object frame = mBatchFrames[i];
+            if (frame instanceof byte[]) {
+                byte[] bytes = (byte[]) frame;
+                recorder.recordSent(bytes, 0, bytes.length, now);
+            } else {
+                for (ByteBuffer part : ((GatherFrame) frame).originals()) {
+                    recorder.recordSent(part, now);
+                }
+            }
+        }
+    }
+
+    /**
+     * 取出一帧
+     *
+     * @param timeoutNanos 0 表示一直等待, 负数表示不等待
+     * @return 超时或线程结束时返回 null
+     */
+    private Object takeFrame(long timeoutNanos) {
+        if (null != mPendingFrame) {
+            Object frame = mPendingFrame;
+            mPendingFrame = null;
+            mTakenEnqueueNanos[0] = mPendingEnqueueNanos;
+            return frame;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        while (mRunning) {
+            Object frame = mSendRing.poll(mTakenEnqueueNanos);
+            if (null != frame) {
+                if (0 != mBlockedProducers) {
+                    synchronized (mSpaceLock) {
+                        mSpaceLock.notifyAll();
+                    }
+                }
+                return frame;
+            }
+            if (timeoutNanos < 0) {
+                return null;
+            }
+            mParked = true;
+            if (mSendRing.isEmpty()) {
+                if (0 == timeoutNanos) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        mParked = false;
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            } else {
+                // 已占位但还未写入完成
+                Thread.yield();
+            }
+            mParked = false;
+        }
+        return null;
+    }
+
+    /**
+     * 关闭线程, 丢弃未发送的数据
+     */
+    public void release() {
+        mRunning = false;
+        SerialPortWriterPool.Worker worker = mWorker;
+        if (null != worker) {
+            worker.detach(this);
+        }
+        synchronized (mSpaceLock) {
+            mSpaceLock.notifyAll();
+        }
+        synchronized (mStreamLock) {
+            mStreamLock.notifyAll();
+        }
+        LockSupport.unpark(this);
+        interrupt();
+    }
+}
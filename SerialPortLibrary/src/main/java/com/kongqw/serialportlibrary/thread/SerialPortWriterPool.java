@@ -0,0 +1,209 @@
+package com.kongqw.serialportlibrary.thread;
+
+import com.kongqw.serialportlibrary.ThreadScheduling;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 多个串口共用的发送线程池
+ * <p>
+ * 串口的 {@link SerialPortWriteThread} 不再单独启动, 而是交给固定数量的工作线程轮流发送,
+ * 线程数量不随串口数量增加。工作线程不等待合并后续帧, 也不在某个串口上等待重连或 UART 发送。
+ * <p>
+ * 写入仍是阻塞的 write(), 加入的串口必须已设置 {@link SerialPortWriteThread#setOutputPacing(int, long)},
+ * 内核发送队列未降到上限以下时跳过该串口, 不会因 CTS 流控或发送缓冲区已满阻塞同一工作线程上的其他串口。
+ * 上限加上一批的最大字节数需小于内核发送缓冲区, 否则写入仍可能阻塞。
+ * 所有串口都在等待 UART 发送时, 工作线程按最早降到上限的串口估算的时间休眠, 期间有新数据时被唤醒。
+ */
+
+public class SerialPortWriterPool {
+
+    static final int PUMP_IDLE = 0;
+    static final int PUMP_WORKED = 1;
+    static final int PUMP_PACING = 2;
+
+    /**
+     * 未设置发送速度控制的串口加入线程池时使用的内核发送队列上限(字节)
+     * <p>
+     * 队列中保留几个字符, 下一批写入时 UART 还未发完, 两批之间不会空闲, 写入最多阻塞几个字符的时间。
+     */
+    public static final int DEFAULT_OUTPUT_QUEUE_LIMIT = 16;
+
+    private final Worker[] mWorkers;
+    private ThreadScheduling mThreadScheduling;
+    private boolean mShutdown;
+
+    /**
+     * @param workerCount 工作线程数量
+     */
+    public SerialPortWriterPool(int workerCount) {
+        if (workerCount <= 0) {
+            throw new IllegalArgumentException("workerCount = " + workerCount);
+        }
+        mWorkers = new Worker[workerCount];
+    }
+
+    /**
+     * 工作线程启动后应用的调度参数, 需在添加第一个串口前设置
+     *
+     * @param scheduling 调度参数, null 表示使用默认调度
+     */
+    public synchronized void setThreadScheduling(ThreadScheduling scheduling) {
+        mThreadScheduling = scheduling;
+    }
+
+    /**
+     * 交给串口最少的工作线程发送, 代替 {@link SerialPortWriteThread#start()}
+     *
+     * @param writer 尚未启动且已设置发送速度控制的发送线程
+     */
+    public synchronized void attach(SerialPortWriteThread writer) {
+        if (mShutdown) {
+            throw new IllegalStateException("SerialPortWriterPool is shut down");
+        }
+        if (writer.isAlive()) {
+            throw new IllegalArgumentException(writer + " already started");
+        }
+        if (!writer.isOutputPaced()) {
+            throw new IllegalArgumentException(writer + " is not output paced");
+        }
+        Worker target = null;
+        for (int i = 0; i < mWorkers.length; i++) {
+            if (null == mWorkers[i]) {
+                mWorkers[i] = new Worker("SerialPortWriter-" + i, mThreadScheduling);
+                mWorkers[i].start();
+            }
+            if (null == target || mWorkers[i].mWriters.length < target.mWriters.length) {
+                target = mWorkers[i];
+            }
+        }
+        writer.attach(target);
+        target.add(writer);
+    }
+
+    public int getWorkerCount() {
+        return mWorkers.length;
+    }
+
+    /**
+     * 正在发送的串口数量
+     *
+     * @return 串口数量
+     */
+    public synchronized int getWriterCount() {
+        int count = 0;
+        for (Worker worker : mWorkers) {
+            if (null != worker) {
+                count += worker.mWriters.length;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 结束全部工作线程, 各串口未发送的数据被丢弃
+     */
+    public synchronized void shutdown() {
+        mShutdown = true;
+        for (Worker worker : mWorkers) {
+            if (null != worker) {
+                worker.quit();
+            }
+        }
+    }
+
+    static final class Worker extends Thread {
+
+        private final ThreadScheduling mThreadScheduling;
+        // 修改时整体替换, 工作线程无锁读取
+        private volatile SerialPortWriteThread[] mWriters = new SerialPortWriteThread[0];
+        private volatile boolean mParked;
+        private volatile boolean mRunning = true;
+
+        Worker(String name, ThreadScheduling scheduling) {
+            super(name);
+            setDaemon(true);
+            mThreadScheduling = scheduling;
+        }
+
+        synchronized void add(SerialPortWriteThread writer) {
+            SerialPortWriteThread[] writers = new SerialPortWriteThread[mWriters.length + 1];
+            System.arraycopy(mWriters, 0, writers, 0, mWriters.length);
+            writers[mWriters.length] = writer;
+            mWriters = writers;
+            wakeUp();
+        }
+
+        synchronized void detach(SerialPortWriteThread writer) {
+            SerialPortWriteThread[] writers = mWriters;
+            for (int i = 0; i < writers.length; i++) {
+                if (writers[i] == writer) {
+                    SerialPortWriteThread[] removed = new SerialPortWriteThread[writers.length - 1];
+                    System.arraycopy(writers, 0, removed, 0, i);
+                    System.arraycopy(writers, i + 1, removed, i, writers.length - i - 1);
+                    mWriters = removed;
+                    return;
+                }
+            }
+        }
+
+        void wakeUp() {
+            if (mParked) {
+                LockSupport.unpark(this);
+            }
+        }
+
+        void quit() {
+            mRunning = false;
+            LockSupport.unpark(this);
+        }
+
+        @Override
+        public void run() {
+            if (null != mThreadScheduling) {
+                mThreadScheduling.apply();
+            }
+            while (mRunning) {
+                boolean worked = false;
+                long pacingNanos = Long.MAX_VALUE;
+                for (SerialPortWriteThread writer : mWriters) {
+                    try {
+                        int result = writer.pump();
+                        worked |= PUMP_WORKED == result;
+                        if (PUMP_PACING == result) {
+                            pacingNanos = Math.min(pacingNanos, writer.getPacingDelayNanos());
+                        }
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                    }
+                }
+                if (worked) {
+                    continue;
+                }
+                mParked = true;
+                if (hasWork()) {
+                    // 已占位但还未写入完成
+                    Thread.yield();
+                } else if (Long.MAX_VALUE != pacingNanos) {
+                    // 等到最早的串口发到上限以下, 其他串口有新数据时提前唤醒
+                    LockSupport.parkNanos(this, pacingNanos);
+                } else {
+                    LockSupport.park(this);
+                }
+                mParked = false;
+            }
+        }
+
+        /**
+         * 是否有不需要等待 UART 发送的数据
+         */
+        private boolean hasWork() {
+            for (SerialPortWriteThread writer : mWriters) {
+                if (writer.hasWork() && 0 == writer.getPacingDelayNanos()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.kongqw.serialportlibrary.transaction;
+
+/**
+ * 按字段关联: 以请求和应答中相同含义的字段 (序号 / 从站地址等) 作为关联键
+ * <p>
+ * 字段按无符号整数读取, 例如 Modbus RTU 的从站地址为 new FieldCorrelator(0, 0, 1, true)。
+ */
+
+public class FieldCorrelator implements ResponseCorrelator {
+
+    private final int mRequestOffset;
+    private final int mResponseOffset;
+    private final int mLength;
+    private final boolean mBigEndian;
+
+    /**
+     * @param requestOffset  字段在请求中的偏移
+     * @param responseOffset 字段在应答中的偏移
+     * @param length         字段字节数, 1 - 8
+     * @param bigEndian      是否为大端
+     */
+    public FieldCorrelator(int requestOffset, int responseOffset, int length, boolean bigEndian) {
+        if (requestOffset < 0 || responseOffset < 0 || length < 1 || length > 8) {
+            throw new IllegalArgumentException("requestOffset = " + requestOffset + ", responseOffset = " + responseOffset + ", length = " + length);
+        }
+        mRequestOffset = requestOffset;
+        mResponseOffset = responseOffset;
+        mLength = length;
+        mBigEndian = bigEndian;
+    }
+
+    @Override
+    public Object requestKey(byte[] request) {
+        if (request.length < mRequestOffset + mLength) {
+            throw new IllegalArgumentException("request too short: " + request.length);
+        }
+        return readField(request, mRequestOffset);
+    }
+
+    @Override
+    public Object responseKey(byte[] buffer, int offset, int length) {
+        if (length < mResponseOffset + mLength) {
+            return null;
+        }
+        return readField(buffer, offset + mResponseOffset);
+    }
+
+    private Long readField(byte[] buffer, int offset) {
+        long value = 0;
+        for (int i = 0; i < mLength; i++) {
+            int b = buffer[offset + (mBigEndian ? i : mLength - 1 - i)] & 0xFF;
+            value = (value << 8) | b;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,23 @@
+package com.kongqw.serialportlibrary.transaction;
+
+/**
+ * 按顺序关联: 每个应答都匹配给最早发出的请求
+ * <p>
+ * 适用于应答中没有序号或地址的协议。请求超时后才到达的应答会被错配给下一个请求,
+ * 这类协议的在途窗口应保持为 1。
+ */
+
+public class FifoCorrelator implements ResponseCorrelator {
+
+    private static final Object KEY = new Object();
+
+    @Override
+    public Object requestKey(byte[] request) {
+        return KEY;
+    }
+
+    @Override
+    public Object responseKey(byte[] buffer, int offset, int length) {
+        return KEY;
+    }
+}
@@ -0,0 +1,28 @@
+package com.kongqw.serialportlibrary.transaction;
+
+/**
+ * 应答关联器
+ * <p>
+ * 从请求和应答中提取关联键, 键相等 ({@link Object#equals(Object)}) 的应答匹配给最早发出的请求。
+ */
+
+public interface ResponseCorrelator {
+
+    /**
+     * 请求的关联键, 在调用发送的线程中回调
+     *
+     * @param request 请求数据
+     * @return 关联键, 不能为 null
+     */
+    Object requestKey(byte[] request);
+
+    /**
+     * 应答的关联键, 在接收线程中回调, 数据只在回调期间有效
+     *
+     * @param buffer 数据所在数组
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 关联键, 返回 null 表示不是应答
+     */
+    Object responseKey(byte[] buffer, int offset, int length);
+}
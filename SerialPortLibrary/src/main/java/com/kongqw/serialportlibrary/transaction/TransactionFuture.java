@@ -0,0 +1,130 @@
+package com.kongqw.serialportlibrary.transaction;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 一次请求 / 应答事务的结果
+ * <p>
+ * 事务超时后 {@link #get()} 抛出 {@link ExecutionException}, 其 cause 为 {@link TimeoutException};
+ * 串口关闭或发送失败时 cause 为 {@link java.io.IOException}。
+ */
+
+public final class TransactionFuture implements Future<byte[]> {
+
+    private final TransactionManager mOwner;
+    private final byte[] mRequest;
+    private final Object mKey;
+    private final long mDeadlineNanos;
+    private final CountDownLatch mDone = new CountDownLatch(1);
+    private byte[] mResponse;
+    private Throwable mFailure;
+    private boolean mCancelled;
+    private boolean mCompleted;
+
+    TransactionFuture(TransactionManager owner, byte[] request, Object key, long deadlineNanos) {
+        mOwner = owner;
+        mRequest = request;
+        mKey = key;
+        mDeadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 请求数据
+     *
+     * @return 请求数据
+     */
+    public byte[] getRequest() {
+        return mRequest;
+    }
+
+    Object getKey() {
+        return mKey;
+    }
+
+    long getDeadlineNanos() {
+        return mDeadlineNanos;
+    }
+
+    boolean complete(byte[] response) {
+        synchronized (this) {
+            if (mCompleted) {
+                return false;
+            }
+            mCompleted = true;
+            mResponse = response;
+        }
+        mDone.countDown();
+        return true;
+    }
+
+    boolean fail(Throwable failure) {
+        synchronized (this) {
+            if (mCompleted) {
+                return false;
+            }
+            mCompleted = true;
+            mFailure = failure;
+        }
+        mDone.countDown();
+        return true;
+    }
+
+    /**
+     * 取消事务并释放在途窗口, 之后到达的应答不再匹配此请求
+     *
+     * @param mayInterruptIfRunning 无作用, 请求已进入发送队列
+     * @return 是否取消成功
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        synchronized (this) {
+            if (mCompleted) {
+                return false;
+            }
+            mCompleted = true;
+            mCancelled = true;
+        }
+        mOwner.remove(this);
+        mDone.countDown();
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public boolean isDone() {
+        return 0 == mDone.getCount();
+    }
+
+    @Override
+    public byte[] get() throws InterruptedException, ExecutionException {
+        mDone.await();
+        return result();
+    }
+
+    @Override
+    public byte[] get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!mDone.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+        return result();
+    }
+
+    private synchronized byte[] result() throws ExecutionException {
+        if (mCancelled) {
+            throw new CancellationException();
+        }
+        if (null != mFailure) {
+            throw new ExecutionException(mFailure);
+        }
+        return mResponse;
+    }
+}
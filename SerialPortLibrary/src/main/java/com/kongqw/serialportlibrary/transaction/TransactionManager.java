@@ -0,0 +1,212 @@
+package com.kongqw.serialportlibrary.transaction;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 请求 / 应答事务管理
+ * <p>
+ * 最多允许 window 个请求同时在途, 窗口已满时提交方等待, 等待时间计入事务超时。
+ * 接收到的帧经 {@link ResponseCorrelator} 提取关联键后匹配给最早发出的同键请求,
+ * 超时的事务由一个只在有在途请求时运行的线程清理。
+ */
+
+public abstract class TransactionManager {
+
+    /**
+     * 发送请求
+     *
+     * @param request 请求数据
+     * @return 是否成功进入发送队列
+     */
+    protected abstract boolean send(byte[] request);
+
+    public static final int DEFAULT_WINDOW = 1;
+
+    private final ResponseCorrelator mCorrelator;
+    private final int mWindowSize;
+    private final Semaphore mWindow;
+    // 保证请求按登记顺序进入发送队列
+    private final Object mSendLock = new Object();
+    // 按发出顺序排列的在途请求
+    private final List<TransactionFuture> mPending = new ArrayList<>();
+    private Thread mSweeper;
+
+    /**
+     * @param correlator 应答关联器
+     * @param window     最多同时在途的请求数
+     */
+    public TransactionManager(ResponseCorrelator correlator, int window) {
+        if (null == correlator || window <= 0) {
+            throw new IllegalArgumentException("correlator = " + correlator + ", window = " + window);
+        }
+        mCorrelator = correlator;
+        mWindowSize = window;
+        mWindow = new Semaphore(window, true);
+    }
+
+    /**
+     * 发送请求并等待应答
+     *
+     * @param request 请求数据
+     * @param timeout 从提交到收到应答的超时时间
+     * @param unit    时间单位
+     * @return 事务结果
+     */
+    public TransactionFuture submit(byte[] request, long timeout, TimeUnit unit) {
+        if (null == request || timeout <= 0) {
+            throw new IllegalArgumentException("request = " + request + ", timeout = " + timeout);
+        }
+        Object key = mCorrelator.requestKey(request);
+        if (null == key) {
+            throw new IllegalArgumentException("correlator returned null key");
+        }
+        TransactionFuture future = new TransactionFuture(this, request, key, System.nanoTime() + unit.toNanos(timeout));
+        try {
+            if (!mWindow.tryAcquire(timeout, unit)) {
+                future.fail(new TimeoutException("transaction window full"));
+                return future;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.fail(e);
+            return future;
+        }
+        boolean sent;
+        synchronized (mSendLock) {
+            synchronized (this) {
+                mPending.add(future);
+                if (null == mSweeper) {
+                    mSweeper = new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            sweep();
+                        }
+                    }, "SerialPortTransaction");
+                    mSweeper.setDaemon(true);
+                    mSweeper.start();
+                } else {
+                    notifyAll();
+                }
+            }
+            sent = send(request);
+        }
+        if (!sent && remove(future)) {
+            future.fail(new IOException("send failed"));
+        }
+        return future;
+    }
+
+    /**
+     * 接收到一帧数据, 在接收线程中回调
+     *
+     * @param buffer 数据所在数组, 只在回调期间有效
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 是否匹配到了在途请求
+     */
+    public boolean onResponse(byte[] buffer, int offset, int length) {
+        Object key = mCorrelator.responseKey(buffer, offset, length);
+        if (null == key) {
+            return false;
+        }
+        TransactionFuture matched = null;
+        synchronized (this) {
+            for (int i = 0; i < mPending.size(); i++) {
+                if (key.equals(mPending.get(i).getKey())) {
+                    matched = mPending.remove(i);
+                    break;
+                }
+            }
+        }
+        if (null == matched) {
+            return false;
+        }
+        mWindow.release();
+        matched.complete(Arrays.copyOfRange(buffer, offset, offset + length));
+        return true;
+    }
+
+    /**
+     * 结束所有在途事务, 串口关闭时调用
+     *
+     * @param cause 失败原因
+     */
+    public void failAll(Exception cause) {
+        TransactionFuture[] pending;
+        synchronized (this) {
+            pending = mPending.toArray(new TransactionFuture[mPending.size()]);
+            mPending.clear();
+            notifyAll();
+        }
+        mWindow.release(pending.length);
+        for (TransactionFuture future : pending) {
+            future.fail(cause);
+        }
+    }
+
+    /**
+     * 在途请求数
+     *
+     * @return 在途请求数
+     */
+    public synchronized int getOutstandingCount() {
+        return mPending.size();
+    }
+
+    public int getWindowSize() {
+        return mWindowSize;
+    }
+
+    boolean remove(TransactionFuture future) {
+        synchronized (this) {
+            if (!mPending.remove(future)) {
+                return false;
+            }
+        }
+        mWindow.release();
+        return true;
+    }
+
+    private void sweep() {
+        List<TransactionFuture> expired = new ArrayList<>();
+        while (true) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                long wait = Long.MAX_VALUE;
+                for (int i = mPending.size() - 1; i >= 0; i--) {
+                    TransactionFuture future = mPending.get(i);
+                    long remaining = future.getDeadlineNanos() - now;
+                    if (remaining <= 0) {
+                        expired.add(mPending.remove(i));
+                    } else if (remaining < wait) {
+                        wait = remaining;
+                    }
+                }
+                if (expired.isEmpty()) {
+                    if (mPending.isEmpty()) {
+                        mSweeper = null;
+                        return;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, wait);
+                    } catch (InterruptedException e) {
+                        mSweeper = null;
+                        return;
+                    }
+                    continue;
+                }
+            }
+            mWindow.release(expired.size());
+            for (int i = expired.size() - 1; i >= 0; i--) {
+                expired.get(i).fail(new TimeoutException("no response within timeout"));
+            }
+            expired.clear();
+        }
+    }
+}
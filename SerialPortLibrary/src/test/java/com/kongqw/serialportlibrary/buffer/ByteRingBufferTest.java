@@ -0,0 +1,78 @@
+package com.kongqw.serialportlibrary.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ByteRingBufferTest {
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+
+    @Test
+    public void write_stopsWhenFull() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        assertEquals(3, buffer.write(bytes(1, 2, 3), 0, 3));
+        assertEquals(1, buffer.write(bytes(4, 5), 0, 2));
+        assertEquals(4, buffer.available());
+        assertEquals(0, buffer.remaining());
+        assertEquals(0, buffer.write(bytes(6), 0, 1));
+    }
+
+    @Test
+    public void wraparound_readsInOrder() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        buffer.skip(2);
+        assertEquals(3, buffer.write(bytes(4, 5, 6), 0, 3));
+        assertEquals(4, buffer.available());
+        for (int i = 0; i < 4; i++) {
+            assertEquals(3 + i, buffer.get(i));
+        }
+        assertTrue(buffer.isContiguous(0, 2));
+        assertFalse(buffer.isContiguous(0, 3));
+
+        byte[] copy = new byte[4];
+        buffer.copyTo(0, copy, 0, 4);
+        assertArrayEquals(bytes(3, 4, 5, 6), copy);
+    }
+
+    @Test
+    public void indexOf_findsPatternAcrossEnd() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        buffer.write(bytes(0, 0, 1), 0, 3);
+        buffer.skip(2);
+        buffer.write(bytes('\r', '\n', 2), 0, 3);
+        assertEquals(1, buffer.indexOf(bytes('\r', '\n'), 0));
+        assertEquals(-1, buffer.indexOf(bytes('\r', '\n'), 2));
+        assertEquals(-1, buffer.indexOf(bytes(9), 0));
+    }
+
+    @Test
+    public void skipAll_resetsHead() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        buffer.write(bytes(1, 2, 3), 0, 3);
+        buffer.skip(3);
+        assertEquals(0, buffer.available());
+        assertEquals(0, buffer.physicalIndex(0));
+        assertEquals(4, buffer.write(bytes(1, 2, 3, 4), 0, 4));
+        assertTrue(buffer.isContiguous(0, 4));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void get_beyondAvailableThrows() {
+        ByteRingBuffer buffer = new ByteRingBuffer(4);
+        buffer.write(bytes(1), 0, 1);
+        buffer.get(1);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void skip_beyondAvailableThrows() {
+        new ByteRingBuffer(4).skip(1);
+    }
+}
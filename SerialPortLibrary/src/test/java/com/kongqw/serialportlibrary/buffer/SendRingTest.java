@@ -0,0 +1,57 @@
+package com.kongqw.serialportlibrary.buffer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SendRingTest {
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(2, new SendRing<String>(1).capacity());
+        assertEquals(8, new SendRing<String>(5).capacity());
+        assertEquals(8, new SendRing<String>(8).capacity());
+    }
+
+    @Test
+    public void empty_pollReturnsNull() {
+        SendRing<String> ring = new SendRing<>(4);
+        assertTrue(ring.isEmpty());
+        assertEquals(0, ring.size());
+        assertNull(ring.poll());
+    }
+
+    @Test
+    public void full_offerReturnsFalse() {
+        SendRing<Integer> ring = new SendRing<>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(i));
+        }
+        assertEquals(4, ring.size());
+        assertFalse(ring.offer(4));
+        assertEquals(Integer.valueOf(0), ring.poll());
+        assertTrue(ring.offer(4));
+        assertFalse(ring.offer(5));
+    }
+
+    @Test
+    public void wraparound_keepsOrderAndTimestamps() {
+        SendRing<Integer> ring = new SendRing<>(4);
+        long[] timestamp = new long[1];
+        int next = 0;
+        // 多次绕回, 每次队列中保留不同数量的元素
+        for (int lap = 0; lap < 10; lap++) {
+            int count = lap % 4 + 1;
+            for (int i = 0; i < count; i++) {
+                assertTrue(ring.offer(next + i, 1000L + next + i));
+            }
+            for (int i = 0; i < count; i++) {
+                assertEquals(Integer.valueOf(next + i), ring.poll(timestamp));
+                assertEquals(1000L + next + i, timestamp[0]);
+            }
+            next += count;
+            assertTrue(ring.isEmpty());
+            assertNull(ring.poll());
+        }
+    }
+}
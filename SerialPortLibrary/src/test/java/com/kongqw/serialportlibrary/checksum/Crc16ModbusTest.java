@@ -0,0 +1,50 @@
+package com.kongqw.serialportlibrary.checksum;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class Crc16ModbusTest {
+
+    private static final byte[] CHECK_INPUT = "123456789".getBytes();
+
+    @Test
+    public void checkValue() {
+        assertEquals(0x4B37, new Crc16Modbus().compute(CHECK_INPUT, 0, CHECK_INPUT.length));
+    }
+
+    @Test
+    public void offsetAndLength() {
+        byte[] padded = new byte[CHECK_INPUT.length + 6];
+        System.arraycopy(CHECK_INPUT, 0, padded, 3, CHECK_INPUT.length);
+        assertEquals(0x4B37, new Crc16Modbus().compute(padded, 3, CHECK_INPUT.length));
+    }
+
+    @Test
+    public void verify_modbusRequest() {
+        // 读保持寄存器请求, CRC 低字节在前
+        byte[] request = {0x01, 0x03, 0x00, 0x00, 0x00, 0x0A, (byte) 0xC5, (byte) 0xCD};
+        Crc16Modbus crc = new Crc16Modbus();
+        assertTrue(crc.verify(request, 0, request.length));
+        request[7] ^= 1;
+        assertFalse(crc.verify(request, 0, request.length));
+        assertFalse(crc.verify(request, 0, 1));
+    }
+
+    @Test
+    public void append_thenVerify() {
+        Crc16Modbus crc = new Crc16Modbus();
+        byte[] frame = Arrays.copyOf(CHECK_INPUT, CHECK_INPUT.length + crc.size());
+        assertEquals(frame.length, crc.append(frame, 0, CHECK_INPUT.length));
+        assertEquals(0x37, frame[CHECK_INPUT.length] & 0xFF);
+        assertEquals(0x4B, frame[CHECK_INPUT.length + 1] & 0xFF);
+        assertTrue(crc.verify(frame, 0, frame.length));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void append_withoutRoomThrows() {
+        new Crc16Modbus().append(new byte[4], 0, 3);
+    }
+}
@@ -0,0 +1,56 @@
+package com.kongqw.serialportlibrary.checksum;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+
+public class Crc32Test {
+
+    private static long reference(byte[] data, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, offset, length);
+        return crc.getValue();
+    }
+
+    @Test
+    public void checkValue() {
+        byte[] data = "123456789".getBytes();
+        assertEquals(0xCBF43926L, new Crc32().compute(data, 0, data.length));
+    }
+
+    @Test
+    public void matchesJavaUtilZip() {
+        Crc32 crc = new Crc32();
+        Random random = new Random(42);
+        byte[] data = new byte[1024];
+        random.nextBytes(data);
+        // 覆盖 0 长度、不足一组和未对齐的起始位置
+        for (int length = 0; length <= 64; length++) {
+            for (int offset = 0; offset < 8; offset++) {
+                assertEquals("offset = " + offset + ", length = " + length,
+                        reference(data, offset, length), crc.compute(data, offset, length));
+            }
+        }
+        assertEquals(reference(data, 3, 1000), crc.compute(data, 3, 1000));
+    }
+
+    @Test
+    public void append_byteOrder() {
+        byte[] little = "123456789".getBytes();
+        little = Arrays.copyOf(little, little.length + 4);
+        byte[] big = little.clone();
+        new Crc32().append(little, 0, 9);
+        new Crc32(true).append(big, 0, 9);
+        assertEquals(0x26, little[9] & 0xFF);
+        assertEquals(0xCB, little[12] & 0xFF);
+        assertEquals(0xCB, big[9] & 0xFF);
+        assertEquals(0x26, big[12] & 0xFF);
+        assertTrue(new Crc32().verify(little, 0, little.length));
+        assertTrue(new Crc32(true).verify(big, 0, big.length));
+        assertFalse(new Crc32().verify(big, 0, big.length));
+    }
+}
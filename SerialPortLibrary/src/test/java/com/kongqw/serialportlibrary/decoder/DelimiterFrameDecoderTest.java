@@ -0,0 +1,75 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import org.junit.Test;
+
+import static com.kongqw.serialportlibrary.decoder.FrameCollector.decodeByteByByte;
+import static org.junit.Assert.*;
+
+public class DelimiterFrameDecoderTest {
+
+    private static final byte[] CRLF = "\r\n".getBytes();
+
+    @Test
+    public void mergedRead_emitsEveryFrame() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(CRLF, 64, true);
+        FrameCollector collector = new FrameCollector();
+        byte[] data = "$GPGGA\r\n$GPRMC\r\n$GP".getBytes();
+        decoder.decode(data, 0, data.length, 1, collector);
+        assertEquals(2, collector.mFrames.size());
+        assertArrayEquals("$GPGGA".getBytes(), collector.mFrames.get(0));
+        assertArrayEquals("$GPRMC".getBytes(), collector.mFrames.get(1));
+        assertEquals(3, decoder.getPendingBytes());
+    }
+
+    @Test
+    public void splitRead_delimiterAcrossReads() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(CRLF, 64, false);
+        FrameCollector collector = new FrameCollector();
+        byte[] first = "AB\r".getBytes();
+        byte[] second = "\nCD\r\n".getBytes();
+        decoder.decode(first, 0, first.length, 1, collector);
+        assertTrue(collector.mFrames.isEmpty());
+        decoder.decode(second, 0, second.length, 2, collector);
+        assertEquals(2, collector.mFrames.size());
+        assertArrayEquals("AB\r\n".getBytes(), collector.mFrames.get(0));
+        assertArrayEquals("CD\r\n".getBytes(), collector.mFrames.get(1));
+    }
+
+    @Test
+    public void byteByByte_sameAsWhole() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(CRLF, 64, true);
+        FrameCollector collector = new FrameCollector();
+        decodeByteByByte(decoder, "one\r\ntwo\r\n\r\n".getBytes(), collector);
+        assertEquals(3, collector.mFrames.size());
+        assertArrayEquals("one".getBytes(), collector.mFrames.get(0));
+        assertArrayEquals("two".getBytes(), collector.mFrames.get(1));
+        assertEquals(0, collector.mFrames.get(2).length);
+    }
+
+    @Test
+    public void overlongFrame_discardedAndResynced() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(CRLF, 4, true);
+        FrameCollector collector = new FrameCollector();
+        byte[] data = "TOOLONG\r\nOK\r\n".getBytes();
+        decoder.decode(data, 0, data.length, 1, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals("OK".getBytes(), collector.mFrames.get(0));
+        assertEquals(9, decoder.getDiscardedBytes());
+    }
+
+    @Test
+    public void framesAcrossBufferEnd_areCopiedIntact() {
+        DelimiterFrameDecoder decoder = new DelimiterFrameDecoder(CRLF, 64, true);
+        FrameCollector collector = new FrameCollector();
+        // 7 + 2 字节一帧, 累计超过缓冲区容量, 总有帧跨越缓冲区末尾
+        int count = FrameDecoder.DEFAULT_BUFFER_CAPACITY / 9 * 3;
+        for (int i = 0; i < count; i++) {
+            byte[] frame = String.format("%07d\r\n", i).getBytes();
+            decoder.decode(frame, 0, frame.length, i + 1, collector);
+        }
+        assertEquals(count, collector.mFrames.size());
+        for (int i = 0; i < count; i++) {
+            assertArrayEquals(String.format("%07d", i).getBytes(), collector.mFrames.get(i));
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import org.junit.Test;
+
+import static com.kongqw.serialportlibrary.decoder.FrameCollector.decodeByteByByte;
+import static org.junit.Assert.*;
+
+public class FixedLengthFrameDecoderTest {
+
+    @Test
+    public void mergedRead_emitsEveryFrame() {
+        FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(3);
+        FrameCollector collector = new FrameCollector();
+        byte[] data = {1, 2, 3, 4, 5, 6, 7};
+        decoder.decode(data, 0, data.length, 1, collector);
+        assertEquals(2, collector.mFrames.size());
+        assertArrayEquals(new byte[]{1, 2, 3}, collector.mFrames.get(0));
+        assertArrayEquals(new byte[]{4, 5, 6}, collector.mFrames.get(1));
+        assertEquals(1, decoder.getPendingBytes());
+    }
+
+    @Test
+    public void splitRead_waitsForWholeFrame() {
+        FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(4);
+        FrameCollector collector = new FrameCollector();
+        decodeByteByByte(decoder, new byte[]{1, 2, 3}, collector);
+        assertTrue(collector.mFrames.isEmpty());
+        decodeByteByByte(decoder, new byte[]{4}, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(new byte[]{1, 2, 3, 4}, collector.mFrames.get(0));
+    }
+
+    @Test
+    public void reset_dropsPartialFrame() {
+        FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(2);
+        FrameCollector collector = new FrameCollector();
+        decoder.decode(new byte[]{1}, 0, 1, 1, collector);
+        decoder.reset();
+        decoder.decode(new byte[]{2, 3}, 0, 2, 2, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(new byte[]{2, 3}, collector.mFrames.get(0));
+    }
+
+    @Test
+    public void framesAcrossBufferEnd_areCopiedIntact() {
+        FixedLengthFrameDecoder decoder = new FixedLengthFrameDecoder(7);
+        FrameCollector collector = new FrameCollector();
+        int count = FrameDecoder.DEFAULT_BUFFER_CAPACITY / 7 * 3;
+        byte[] data = new byte[count * 7];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        // 每次读取 5 字节, 帧与读取边界错开
+        for (int offset = 0; offset < data.length; offset += 5) {
+            decoder.decode(data, offset, Math.min(5, data.length - offset), offset + 1, collector);
+        }
+        assertEquals(count, collector.mFrames.size());
+        for (int i = 0; i < count; i++) {
+            byte[] frame = collector.mFrames.get(i);
+            for (int j = 0; j < 7; j++) {
+                assertEquals((byte) (i * 7 + j), frame[j]);
+            }
+        }
+    }
+}
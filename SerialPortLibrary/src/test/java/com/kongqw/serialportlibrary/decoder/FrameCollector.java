@@ -0,0 +1,43 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 保存回调的帧, 回调的数组只在回调期间有效, 需要拷贝
+ */
+class FrameCollector implements OnSerialPortFrameListener {
+
+    final List<byte[]> mFrames = new ArrayList<>();
+
+    @Override
+    public void onFrameReceived(byte[] buffer, int offset, int length) {
+        mFrames.add(Arrays.copyOfRange(buffer, offset, offset + length));
+    }
+
+    /**
+     * 逐字节送入解析器, 模拟每次 read() 只读到一个字节
+     */
+    static void decodeByteByByte(FrameDecoder decoder, byte[] data, FrameCollector collector) {
+        for (int i = 0; i < data.length; i++) {
+            decoder.decode(data, i, 1, 1, collector);
+        }
+    }
+
+    static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int position = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, position, part.length);
+            position += part.length;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,68 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import org.junit.Test;
+
+import static com.kongqw.serialportlibrary.decoder.FrameCollector.concat;
+import static com.kongqw.serialportlibrary.decoder.FrameCollector.decodeByteByByte;
+import static org.junit.Assert.*;
+
+public class LengthFieldFrameDecoderTest {
+
+    // 0xAA + 2 字节大端长度 + 数据
+    private static LengthFieldFrameDecoder newDecoder(int initialBytesToStrip) {
+        return new LengthFieldFrameDecoder(64, 1, 2, 0, initialBytesToStrip, true);
+    }
+
+    @Test
+    public void mergedRead_emitsEveryFrame() {
+        LengthFieldFrameDecoder decoder = newDecoder(0);
+        FrameCollector collector = new FrameCollector();
+        byte[] first = {(byte) 0xAA, 0, 2, 1, 2};
+        byte[] second = {(byte) 0xAA, 0, 0};
+        byte[] data = concat(first, second, new byte[]{(byte) 0xAA, 0});
+        decoder.decode(data, 0, data.length, 1, collector);
+        assertEquals(2, collector.mFrames.size());
+        assertArrayEquals(first, collector.mFrames.get(0));
+        assertArrayEquals(second, collector.mFrames.get(1));
+        assertEquals(2, decoder.getPendingBytes());
+    }
+
+    @Test
+    public void splitRead_lengthFieldAcrossReads() {
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(300, 1, 2, 0, 3, true);
+        FrameCollector collector = new FrameCollector();
+        byte[] payload = new byte[256];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) i;
+        }
+        decodeByteByByte(decoder, new byte[]{(byte) 0xAA, 1}, collector);
+        assertEquals(2, decoder.getPendingBytes());
+        decodeByteByByte(decoder, concat(new byte[]{0}, payload), collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(payload, collector.mFrames.get(0));
+    }
+
+    @Test
+    public void littleEndianWithAdjustment() {
+        // 长度包含长度字段本身
+        LengthFieldFrameDecoder decoder = new LengthFieldFrameDecoder(64, 0, 2, -2, 0, false);
+        FrameCollector collector = new FrameCollector();
+        byte[] frame = {7, 0, 1, 2, 3, 0x11, 0x22};
+        decoder.decode(frame, 0, frame.length, 1, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(frame, collector.mFrames.get(0));
+    }
+
+    @Test
+    public void invalidLength_discardsOneByteAndResyncs() {
+        LengthFieldFrameDecoder decoder = newDecoder(0);
+        FrameCollector collector = new FrameCollector();
+        byte[] frame = {(byte) 0xAA, 0, 1, 9};
+        // 从 0x7F 开始时长度字段为 0xAA00, 超过最大帧长度
+        byte[] data = concat(new byte[]{0x7F}, frame);
+        decoder.decode(data, 0, data.length, 1, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(frame, collector.mFrames.get(0));
+        assertEquals(1, decoder.getDiscardedBytes());
+    }
+}
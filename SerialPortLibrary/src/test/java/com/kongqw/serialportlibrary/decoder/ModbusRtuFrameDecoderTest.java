@@ -0,0 +1,73 @@
+package com.kongqw.serialportlibrary.decoder;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ModbusRtuFrameDecoderTest {
+
+    private static final int BAUD_RATE = 9600;
+    private static final long CHARACTER_NANOS = 11 * 1000000000L / BAUD_RATE;
+    private static final long START_NANOS = 1000000000L;
+
+    private static final byte[] REQUEST = {0x01, 0x03, 0x00, 0x00, 0x00, 0x0A, (byte) 0xC5, (byte) 0xCD};
+    private static final byte[] RESPONSE = {0x01, 0x03, 0x02, 0x12, 0x34, (byte) 0xB5, 0x33};
+
+    @Test
+    public void silence_splitsMergedTraffic() {
+        ModbusRtuFrameDecoder decoder = new ModbusRtuFrameDecoder(BAUD_RATE);
+        FrameCollector collector = new FrameCollector();
+        long first = START_NANOS;
+        decoder.decode(REQUEST, 0, REQUEST.length, first, collector);
+        assertTrue(collector.mFrames.isEmpty());
+
+        // 两段之间的静默刚好达到 t3.5, 新数据到达时输出上一帧
+        long second = first + decoder.getSilenceNanos() + RESPONSE.length * CHARACTER_NANOS;
+        decoder.decode(RESPONSE, 0, RESPONSE.length, second, collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(REQUEST, collector.mFrames.get(0));
+
+        // 最后一帧在空闲时输出
+        decoder.onIdle(second + decoder.getSilenceNanos() - 1, collector);
+        assertEquals(1, collector.mFrames.size());
+        decoder.onIdle(second + decoder.getSilenceNanos(), collector);
+        assertEquals(2, collector.mFrames.size());
+        assertArrayEquals(RESPONSE, collector.mFrames.get(1));
+        assertEquals(0, decoder.getPendingBytes());
+    }
+
+    @Test
+    public void splitRead_withoutSilenceStaysOneFrame() {
+        ModbusRtuFrameDecoder decoder = new ModbusRtuFrameDecoder(BAUD_RATE);
+        FrameCollector collector = new FrameCollector();
+        long arrival = START_NANOS;
+        for (int i = 0; i < REQUEST.length; i++) {
+            // 按传输速度逐字节到达, 字节间没有静默
+            decoder.decode(REQUEST, i, 1, arrival, collector);
+            arrival += CHARACTER_NANOS;
+        }
+        assertTrue(collector.mFrames.isEmpty());
+        assertEquals(REQUEST.length, decoder.getPendingBytes());
+        decoder.onIdle(arrival + decoder.getSilenceNanos(), collector);
+        assertEquals(1, collector.mFrames.size());
+        assertArrayEquals(REQUEST, collector.mFrames.get(0));
+    }
+
+    @Test
+    public void shortFrame_discarded() {
+        ModbusRtuFrameDecoder decoder = new ModbusRtuFrameDecoder(BAUD_RATE);
+        FrameCollector collector = new FrameCollector();
+        decoder.decode(REQUEST, 0, 2, START_NANOS, collector);
+        decoder.onIdle(START_NANOS + decoder.getSilenceNanos(), collector);
+        assertTrue(collector.mFrames.isEmpty());
+        assertEquals(2, decoder.getDiscardedBytes());
+    }
+
+    @Test
+    public void highBaudRate_usesFixedSilence() {
+        assertEquals(1750000L, new ModbusRtuFrameDecoder(115200).getSilenceNanos());
+        ModbusRtuFrameDecoder decoder = new ModbusRtuFrameDecoder(BAUD_RATE);
+        assertEquals(CHARACTER_NANOS * 7 / 2, decoder.getSilenceNanos());
+        assertEquals(decoder.getSilenceNanos(), decoder.getIdleTimeoutNanos());
+    }
+}
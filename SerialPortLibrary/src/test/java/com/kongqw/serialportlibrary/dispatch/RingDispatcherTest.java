@@ -0,0 +1,115 @@
+package com.kongqw.serialportlibrary.dispatch;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class RingDispatcherTest {
+
+    private static final int PRODUCERS = 2;
+    private static final int EVENTS_PER_PRODUCER = 200000;
+
+    /**
+     * 记录每个生产者收到的事件, 事件数据为 生产者编号 * EVENTS_PER_PRODUCER + 序号
+     */
+    private static class CountingTarget implements CallbackDispatcher.Target {
+
+        final int[] mNext = new int[PRODUCERS];
+        final AtomicLong mReceived = new AtomicLong();
+        volatile String mError;
+
+        @Override
+        public void onEvent(int event, Object payload, long arrivalNanos) {
+            int value = (Integer) payload;
+            int producer = value / EVENTS_PER_PRODUCER;
+            int sequence = value % EVENTS_PER_PRODUCER;
+            if (sequence < mNext[producer]) {
+                mError = "producer " + producer + " event " + sequence + " after " + (mNext[producer] - 1);
+            }
+            mNext[producer] = sequence + 1;
+            mReceived.incrementAndGet();
+        }
+    }
+
+    /**
+     * 读取线程和帧空闲检查线程同时产生接收侧事件
+     */
+    private static long produceConcurrently(final CallbackDispatcher dispatcher, final CountingTarget target) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger accepted = new AtomicInteger();
+        Thread[] producers = new Thread[PRODUCERS];
+        for (int p = 0; p < PRODUCERS; p++) {
+            final int producer = p;
+            final int event = 0 == p ? CallbackDispatcher.EVENT_DATA_RECEIVED : CallbackDispatcher.EVENT_FRAME_RECEIVED;
+            producers[p] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+                        if (dispatcher.dispatch(target, event, producer * EVENTS_PER_PRODUCER + i, 0)) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            producers[p].start();
+        }
+        start.countDown();
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        return accepted.get();
+    }
+
+    private static void awaitDelivered(CountingTarget target, long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (target.mReceived.get() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        // 多余的事件说明有槽位被重复回调
+        Thread.sleep(50);
+        assertEquals(expected, target.mReceived.get());
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentReceiveProducers_block_deliverEveryEventInOrder() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CallbackDispatcher dispatcher = CallbackDispatcher.executor(executor, 64, CallbackDispatcher.SlowConsumerPolicy.BLOCK);
+            CountingTarget target = new CountingTarget();
+            long accepted = produceConcurrently(dispatcher, target);
+            assertEquals(PRODUCERS * EVENTS_PER_PRODUCER, accepted);
+            awaitDelivered(target, accepted);
+            assertNull(target.mError);
+            assertEquals(0, dispatcher.getPendingCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void concurrentReceiveProducers_drop_deliverEveryAcceptedEvent() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CallbackDispatcher dispatcher = CallbackDispatcher.executor(executor, 64, CallbackDispatcher.SlowConsumerPolicy.DROP);
+            CountingTarget target = new CountingTarget();
+            long accepted = produceConcurrently(dispatcher, target);
+            assertEquals(PRODUCERS * EVENTS_PER_PRODUCER, accepted + dispatcher.getDroppedCount());
+            awaitDelivered(target, accepted);
+            assertNull(target.mError);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
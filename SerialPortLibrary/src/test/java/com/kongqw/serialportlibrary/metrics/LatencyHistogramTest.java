@@ -0,0 +1,79 @@
+package com.kongqw.serialportlibrary.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void empty_returnsZero() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMean());
+        assertEquals(0, snapshot.getPercentile(99));
+        assertEquals(0, snapshot.getMax());
+    }
+
+    @Test
+    public void percentiles_useBucketUpperBound() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        // 90 个 [512, 1024), 9 个 [65536, 131072), 1 个 1000000
+        for (int i = 0; i < 90; i++) {
+            histogram.record(1000);
+        }
+        for (int i = 0; i < 9; i++) {
+            histogram.record(100000);
+        }
+        histogram.record(1000000);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(100, snapshot.getCount());
+        assertEquals((90 * 1000L + 9 * 100000L + 1000000L) / 100, snapshot.getMean());
+        assertEquals(1023, snapshot.getPercentile(50));
+        assertEquals(1023, snapshot.getPercentile(90));
+        assertEquals(131071, snapshot.getPercentile(91));
+        assertEquals(131071, snapshot.getPercentile(99));
+        // 上界不超过最大值
+        assertEquals(1000000, snapshot.getPercentile(100));
+        assertEquals(1000000, snapshot.getMax());
+    }
+
+    @Test
+    public void percentile_withinFactorOfTwo() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000L);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        long p50 = snapshot.getPercentile(50);
+        long p99 = snapshot.getPercentile(99);
+        assertTrue(p50 >= 500000 && p50 < 1000000);
+        assertTrue(p99 >= 990000 && p99 <= 1000000);
+    }
+
+    @Test
+    public void zeroAndNegative_countedInFirstBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(-5);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.getBuckets()[0]);
+        assertEquals(0, snapshot.getPercentile(100));
+    }
+
+    @Test
+    public void merge_andReset() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.record(10);
+        b.record(3000);
+        LatencyHistogram.Snapshot merged = a.snapshot().merge(b.snapshot());
+        assertEquals(2, merged.getCount());
+        assertEquals(3000, merged.getMax());
+        assertEquals(15, merged.getPercentile(50));
+
+        a.reset();
+        assertEquals(0, a.snapshot().getCount());
+        assertEquals(0, a.snapshot().getMax());
+    }
+}
@@ -0,0 +1,162 @@
+package com.kongqw.serialportlibrary.transaction;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+public class TransactionManagerTest {
+
+    private static class RecordingManager extends TransactionManager {
+
+        final List<byte[]> mSent = new CopyOnWriteArrayList<>();
+        volatile boolean mSendResult = true;
+
+        RecordingManager(ResponseCorrelator correlator, int window) {
+            super(correlator, window);
+        }
+
+        @Override
+        protected boolean send(byte[] request) {
+            mSent.add(request);
+            return mSendResult;
+        }
+    }
+
+    private static Throwable failureOf(TransactionFuture future) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        }
+        fail("transaction succeeded");
+        return null;
+    }
+
+    @Test(timeout = 5000)
+    public void response_completesRequest() throws Exception {
+        RecordingManager manager = new RecordingManager(new FifoCorrelator(), 1);
+        byte[] request = {1, 2};
+        TransactionFuture future = manager.submit(request, 1, TimeUnit.SECONDS);
+        assertSame(request, manager.mSent.get(0));
+        assertEquals(1, manager.getOutstandingCount());
+
+        byte[] buffer = {9, 3, 4, 9};
+        assertTrue(manager.onResponse(buffer, 1, 2));
+        // 回调的数组之后会被复用, 结果需是拷贝
+        buffer[1] = 0;
+        assertArrayEquals(new byte[]{3, 4}, future.get());
+        assertEquals(0, manager.getOutstandingCount());
+        assertFalse(manager.onResponse(buffer, 0, 1));
+    }
+
+    @Test(timeout = 5000)
+    public void noResponse_timesOutAndReleasesWindow() throws Exception {
+        RecordingManager manager = new RecordingManager(new FifoCorrelator(), 1);
+        long start = System.nanoTime();
+        TransactionFuture future = manager.submit(new byte[]{1}, 50, TimeUnit.MILLISECONDS);
+        assertTrue(failureOf(future) instanceof TimeoutException);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(0, manager.getOutstandingCount());
+
+        TransactionFuture next = manager.submit(new byte[]{2}, 1, TimeUnit.SECONDS);
+        assertEquals(2, manager.mSent.size());
+        assertTrue(manager.onResponse(new byte[]{2}, 0, 1));
+        assertArrayEquals(new byte[]{2}, next.get());
+    }
+
+    @Test(timeout = 5000)
+    public void fullWindow_blocksUntilResponse() throws Exception {
+        final RecordingManager manager = new RecordingManager(new FifoCorrelator(), 1);
+        TransactionFuture first = manager.submit(new byte[]{1}, 5, TimeUnit.SECONDS);
+
+        // 窗口已满, 等待时间计入超时
+        TransactionFuture rejected = manager.submit(new byte[]{2}, 50, TimeUnit.MILLISECONDS);
+        assertTrue(rejected.isDone());
+        assertTrue(failureOf(rejected) instanceof TimeoutException);
+        assertEquals(1, manager.mSent.size());
+
+        final TransactionFuture[] second = new TransactionFuture[1];
+        Thread submitter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                second[0] = manager.submit(new byte[]{3}, 5, TimeUnit.SECONDS);
+            }
+        });
+        submitter.start();
+        Thread.sleep(50);
+        assertEquals(1, manager.mSent.size());
+
+        assertTrue(manager.onResponse(new byte[]{1}, 0, 1));
+        submitter.join();
+        assertArrayEquals(new byte[]{1}, first.get());
+        assertEquals(2, manager.mSent.size());
+        assertEquals(1, manager.getOutstandingCount());
+        assertTrue(manager.onResponse(new byte[]{3}, 0, 1));
+        assertArrayEquals(new byte[]{3}, second[0].get());
+    }
+
+    @Test(timeout = 5000)
+    public void cancel_releasesWindowAndIgnoresLateResponse() throws Exception {
+        RecordingManager manager = new RecordingManager(new FieldCorrelator(0, 0, 1, true), 1);
+        TransactionFuture future = manager.submit(new byte[]{7}, 5, TimeUnit.SECONDS);
+        assertTrue(future.cancel(false));
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+        assertFalse(future.cancel(false));
+        assertEquals(0, manager.getOutstandingCount());
+        try {
+            future.get();
+            fail("cancelled transaction returned a result");
+        } catch (CancellationException expected) {
+            // 已取消
+        }
+        assertFalse(manager.onResponse(new byte[]{7}, 0, 1));
+
+        TransactionFuture next = manager.submit(new byte[]{8}, 50, TimeUnit.MILLISECONDS);
+        assertTrue(manager.onResponse(new byte[]{8}, 0, 1));
+        assertArrayEquals(new byte[]{8}, next.get());
+    }
+
+    @Test(timeout = 5000)
+    public void fieldCorrelator_matchesOutOfOrder() throws Exception {
+        RecordingManager manager = new RecordingManager(new FieldCorrelator(0, 1, 1, true), 2);
+        TransactionFuture first = manager.submit(new byte[]{1, 0}, 5, TimeUnit.SECONDS);
+        TransactionFuture second = manager.submit(new byte[]{2, 0}, 5, TimeUnit.SECONDS);
+        assertTrue(manager.onResponse(new byte[]{0, 2}, 0, 2));
+        assertFalse(first.isDone());
+        assertArrayEquals(new byte[]{0, 2}, second.get());
+        assertFalse(manager.onResponse(new byte[]{0, 3}, 0, 2));
+        assertTrue(manager.onResponse(new byte[]{0, 1}, 0, 2));
+        assertArrayEquals(new byte[]{0, 1}, first.get());
+    }
+
+    @Test(timeout = 5000)
+    public void sendFailure_failsImmediately() throws Exception {
+        RecordingManager manager = new RecordingManager(new FifoCorrelator(), 1);
+        manager.mSendResult = false;
+        TransactionFuture future = manager.submit(new byte[]{1}, 5, TimeUnit.SECONDS);
+        assertTrue(future.isDone());
+        assertTrue(failureOf(future) instanceof IOException);
+        assertEquals(0, manager.getOutstandingCount());
+    }
+
+    @Test(timeout = 5000)
+    public void failAll_failsOutstanding() throws Exception {
+        RecordingManager manager = new RecordingManager(new FifoCorrelator(), 2);
+        TransactionFuture first = manager.submit(new byte[]{1}, 5, TimeUnit.SECONDS);
+        TransactionFuture second = manager.submit(new byte[]{2}, 5, TimeUnit.SECONDS);
+        IOException cause = new IOException("closed");
+        manager.failAll(cause);
+        assertSame(cause, failureOf(first));
+        assertSame(cause, failureOf(second));
+        assertEquals(0, manager.getOutstandingCount());
+    }
+}
@@ -0,0 +1,57 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.ISerialPort;
+import com.kongqw.serialportlibrary.SerialConfig;
+
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * 直接以文件流打开设备节点, 不经过 JNI, 串口参数由外部 (stty / socat) 预先设置
+ */
+class FileSerialPort implements ISerialPort {
+
+    private FileInputStream mInputStream;
+    private FileOutputStream mOutputStream;
+
+    @Override
+    public boolean open(String path, int baudRate, int flags) throws IOException {
+        return open(path, new SerialConfig(baudRate).setFlags(flags));
+    }
+
+    @Override
+    public boolean open(String path, SerialConfig config) throws IOException {
+        mInputStream = new FileInputStream(path);
+        mOutputStream = new FileOutputStream(path);
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mInputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mOutputStream;
+    }
+
+    @Override
+    public void close() {
+        try {
+            if (null != mInputStream) {
+                mInputStream.close();
+            }
+            if (null != mOutputStream) {
+                mOutputStream.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mInputStream = null;
+        mOutputStream = null;
+    }
+}
@@ -0,0 +1,79 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.decoder.DelimiterFrameDecoder;
+import com.kongqw.serialportlibrary.decoder.FixedLengthFrameDecoder;
+import com.kongqw.serialportlibrary.decoder.FrameDecoder;
+import com.kongqw.serialportlibrary.decoder.LengthFieldFrameDecoder;
+import com.kongqw.serialportlibrary.listener.OnSerialPortFrameListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 分帧器: 同一段 32 字节帧组成的数据按不同的读取块大小送入分帧器
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class FrameDecoderBenchmark {
+
+    private static final int FRAME_LENGTH = 32;
+    private static final int FRAME_COUNT = 128;
+
+    @Param({"fixed", "delimiter", "lengthField"})
+    public String decoder;
+
+    @Param({"7", "64", "1024"})
+    public int chunkSize;
+
+    private final OnSerialPortFrameListener mListener = new OnSerialPortFrameListener() {
+        @Override
+        public void onFrameReceived(byte[] buffer, int offset, int length) {
+            mFrames++;
+        }
+    };
+    private FrameDecoder mDecoder;
+    private byte[] mStream;
+    private long mFrames;
+
+    @Setup
+    public void setup() {
+        mStream = new byte[FRAME_LENGTH * FRAME_COUNT];
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            int start = i * FRAME_LENGTH;
+            // 长度字段帧: 1 字节长度 + 数据, 分隔符帧: 数据 + '\n'
+            mStream[start] = (byte) (FRAME_LENGTH - 1);
+            for (int j = 1; j < FRAME_LENGTH - 1; j++) {
+                mStream[start + j] = (byte) ('a' + j % 26);
+            }
+            mStream[start + FRAME_LENGTH - 1] = '\n';
+        }
+        switch (decoder) {
+            case "fixed":
+                mDecoder = new FixedLengthFrameDecoder(FRAME_LENGTH);
+                break;
+            case "delimiter":
+                mDecoder = new DelimiterFrameDecoder(new byte[]{'\n'}, FRAME_LENGTH, false);
+                break;
+            default:
+                mDecoder = new LengthFieldFrameDecoder(FRAME_LENGTH, 0, 1, 0, 0, true);
+                break;
+        }
+    }
+
+    @Benchmark
+    public long decode() {
+        for (int off = 0; off < mStream.length; off += chunkSize) {
+            mDecoder.decode(mStream, off, Math.min(chunkSize, mStream.length - off), 0, mListener);
+        }
+        return mFrames;
+    }
+}
@@ -0,0 +1,126 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.ISerialPort;
+import com.kongqw.serialportlibrary.SerialConfig;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 内存中的串口, 用于在 JVM 上测量读写链路本身的开销
+ * <p>
+ * {@link #feed(byte[])} 投递的数据块由读取线程按块读出, 写入的数据只计数不保存。
+ * 投递的数组不会被拷贝, 调用方在读取完成前不能修改。
+ */
+class LoopbackSerialPort implements ISerialPort {
+
+    private static final byte[] EOF = new byte[0];
+
+    private final ArrayBlockingQueue<byte[]> mChunks = new ArrayBlockingQueue<>(1024);
+    private final AtomicLong mWrittenBytes = new AtomicLong();
+    private final AtomicLong mWriteCalls = new AtomicLong();
+    private volatile boolean mOpen;
+
+    private final InputStream mInputStream = new InputStream() {
+        private byte[] mCurrent;
+        private int mPosition;
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (null == mCurrent || mPosition == mCurrent.length) {
+                try {
+                    mCurrent = mChunks.take();
+                } catch (InterruptedException e) {
+                    return -1;
+                }
+                mPosition = 0;
+                if (EOF == mCurrent) {
+                    mChunks.offer(EOF);
+                    return -1;
+                }
+            }
+            int n = Math.min(len, mCurrent.length - mPosition);
+            System.arraycopy(mCurrent, mPosition, b, off, n);
+            mPosition += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+            mChunks.offer(EOF);
+        }
+    };
+
+    private final OutputStream mOutputStream = new OutputStream() {
+        @Override
+        public void write(int b) {
+            mWrittenBytes.incrementAndGet();
+            mWriteCalls.incrementAndGet();
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            mWrittenBytes.addAndGet(len);
+            mWriteCalls.incrementAndGet();
+        }
+    };
+
+    /**
+     * 投递一块待读取的数据, 队列满时阻塞
+     *
+     * @param chunk 数据块, 长度大于 0
+     */
+    void feed(byte[] chunk) throws InterruptedException {
+        if (!mChunks.offer(chunk, 1, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("reader is not draining");
+        }
+    }
+
+    long getWrittenBytes() {
+        return mWrittenBytes.get();
+    }
+
+    long getWriteCalls() {
+        return mWriteCalls.get();
+    }
+
+    @Override
+    public boolean open(String path, int baudRate, int flags) {
+        return open(path, new SerialConfig(baudRate).setFlags(flags));
+    }
+
+    @Override
+    public boolean open(String path, SerialConfig config) {
+        mChunks.clear();
+        mOpen = true;
+        return true;
+    }
+
+    @Override
+    public InputStream getInputStream() {
+        return mInputStream;
+    }
+
+    @Override
+    public OutputStream getOutputStream() {
+        return mOutputStream;
+    }
+
+    @Override
+    public void close() {
+        if (mOpen) {
+            mOpen = false;
+            mChunks.offer(EOF);
+        }
+    }
+}
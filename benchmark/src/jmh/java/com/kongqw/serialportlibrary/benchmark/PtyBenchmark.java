@@ -0,0 +1,84 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.SerialPortManager;
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortBufferListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 伪终端往返: 从一端写入, 经内核 tty 层后由 SerialPortManager 在另一端读出
+ * <p>
+ * 需要先创建一对原始模式的伪终端, 例如:
+ * <pre>
+ * socat -d -d pty,raw,echo=0 pty,raw,echo=0
+ * ./gradlew :benchmark:jmh -PptyTx=/dev/pts/N -PptyRx=/dev/pts/M
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class PtyBenchmark {
+
+    @Param({"16", "256"})
+    public int chunkSize;
+
+    private final AtomicLong mReceived = new AtomicLong();
+    private SerialPortManager mManager;
+    private FileOutputStream mTx;
+    private byte[] mChunk;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        String tx = System.getProperty("benchmark.pty.tx");
+        String rx = System.getProperty("benchmark.pty.rx");
+        if (null == tx || null == rx) {
+            throw new IllegalStateException("benchmark.pty.tx / benchmark.pty.rx not set");
+        }
+        mChunk = new byte[chunkSize];
+        mTx = new FileOutputStream(tx);
+        mManager = new SerialPortManager(new FileSerialPort())
+                .setOnSerialPortBufferListener(new OnSerialPortBufferListener() {
+                    @Override
+                    public void onBufferReceived(ReceiveBuffer buffer) {
+                        mReceived.addAndGet(buffer.length());
+                        buffer.recycle();
+                    }
+                });
+        if (!mManager.openSerialPort(new File(rx), 115200)) {
+            throw new IllegalStateException("open " + rx + " failed");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mManager.closeSerialPort();
+        mTx.close();
+    }
+
+    @Benchmark
+    public long roundTrip() throws IOException {
+        long target = mReceived.get() + chunkSize;
+        mTx.write(mChunk);
+        long received;
+        while ((received = mReceived.get()) < target) {
+            Thread.yield();
+        }
+        return received;
+    }
+}
@@ -0,0 +1,104 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.SerialPortManager;
+import com.kongqw.serialportlibrary.buffer.ReceiveBuffer;
+import com.kongqw.serialportlibrary.listener.OnSerialPortBufferListener;
+import com.kongqw.serialportlibrary.listener.OnSerialPortDataListener;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 接收链路: 读取线程 -> 缓冲池 -> 监听回调
+ * <p>
+ * 每次调用投递一块数据并等待监听者收到, 测量单块数据从可读到回调完成的耗时,
+ * 配合 -prof gc 观察每块数据的分配量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ReceivePathBenchmark {
+
+    @Param({"16", "256", "1024"})
+    public int chunkSize;
+
+    /**
+     * buffer: 缓冲池回调, bytes: 每次拷贝出新数组的回调
+     */
+    @Param({"buffer", "bytes"})
+    public String listener;
+
+    private final AtomicLong mReceived = new AtomicLong();
+    private LoopbackSerialPort mPort;
+    private SerialPortManager mManager;
+    private File mDevice;
+    private byte[] mChunk;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mChunk = new byte[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            mChunk[i] = (byte) i;
+        }
+        mDevice = File.createTempFile("loopback", ".tty");
+        mPort = new LoopbackSerialPort();
+        mManager = new SerialPortManager(mPort);
+        if ("buffer".equals(listener)) {
+            mManager.setOnSerialPortBufferListener(new OnSerialPortBufferListener() {
+                @Override
+                public void onBufferReceived(ReceiveBuffer buffer) {
+                    mReceived.addAndGet(buffer.length());
+                    buffer.recycle();
+                }
+            });
+        } else {
+            mManager.setOnSerialPortDataListener(new OnSerialPortDataListener() {
+                @Override
+                public void onDataReceived(byte[] bytes) {
+                    mReceived.addAndGet(bytes.length);
+                }
+
+                @Override
+                public void onDataSent(byte[] bytes) {
+                }
+
+                @Override
+                public void onError(Exception e) {
+                }
+            });
+        }
+        if (!mManager.openSerialPort(mDevice, 115200)) {
+            throw new IllegalStateException("open loopback port failed");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mManager.closeSerialPort();
+        mDevice.delete();
+    }
+
+    @Benchmark
+    public long receive() throws InterruptedException {
+        long target = mReceived.get() + chunkSize;
+        mPort.feed(mChunk);
+        long received;
+        while ((received = mReceived.get()) < target) {
+            Thread.yield();
+        }
+        return received;
+    }
+}
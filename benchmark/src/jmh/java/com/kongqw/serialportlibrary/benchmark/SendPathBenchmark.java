@@ -0,0 +1,94 @@
+package com.kongqw.serialportlibrary.benchmark;
+
+import com.kongqw.serialportlibrary.SerialPortManager;
+import com.kongqw.serialportlibrary.listener.OnSerialPortDataListener;
+import com.kongqw.serialportlibrary.thread.SerialPortWriteThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 发送链路: sendBytes -> 发送队列 -> 发送线程合并写入
+ * <p>
+ * send 只测量入队, 发送线程在后台持续写出; sendAndAwait 等待该帧写出后才返回,
+ * 测量单帧从入队到写出完成的耗时。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SendPathBenchmark {
+
+    @Param({"8", "64", "512"})
+    public int frameSize;
+
+    @Param({"1", "4096"})
+    public int maxBatchBytes;
+
+    private final AtomicLong mSent = new AtomicLong();
+    private LoopbackSerialPort mPort;
+    private SerialPortManager mManager;
+    private File mDevice;
+    private byte[] mFrame;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mFrame = new byte[frameSize];
+        mDevice = File.createTempFile("loopback", ".tty");
+        mPort = new LoopbackSerialPort();
+        mManager = new SerialPortManager(mPort)
+                .setSendQueue(SerialPortWriteThread.DEFAULT_QUEUE_CAPACITY, SerialPortWriteThread.OverflowPolicy.BLOCK)
+                .setSendBatching(maxBatchBytes, 0, TimeUnit.NANOSECONDS)
+                .setOnSerialPortDataListener(new OnSerialPortDataListener() {
+                    @Override
+                    public void onDataReceived(byte[] bytes) {
+                    }
+
+                    @Override
+                    public void onDataSent(byte[] bytes) {
+                        mSent.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onError(Exception e) {
+                    }
+                });
+        if (!mManager.openSerialPort(mDevice, 115200)) {
+            throw new IllegalStateException("open loopback port failed");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        mManager.closeSerialPort();
+        mDevice.delete();
+    }
+
+    @Benchmark
+    public boolean send() {
+        return mManager.sendBytes(mFrame);
+    }
+
+    @Benchmark
+    public long sendAndAwait() {
+        long target = mSent.get() + 1;
+        mManager.sendBytes(mFrame);
+        long sent;
+        while ((sent = mSent.get()) < target) {
+            Thread.yield();
+        }
+        return sent;
+    }
+}
@@ -0,0 +1,23 @@
+package android.os;
+
+/**
+ * JVM 上运行基准测试用的 FileObserver 桩, 不产生任何事件
+ */
+public abstract class FileObserver {
+
+    public static final int MOVED_FROM = 0x00000040;
+    public static final int MOVED_TO = 0x00000080;
+    public static final int CREATE = 0x00000100;
+    public static final int DELETE = 0x00000200;
+
+    public FileObserver(String path, int mask) {
+    }
+
+    public abstract void onEvent(int event, String path);
+
+    public void startWatching() {
+    }
+
+    public void stopWatching() {
+    }
+}
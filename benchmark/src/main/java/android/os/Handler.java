@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * JVM 上运行基准测试用的 Handler 桩, 在调用线程中直接执行
+ */
+public class Handler {
+
+    public Handler(Looper looper) {
+    }
+
+    public final boolean post(Runnable r) {
+        r.run();
+        return true;
+    }
+}
@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * JVM 上运行基准测试用的 Looper 桩, 没有主线程消息循环
+ */
+public final class Looper {
+
+    private Looper() {
+    }
+
+    public static Looper getMainLooper() {
+        return null;
+    }
+}
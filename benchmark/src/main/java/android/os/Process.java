@@ -0,0 +1,10 @@
+package android.os;
+
+/**
+ * JVM 上运行基准测试用的 Process 桩, 不修改线程优先级
+ */
+public class Process {
+
+    public static void setThreadPriority(int priority) {
+    }
+}